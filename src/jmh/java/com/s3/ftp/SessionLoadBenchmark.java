@@ -0,0 +1,240 @@
+package com.s3.ftp;
+
+import com.s3.ftp.config.GlobalConfiguration;
+import com.s3.ftp.s3.S3FileSystemView;
+import com.s3.ftp.util.VirtualThreads;
+import org.apache.ftpserver.ConnectionConfigFactory;
+import org.apache.ftpserver.FtpServer;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.usermanager.ClearTextPasswordEncryptor;
+import org.apache.ftpserver.usermanager.PropertiesUserManagerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 会话负载测试：大量已登录会话同时执行需要访问 S3 的 CWD 命令，S3 请求固定耗时 latencyMillis，
+ * 对比平台线程池（max-threads 限制）与虚拟线程两种模式完成一轮命令的耗时。virtual 模式需要 Java 21。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SessionLoadBenchmark {
+
+    private static final int PLATFORM_MAX_THREADS = 64;
+
+    private static final int COMMANDS_PER_SESSION = 5;
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    @Param({"200", "1000"})
+    public int sessions;
+
+    @Param({"20"})
+    public int latencyMillis;
+
+    private FtpServer server;
+
+    private ExecutorService clients;
+
+    private final List<FtpSession> connections = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        boolean virtual = "virtual".equals(mode);
+        if (virtual && !VirtualThreads.isSupported()) {
+            throw new IllegalStateException("virtual mode requires Java 21 or later");
+        }
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        Path users = Files.createTempFile("s3-ftp-bench-user", ".properties");
+        Files.writeString(users, """
+                ftpserver.user.bench.userpassword=bench
+                ftpserver.user.bench.homedirectory=/
+                ftpserver.user.bench.enableflag=true
+                """);
+        PropertiesUserManagerFactory userManagerFactory = new PropertiesUserManagerFactory();
+        userManagerFactory.setFile(users.toFile());
+        userManagerFactory.setPasswordEncryptor(new ClearTextPasswordEncryptor());
+
+        ConnectionConfigFactory connectionConfig = new ConnectionConfigFactory();
+        connectionConfig.setMaxLogins(sessions + 10);
+        connectionConfig.setMaxThreads(virtual ? 0 : PLATFORM_MAX_THREADS);
+
+        ListenerFactory listener = new ListenerFactory();
+        listener.setServerAddress("127.0.0.1");
+        listener.setPort(port);
+
+        S3Client client = new LatencyClient(latencyMillis);
+        FtpServerFactory serverFactory = new FtpServerFactory();
+        serverFactory.setConnectionConfig(connectionConfig.createConnectionConfig());
+        serverFactory.setUserManager(userManagerFactory.createUserManager());
+        serverFactory.addListener("default", listener.createListener());
+        serverFactory.setFileSystem(user -> new S3FileSystemView(client, "bench", "", user));
+
+        server = serverFactory.createServer();
+        if (virtual) {
+            GlobalConfiguration.configureSessionThreads(server);
+        }
+        server.start();
+
+        clients = Executors.newFixedThreadPool(sessions);
+        for (int i = 0; i < sessions; i++) {
+            connections.add(FtpSession.login(port, "bench", "bench"));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        for (FtpSession connection : connections) {
+            connection.close();
+        }
+        clients.shutdownNow();
+        server.stop();
+    }
+
+    @Benchmark
+    public void changeDirectory() {
+        List<CompletableFuture<Void>> pending = new ArrayList<>(sessions);
+        for (int i = 0; i < connections.size(); i++) {
+            FtpSession connection = connections.get(i);
+            int session = i;
+            pending.add(CompletableFuture.runAsync(() -> {
+                for (int n = 0; n < COMMANDS_PER_SESSION; n++) {
+                    connection.command("CWD /dir-%d-%d".formatted(session, n), 250);
+                    connection.command("CWD /", 250);
+                }
+            }, clients));
+        }
+        CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+    }
+
+    /**
+     * 只实现控制连接命令收发的最小 FTP 客户端
+     */
+    private static final class FtpSession {
+
+        private final Socket socket;
+
+        private final BufferedReader reader;
+
+        private final OutputStream writer;
+
+        private FtpSession(Socket socket) throws IOException {
+            this.socket = socket;
+            this.reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            this.writer = socket.getOutputStream();
+        }
+
+        static FtpSession login(int port, String user, String password) throws IOException {
+            FtpSession session = new FtpSession(new Socket("127.0.0.1", port));
+            session.expect(220);
+            session.command("USER " + user, 331);
+            session.command("PASS " + password, 230);
+            return session;
+        }
+
+        void command(String command, int expected) {
+            try {
+                writer.write((command + "\r\n").getBytes(StandardCharsets.UTF_8));
+                writer.flush();
+                expect(expected);
+            } catch (IOException e) {
+                throw new IllegalStateException(command + " failed", e);
+            }
+        }
+
+        void close() throws IOException {
+            socket.close();
+        }
+
+        private void expect(int expected) throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null) {
+                    throw new IOException("connection closed");
+                }
+            } while (line.length() < 4 || line.charAt(3) != ' ');
+
+            if (!line.startsWith(String.valueOf(expected))) {
+                throw new IOException("expected %d but got: %s".formatted(expected, line));
+            }
+        }
+    }
+
+    /**
+     * 每次 LIST 请求固定等待 latencyMillis 后返回一个对象，模拟受 S3 延迟限制的元数据查询。
+     */
+    private static final class LatencyClient implements S3Client {
+
+        private final long latencyMillis;
+
+        LatencyClient(long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public ListObjectsV2Response listObjectsV2(ListObjectsV2Request request) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return ListObjectsV2Response.builder()
+                    .contents(S3Object.builder().key(request.prefix() + "object").size(1L).build())
+                    .isTruncated(false)
+                    .build();
+        }
+
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+
+        @Override
+        public void close() {
+            //nothing to close
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.s3.ftp.s3;
+
+import com.s3.ftp.config.GlobalConfiguration;
+import com.s3.ftp.config.Settings;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 将 ListObjectsV2 结果转换为 FtpFile 的开销。S3 响应预先构造好，不包含网络耗时。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class S3ListingBenchmark {
+
+    private static final int PAGE_SIZE = 1000;
+
+    @Param({"1000", "100000"})
+    public int objects;
+
+    private S3FtpFile directory;
+
+    @Setup
+    public void setup() {
+        Settings settings = GlobalConfiguration.settings();
+        GlobalConfiguration.publish(settings.with("s3-ftp.max-list-keys-limit", String.valueOf(PAGE_SIZE)));
+        directory = new S3FtpFile(new PagedListingClient(objects), "bench", "dir/", new BaseUser());
+    }
+
+    @Benchmark
+    public int listFiles() {
+        return directory.listFiles().size();
+    }
+
+    @Benchmark
+    public void iterateFiles(Blackhole blackhole) {
+        Iterator<S3FtpFile> files = directory.iterateFiles();
+        while (files.hasNext()) {
+            S3FtpFile file = files.next();
+            blackhole.consume(file.getName());
+            blackhole.consume(file.getSize());
+        }
+    }
+
+    /**
+     * 按 continuation token 返回预先构造的分页结果，每页包含少量子目录与 PAGE_SIZE 个对象。
+     */
+    private static final class PagedListingClient implements S3Client {
+
+        private final List<ListObjectsV2Response> pages = new ArrayList<>();
+
+        PagedListingClient(int objects) {
+            Instant now = Instant.now();
+            for (int start = 0; start < objects; start += PAGE_SIZE) {
+                List<S3Object> contents = new ArrayList<>(PAGE_SIZE);
+                for (int i = start; i < Math.min(objects, start + PAGE_SIZE); i++) {
+                    contents.add(S3Object.builder()
+                            .key("dir/file-%08d.dat".formatted(i))
+                            .size(1024L * i)
+                            .lastModified(now)
+                            .build());
+                }
+
+                boolean truncated = start + PAGE_SIZE < objects;
+                pages.add(ListObjectsV2Response.builder()
+                        .commonPrefixes(CommonPrefix.builder().prefix("dir/sub-%08d/".formatted(start)).build())
+                        .contents(contents)
+                        .isTruncated(truncated)
+                        .nextContinuationToken(truncated ? String.valueOf(pages.size() + 1) : null)
+                        .build());
+            }
+        }
+
+        @Override
+        public ListObjectsV2Response listObjectsV2(ListObjectsV2Request request) {
+            String token = request.continuationToken();
+            return pages.get(token == null ? 0 : Integer.parseInt(token));
+        }
+
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+
+        @Override
+        public void close() {
+            //nothing to close
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.s3.ftp.s3;
+
+import com.robothy.s3.rest.LocalS3;
+import com.robothy.s3.rest.bootstrap.LocalS3Mode;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 经由 LocalS3 的上传与下载吞吐量，覆盖单次 PUT、分片上传与并发分块下载的路径。
+ * 每秒操作数乘以 size 即为吞吐量。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class S3TransferBenchmark {
+
+    private static final String BUCKET = "bench";
+
+    private static final int WRITE_CHUNK_SIZE = 64 * 1024;
+
+    @Param({"1048576", "67108864"})
+    public int size;
+
+    private LocalS3 localS3;
+
+    private S3Client client;
+
+    private byte[] data;
+
+    private S3FtpFile downloadFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        localS3 = LocalS3.builder().port(port).mode(LocalS3Mode.IN_MEMORY).build();
+        localS3.start();
+
+        client = S3Client.builder()
+                .endpointOverride(URI.create("http://localhost:" + port))
+                .forcePathStyle(true)
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("local", "local")))
+                .build();
+        client.createBucket(req -> req.bucket(BUCKET));
+
+        data = new byte[size];
+        ThreadLocalRandom.current().nextBytes(data);
+        client.putObject(req -> req.bucket(BUCKET).key("download.dat"), RequestBody.fromBytes(data));
+
+        downloadFile = new S3FtpFile(client, BUCKET, "download.dat", new BaseUser());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        client.close();
+        localS3.shutdown();
+    }
+
+    @Benchmark
+    public void upload() throws IOException {
+        try (OutputStream os = new S3OutputStream(client, BUCKET, "upload.dat", 0)) {
+            for (int off = 0; off < size; off += WRITE_CHUNK_SIZE) {
+                os.write(data, off, Math.min(WRITE_CHUNK_SIZE, size - off));
+            }
+        }
+    }
+
+    @Benchmark
+    public long download() throws IOException {
+        try (InputStream is = downloadFile.createInputStream(0)) {
+            return is.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+}
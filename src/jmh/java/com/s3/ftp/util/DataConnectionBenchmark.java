@@ -0,0 +1,160 @@
+package com.s3.ftp.util;
+
+import org.apache.ftpserver.util.IoUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数据连接与文件流之间的搬运开销，按 ftpserver 的传输循环（4096 字节数组，文件流外包 Buffered 流）模拟，
+ * 一次操作传输 1GiB，平均耗时即单线程每 GiB 的 CPU 时间。数据连接与 S3 两端以复制到 ByteBuffer 代替。
+ * 除两端各一次复制外，passThrough=false 时每个字节在 ftpserver 的 8KiB 缓冲与 4096 字节数组之间再复制 2 次，
+ * passThrough=true 时为 1 次。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DataConnectionBenchmark {
+
+    private static final long TRANSFER_SIZE = 1024L * 1024 * 1024;
+
+    private static final int SOURCE_SIZE = 1024 * 1024 * 10;
+
+    /**
+     * 单次从套接字读取的最大字节数
+     */
+    private static final int SOCKET_READ_SIZE = 1024 * 64;
+
+    @Param({"false", "true"})
+    public boolean passThrough;
+
+    private byte[] source;
+
+    private ByteBuffer target;
+
+    @Setup
+    public void setup() {
+        source = new byte[SOURCE_SIZE];
+        ThreadLocalRandom.current().nextBytes(source);
+        target = ByteBuffer.allocateDirect(SOURCE_SIZE);
+    }
+
+    @Benchmark
+    public long upload() throws IOException {
+        OutputStream os = new ByteBufferOutputStream(target);
+        return transfer(new SourceInputStream(source, SOCKET_READ_SIZE),
+                passThrough ? DataConnectionStreams.upload(os) : os);
+    }
+
+    @Benchmark
+    public long download() throws IOException {
+        InputStream is = new SourceInputStream(source, SOURCE_SIZE);
+        return transfer(passThrough ? DataConnectionStreams.download(is) : is, new ByteBufferOutputStream(target));
+    }
+
+    /**
+     * 与 ftpserver IODataConnection 二进制模式的传输循环相同
+     */
+    private static long transfer(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[4096];
+        BufferedInputStream bis = IoUtils.getBufferedInputStream(in);
+        BufferedOutputStream bos = IoUtils.getBufferedOutputStream(out);
+        long transferred = 0;
+        int count;
+        while ((count = bis.read(buffer)) != -1) {
+            bos.write(buffer, 0, count);
+            transferred += count;
+        }
+        bos.flush();
+        return transferred;
+    }
+
+    /**
+     * 循环读取 source 直至 TRANSFER_SIZE，每次最多返回 maxRead 字节
+     */
+    private static final class SourceInputStream extends InputStream {
+
+        private final byte[] source;
+
+        private final int maxRead;
+
+        private long remaining = TRANSFER_SIZE;
+
+        private int position = 0;
+
+        SourceInputStream(byte[] source, int maxRead) {
+            this.source = source;
+            this.maxRead = maxRead;
+        }
+
+        @Override
+        public int read() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (remaining == 0) {
+                return -1;
+            }
+
+            int size = (int) Math.min(Math.min(len, maxRead), Math.min(remaining, source.length - position));
+            System.arraycopy(source, position, b, off, size);
+            position = (position + size) % source.length;
+            remaining -= size;
+            return size;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(remaining, maxRead);
+        }
+    }
+
+    private static final class ByteBufferOutputStream extends OutputStream {
+
+        private final ByteBuffer target;
+
+        ByteBufferOutputStream(ByteBuffer target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            while (len > 0) {
+                if (!target.hasRemaining()) {
+                    target.clear();
+                }
+                int size = Math.min(len, target.remaining());
+                target.put(b, off, size);
+                off += size;
+                len -= size;
+            }
+        }
+    }
+}
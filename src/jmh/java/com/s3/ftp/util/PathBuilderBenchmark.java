@@ -0,0 +1,57 @@
+package com.s3.ftp.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每条 FTP 命令都会解析一次路径，衡量相对路径、上级目录与绝对路径的解析开销。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathBuilderBenchmark {
+
+    private static final String ROOT = "bucket/home/user";
+
+    private static final String WORKING_DIRECTORY = "projects/2024";
+
+    @Benchmark
+    public String resolveRelative() {
+        return PathBuilder.root(ROOT).resolve("/projects/2024").resolve("report.csv").build();
+    }
+
+    @Benchmark
+    public String resolveParent() {
+        return PathBuilder.root(ROOT).resolve("/projects/2024").resolve("../2023/./archive/report.csv").build();
+    }
+
+    @Benchmark
+    public String resolveDirectory() {
+        return PathBuilder.root(ROOT).resolve("/projects/2024/").resolve("/shared/").buildDirPath();
+    }
+
+    /**
+     * S3FileSystemView 的实际用法：根路径与当前目录已规范化，只解析命令参数。
+     */
+    @Benchmark
+    public String normalizeFile() {
+        return PathBuilder.normalize(WORKING_DIRECTORY, "report.csv");
+    }
+
+    @Benchmark
+    public String normalizeParent() {
+        return PathBuilder.normalize(WORKING_DIRECTORY, "../2023/./archive/report.csv");
+    }
+}
@@ -1,20 +1,34 @@
 package com.s3.ftp;
 
+import com.s3.ftp.config.ConfigWatcher;
 import com.s3.ftp.config.GlobalConfiguration;
+import com.s3.ftp.metrics.MetricsHttpServer;
 import org.apache.ftpserver.FtpServer;
-import org.apache.ftpserver.FtpServerFactory;
 
 import java.nio.file.Path;
 
 public final class S3FTPServer {
 
-    public static void main(String[] args) throws Exception {
-        GlobalConfiguration.load(Path.of(args.length > 0 ? args[0] : "config.properties"));
+    /**
+     * 为 true 时启动完成并等待客户端预热后即退出，用于生成 AppCDS 归档的训练运行（见 pom.xml 的 appcds profile）
+     */
+    private static final String EXIT_AFTER_START_PROPERTY = "s3-ftp.exit-after-start";
 
-        FtpServerFactory serverFactory = GlobalConfiguration.createServerFactory();
+    public static void main(String[] args) throws Exception {
+        Path configPath = Path.of(args.length > 0 ? args[0] : "config.properties");
+        GlobalConfiguration.load(configPath);
 
-        FtpServer server = serverFactory.createServer();
+        FtpServer server = GlobalConfiguration.createServer();
         server.start();
+
+        if (Boolean.getBoolean(EXIT_AFTER_START_PROPERTY)) {
+            GlobalConfiguration.clientsPrewarm().join();
+            server.stop();
+            System.exit(0);
+        }
+
+        GlobalConfiguration.createMetricsServer().ifPresent(MetricsHttpServer::start);
+        GlobalConfiguration.createConfigWatcher(configPath).ifPresent(ConfigWatcher::start);
     }
 
 }
@@ -0,0 +1,99 @@
+package com.s3.ftp.command;
+
+import com.s3.ftp.config.GlobalConfiguration;
+import com.s3.ftp.s3.S3FileHash;
+import com.s3.ftp.s3.S3FtpFile;
+import org.apache.ftpserver.command.AbstractCommand;
+import org.apache.ftpserver.ftplet.DefaultFtpReply;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.ftplet.FtpFile;
+import org.apache.ftpserver.ftplet.FtpReply;
+import org.apache.ftpserver.ftplet.FtpRequest;
+import org.apache.ftpserver.impl.FtpIoSession;
+import org.apache.ftpserver.impl.FtpServerContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Optional;
+
+/**
+ * XMD5/XCRC/HASH 命令实现，返回上传时保存在对象标签中的文件摘要，不下载对象。
+ * HASH 使用 file-hashes 中的第一个算法，应答格式为 213 算法 字节范围 摘要 路径。
+ */
+public final class FileHashCommand extends AbstractCommand {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileHashCommand.class);
+
+    /**
+     * 为 null 时使用 file-hashes 中的第一个算法
+     */
+    private final S3FileHash algorithm;
+
+    private FileHashCommand(S3FileHash algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public static FileHashCommand xmd5() {
+        return new FileHashCommand(S3FileHash.MD5);
+    }
+
+    public static FileHashCommand xcrc() {
+        return new FileHashCommand(S3FileHash.CRC32);
+    }
+
+    public static FileHashCommand hash() {
+        return new FileHashCommand(null);
+    }
+
+    @Override
+    public void execute(FtpIoSession session, FtpServerContext context, FtpRequest request) throws FtpException {
+        session.resetState();
+
+        String argument = request.getArgument();
+        if (argument == null || argument.isBlank()) {
+            session.write(new DefaultFtpReply(FtpReply.REPLY_501_SYNTAX_ERROR_IN_PARAMETERS_OR_ARGUMENTS,
+                    "%s requires a file name".formatted(request.getCommand())));
+            return;
+        }
+
+        S3FileHash hash = algorithm != null
+                ? algorithm
+                : GlobalConfiguration.settings().fileHashes.stream().findFirst().orElse(null);
+        if (hash == null) {
+            session.write(new DefaultFtpReply(FtpReply.REPLY_504_COMMAND_NOT_IMPLEMENTED_FOR_THAT_PARAMETER,
+                    "No hash algorithm configured"));
+            return;
+        }
+
+        FtpFile file = session.getFileSystemView().getFile(argument);
+        if (!(file instanceof S3FtpFile s3File) || !file.isFile() || !file.isReadable()) {
+            session.write(new DefaultFtpReply(FtpReply.REPLY_550_REQUESTED_ACTION_NOT_TAKEN,
+                    "%s: not a plain file".formatted(argument)));
+            return;
+        }
+
+        Optional<String> value;
+        try {
+            value = Optional.ofNullable(s3File.fileHashes().get(hash));
+        } catch (RuntimeException e) {
+            logger.debug("Read hashes of {} failed", argument, e);
+            session.write(new DefaultFtpReply(FtpReply.REPLY_451_REQUESTED_ACTION_ABORTED,
+                    "%s: read hashes failed".formatted(argument)));
+            return;
+        }
+
+        if (value.isEmpty()) {
+            session.write(new DefaultFtpReply(FtpReply.REPLY_550_REQUESTED_ACTION_NOT_TAKEN,
+                    "%s: %s hash not available".formatted(argument, hash.ftpName())));
+            return;
+        }
+
+        if (algorithm != null) {
+            session.write(new DefaultFtpReply(FtpReply.REPLY_250_REQUESTED_FILE_ACTION_OKAY, value.get()));
+        } else {
+            session.write(new DefaultFtpReply(FtpReply.REPLY_213_FILE_STATUS, "%s 0-%d %s %s".formatted(
+                    hash.ftpName(), file.getSize(), value.get(), argument
+            )));
+        }
+    }
+}
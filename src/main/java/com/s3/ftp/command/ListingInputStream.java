@@ -0,0 +1,75 @@
+package com.s3.ftp.command;
+
+import org.apache.ftpserver.command.impl.listing.FileFilter;
+import org.apache.ftpserver.command.impl.listing.FileFormater;
+import org.apache.ftpserver.ftplet.FtpFile;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * 将目录遍历结果按行格式化后输出，只在读取时才拉取下一个文件。
+ */
+final class ListingInputStream extends InputStream {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Iterator<? extends FtpFile> files;
+
+    private final FileFilter filter;
+
+    private final FileFormater formater;
+
+    private byte[] line = EMPTY;
+
+    private int position = 0;
+
+    ListingInputStream(Iterator<? extends FtpFile> files, FileFilter filter, FileFormater formater) {
+        this.files = files;
+        this.filter = filter;
+        this.formater = formater;
+    }
+
+    @Override
+    public int read() {
+        if (!fill()) {
+            return -1;
+        }
+
+        return line[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+
+        int count = 0;
+        while (count < len && fill()) {
+            int size = Math.min(len - count, line.length - position);
+            System.arraycopy(line, position, bytes, off + count, size);
+            position += size;
+            count += size;
+        }
+
+        return count == 0 ? -1 : count;
+    }
+
+    private boolean fill() {
+        while (position >= line.length) {
+            if (!files.hasNext()) {
+                return false;
+            }
+
+            FtpFile file = files.next();
+            if (filter == null || filter.accept(file)) {
+                this.line = formater.format(file).getBytes(StandardCharsets.UTF_8);
+                this.position = 0;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,53 @@
+package com.s3.ftp.command;
+
+import com.s3.ftp.s3.S3FtpFile;
+import org.apache.ftpserver.command.AbstractCommand;
+import org.apache.ftpserver.command.Command;
+import org.apache.ftpserver.ftplet.DefaultFtpReply;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.ftplet.FtpFile;
+import org.apache.ftpserver.ftplet.FtpReply;
+import org.apache.ftpserver.ftplet.FtpRequest;
+import org.apache.ftpserver.impl.FtpIoSession;
+import org.apache.ftpserver.impl.FtpServerContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * SIZE 命令实现。文件不存在但有因数据连接中断而保留的分片上传时，返回可续传的偏移量（已完成的连续分片总大小），
+ * 客户端按惯例以 SIZE 的结果 REST 后重新 STOR 即可从分片边界续传；否则交由内置实现处理。
+ */
+public final class SizeCommand extends AbstractCommand {
+
+    private static final Logger logger = LoggerFactory.getLogger(SizeCommand.class);
+
+    private final Command fallback = new org.apache.ftpserver.command.impl.SIZE();
+
+    @Override
+    public void execute(FtpIoSession session, FtpServerContext context, FtpRequest request)
+            throws IOException, FtpException {
+        String argument = request.getArgument();
+        if (argument != null && !argument.isBlank()) {
+            Optional<Long> resumable = Optional.empty();
+            try {
+                FtpFile file = session.getFileSystemView().getFile(argument);
+                if (file instanceof S3FtpFile s3File) {
+                    resumable = s3File.resumableSize();
+                }
+            } catch (IOException | FtpException | RuntimeException e) {
+                logger.debug("Read resumable size of {} failed", argument, e);
+            }
+
+            if (resumable.isPresent()) {
+                session.resetState();
+                session.write(new DefaultFtpReply(FtpReply.REPLY_213_FILE_STATUS, String.valueOf(resumable.get())));
+                return;
+            }
+        }
+
+        fallback.execute(session, context, request);
+    }
+}
@@ -0,0 +1,125 @@
+package com.s3.ftp.command;
+
+import com.s3.ftp.util.DataConnectionStreams;
+import org.apache.ftpserver.command.AbstractCommand;
+import org.apache.ftpserver.ftplet.DataConnection;
+import org.apache.ftpserver.ftplet.DefaultFtpReply;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.ftplet.FtpFile;
+import org.apache.ftpserver.ftplet.FtpReply;
+import org.apache.ftpserver.ftplet.FtpRequest;
+import org.apache.ftpserver.impl.FtpIoSession;
+import org.apache.ftpserver.impl.FtpServerContext;
+import org.apache.ftpserver.impl.IODataConnectionFactory;
+import org.apache.ftpserver.impl.LocalizedDataTransferFtpReply;
+import org.apache.ftpserver.impl.LocalizedFtpReply;
+import org.apache.ftpserver.impl.ServerFtpStatistics;
+import org.apache.ftpserver.util.IoUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.SocketException;
+
+/**
+ * STOR 命令实现，流程与应答同 ftpserver 内置实现。区别在于数据连接中断时先通过 {@link DataConnectionStreams#abort}
+ * 标记上传流未完成再关闭：内置实现无论传输是否完成都关闭上传流，上传流无法区分中断与正常结束，
+ * 会把已收到的部分数据作为完整的文件提交，并删除续传所需的分片上传日志。
+ */
+public final class StoreCommand extends AbstractCommand {
+
+    private static final Logger logger = LoggerFactory.getLogger(StoreCommand.class);
+
+    private static final long REPLY_TIMEOUT_MILLIS = 10000;
+
+    @Override
+    public void execute(FtpIoSession session, FtpServerContext context, FtpRequest request)
+            throws IOException, FtpException {
+        try {
+            long offset = session.getFileOffset();
+
+            String fileName = request.getArgument();
+            if (fileName == null) {
+                session.write(LocalizedDataTransferFtpReply.translate(session, request, context,
+                        FtpReply.REPLY_501_SYNTAX_ERROR_IN_PARAMETERS_OR_ARGUMENTS, "STOR", null, null));
+                return;
+            }
+
+            if (session.getDataConnection() instanceof IODataConnectionFactory factory
+                    && factory.getInetAddress() == null) {
+                session.write(new DefaultFtpReply(FtpReply.REPLY_503_BAD_SEQUENCE_OF_COMMANDS,
+                        "PORT or PASV must be issued first"));
+                return;
+            }
+
+            FtpFile file = null;
+            try {
+                file = session.getFileSystemView().getFile(fileName);
+            } catch (Exception e) {
+                logger.debug("Exception getting file object", e);
+            }
+            if (file == null) {
+                session.write(LocalizedDataTransferFtpReply.translate(session, request, context,
+                        FtpReply.REPLY_550_REQUESTED_ACTION_NOT_TAKEN, "STOR.invalid", fileName, null));
+                return;
+            }
+            fileName = file.getAbsolutePath();
+
+            if (!file.isWritable()) {
+                session.write(LocalizedDataTransferFtpReply.translate(session, request, context,
+                        FtpReply.REPLY_550_REQUESTED_ACTION_NOT_TAKEN, "STOR.permission", fileName, file));
+                return;
+            }
+
+            session.write(LocalizedFtpReply.translate(session, request, context,
+                    FtpReply.REPLY_150_FILE_STATUS_OKAY, "STOR", fileName)).awaitUninterruptibly(REPLY_TIMEOUT_MILLIS);
+
+            DataConnection dataConnection;
+            try {
+                dataConnection = session.getDataConnection().openConnection();
+            } catch (Exception e) {
+                logger.debug("Exception getting the input data stream", e);
+                session.write(LocalizedDataTransferFtpReply.translate(session, request, context,
+                        FtpReply.REPLY_425_CANT_OPEN_DATA_CONNECTION, "STOR", fileName, file));
+                return;
+            }
+
+            OutputStream os = null;
+            long transferred;
+            try {
+                os = file.createOutputStream(offset);
+                try {
+                    transferred = dataConnection.transferFromClient(session.getFtpletSession(), os);
+                } catch (IOException e) {
+                    // 应答前关闭，客户端收到应答后即可通过 SIZE 取得续传偏移量
+                    DataConnectionStreams.abort(os);
+                    IoUtils.close(os);
+                    throw e;
+                }
+                // 关闭时提交上传，失败需返回给客户端
+                os.close();
+                logger.info("File uploaded {}", fileName);
+                ((ServerFtpStatistics) context.getFtpStatistics()).setUpload(session, file, transferred);
+            } catch (SocketException e) {
+                logger.debug("Socket exception during data transfer", e);
+                session.write(LocalizedDataTransferFtpReply.translate(session, request, context,
+                        FtpReply.REPLY_426_CONNECTION_CLOSED_TRANSFER_ABORTED, "STOR", fileName, file));
+                return;
+            } catch (IOException e) {
+                logger.debug("IOException during data transfer", e);
+                session.write(LocalizedDataTransferFtpReply.translate(session, request, context,
+                        FtpReply.REPLY_551_REQUESTED_ACTION_ABORTED_PAGE_TYPE_UNKNOWN, "STOR", fileName, file));
+                return;
+            } finally {
+                IoUtils.close(os);
+            }
+
+            session.write(LocalizedDataTransferFtpReply.translate(session, request, context,
+                    FtpReply.REPLY_226_CLOSING_DATA_CONNECTION, "STOR", fileName, file, transferred));
+        } finally {
+            session.resetState();
+            session.getDataConnection().closeDataConnection();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.s3.ftp.command;
+
+import com.s3.ftp.s3.S3FtpFile;
+import org.apache.ftpserver.command.AbstractCommand;
+import org.apache.ftpserver.command.Command;
+import org.apache.ftpserver.command.impl.listing.*;
+import org.apache.ftpserver.ftplet.*;
+import org.apache.ftpserver.impl.FtpIoSession;
+import org.apache.ftpserver.impl.FtpServerContext;
+import org.apache.ftpserver.impl.IODataConnectionFactory;
+import org.apache.ftpserver.impl.LocalizedDataTransferFtpReply;
+import org.apache.ftpserver.impl.LocalizedFtpReply;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * LIST/NLST/MLSD 命令实现。与 ftpserver 内置实现不同，目录内容边遍历边写入数据连接，
+ * 不在内存中拼接完整的列表，递归列表（-R）仍交由内置实现处理。
+ * 文件大小、修改时间等信息直接取自 LIST 结果，不会为每个文件单独请求 S3。
+ */
+public final class StreamingListCommand extends AbstractCommand {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingListCommand.class);
+
+    private static final FileFormater LIST_FILE_FORMATER = new LISTFileFormater();
+
+    private static final FileFormater NLST_FILE_FORMATER = new NLSTFileFormater();
+
+    /**
+     * ftpserver 保存 OPTS MLST 所选字段的会话属性
+     */
+    private static final String MLST_TYPES = "MLST.types";
+
+    private final String command;
+
+    /**
+     * MLSD 的输出字段由会话中 OPTS MLST 的设置决定，因此按会话创建
+     */
+    private final Function<FtpIoSession, FileFormater> formater;
+
+    private final Command fallback;
+
+    private StreamingListCommand(String command, Function<FtpIoSession, FileFormater> formater, Command fallback) {
+        this.command = command;
+        this.formater = formater;
+        this.fallback = fallback;
+    }
+
+    public static StreamingListCommand list() {
+        return new StreamingListCommand("LIST", session -> LIST_FILE_FORMATER,
+                new org.apache.ftpserver.command.impl.LIST());
+    }
+
+    public static StreamingListCommand nlst() {
+        return new StreamingListCommand("NLST", session -> NLST_FILE_FORMATER,
+                new org.apache.ftpserver.command.impl.NLST());
+    }
+
+    public static StreamingListCommand mlsd() {
+        return new StreamingListCommand("MLSD",
+                session -> new MLSTFileFormater((String[]) session.getAttribute(MLST_TYPES)),
+                new org.apache.ftpserver.command.impl.MLSD());
+    }
+
+    @Override
+    public void execute(FtpIoSession session, FtpServerContext context, FtpRequest request)
+            throws IOException, FtpException {
+        ListArgument parsedArg;
+        try {
+            parsedArg = ListArgumentParser.parse(request.getArgument());
+        } catch (IllegalArgumentException e) {
+            parsedArg = null;
+        }
+
+        if (parsedArg == null || parsedArg.hasOption('R')) {
+            fallback.execute(session, context, request);
+            return;
+        }
+
+        try {
+            session.resetState();
+
+            FtpFile file = session.getFileSystemView().getFile(parsedArg.getFile());
+            if (!file.doesExist()) {
+                logger.debug("Listing on a non-existing file");
+                session.write(LocalizedDataTransferFtpReply.translate(session, request, context,
+                        FtpReply.REPLY_450_REQUESTED_FILE_ACTION_NOT_TAKEN, command, null, file));
+                return;
+            }
+
+            if (session.getDataConnection() instanceof IODataConnectionFactory factory
+                    && factory.getInetAddress() == null) {
+                session.write(new DefaultFtpReply(FtpReply.REPLY_503_BAD_SEQUENCE_OF_COMMANDS,
+                        "PORT or PASV must be issued first"));
+                return;
+            }
+
+            session.write(LocalizedFtpReply.translate(session, request, context,
+                    FtpReply.REPLY_150_FILE_STATUS_OKAY, command, null));
+
+            DataConnection dataConnection;
+            try {
+                dataConnection = session.getDataConnection().openConnection();
+            } catch (Exception e) {
+                logger.debug("Exception getting the output data stream", e);
+                session.write(LocalizedDataTransferFtpReply.translate(session, request, context,
+                        FtpReply.REPLY_425_CANT_OPEN_DATA_CONNECTION, command, null, file));
+                return;
+            }
+
+            long transferred;
+            try (InputStream is = new ListingInputStream(iterate(file), createFilter(parsedArg),
+                    resolveFormater(session, parsedArg))) {
+                transferred = dataConnection.transferToClient(session.getFtpletSession(), is);
+            } catch (SocketException e) {
+                logger.debug("Socket exception during list transfer", e);
+                session.write(LocalizedDataTransferFtpReply.translate(session, request, context,
+                        FtpReply.REPLY_426_CONNECTION_CLOSED_TRANSFER_ABORTED, command, null, file));
+                return;
+            } catch (IOException | RuntimeException e) {
+                logger.debug("Exception during list transfer", e);
+                session.write(LocalizedDataTransferFtpReply.translate(session, request, context,
+                        FtpReply.REPLY_551_REQUESTED_ACTION_ABORTED_PAGE_TYPE_UNKNOWN, command, null, file));
+                return;
+            }
+
+            session.write(LocalizedDataTransferFtpReply.translate(session, request, context,
+                    FtpReply.REPLY_226_CLOSING_DATA_CONNECTION, command, null, file, transferred));
+        } finally {
+            session.getDataConnection().closeDataConnection();
+        }
+    }
+
+    private Iterator<? extends FtpFile> iterate(FtpFile file) {
+        if (file.isFile()) {
+            return List.of(file).iterator();
+        }
+
+        if (file instanceof S3FtpFile s3File) {
+            return s3File.iterateFiles();
+        }
+
+        List<? extends FtpFile> files = file.listFiles();
+        return files != null ? files.iterator() : List.<FtpFile>of().iterator();
+    }
+
+    private FileFilter createFilter(ListArgument argument) {
+        FileFilter filter = argument.hasOption('a') ? null : new VisibleFileFilter();
+        if (argument.getPattern() != null) {
+            filter = new RegexFileFilter(argument.getPattern(), filter);
+        }
+        return filter;
+    }
+
+    private FileFormater resolveFormater(FtpIoSession session, ListArgument argument) {
+        FileFormater sessionFormater = formater.apply(session);
+        if (sessionFormater == NLST_FILE_FORMATER && argument.hasOption('l')) {
+            return LIST_FILE_FORMATER;
+        }
+        return sessionFormater;
+    }
+}
@@ -0,0 +1,142 @@
+package com.s3.ftp.config;
+
+import org.apache.ftpserver.ftplet.Authentication;
+import org.apache.ftpserver.ftplet.AuthenticationFailedException;
+import org.apache.ftpserver.ftplet.Authority;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.ftplet.User;
+import org.apache.ftpserver.usermanager.AnonymousAuthentication;
+import org.apache.ftpserver.usermanager.Md5PasswordEncryptor;
+import org.apache.ftpserver.usermanager.UsernamePasswordAuthentication;
+import org.apache.ftpserver.usermanager.impl.AbstractUserManager;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+import org.apache.ftpserver.usermanager.impl.ConcurrentLoginPermission;
+import org.apache.ftpserver.usermanager.impl.TransferRatePermission;
+import org.apache.ftpserver.usermanager.impl.WritePermission;
+import org.apache.ftpserver.util.BaseProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * 直接读取配置中以 ftpserver.user. 开头的用户，属性、默认值与密码格式（MD5）与 ftpserver 的 PropertiesUserManager 相同，
+ * 不再将配置写入临时文件后再由 PropertiesUserManager 读取。用户只能通过配置文件管理，不支持保存与删除。
+ */
+final class ConfigUserManager extends AbstractUserManager {
+
+    private static final String PREFIX = "ftpserver.user.";
+
+    private static final String ADMIN_NAME = "admin";
+
+    private static final String ANONYMOUS_NAME = "anonymous";
+
+    private static final String HOME_SUFFIX = "." + ATTR_HOME;
+
+    private volatile BaseProperties users;
+
+    ConfigUserManager(Properties props) {
+        super(ADMIN_NAME, new Md5PasswordEncryptor());
+        reload(props);
+    }
+
+    /**
+     * 替换全部用户，已登录的会话不受影响。
+     */
+    void reload(Properties props) {
+        BaseProperties users = new BaseProperties();
+        props.stringPropertyNames().stream()
+                .filter(key -> key.startsWith(PREFIX))
+                .forEach(key -> users.setProperty(key, props.getProperty(key)));
+        this.users = users;
+    }
+
+    @Override
+    public User getUserByName(String name) {
+        return getUserByName(users, name);
+    }
+
+    @Override
+    public String[] getAllUserNames() {
+        return users.stringPropertyNames().stream()
+                .filter(key -> key.startsWith(PREFIX) && key.endsWith(HOME_SUFFIX))
+                .map(key -> key.substring(PREFIX.length(), key.length() - HOME_SUFFIX.length()))
+                .sorted()
+                .toArray(String[]::new);
+    }
+
+    @Override
+    public void delete(String name) throws FtpException {
+        throw new FtpException("Users are read only, edit the configuration instead");
+    }
+
+    @Override
+    public void save(User user) throws FtpException {
+        throw new FtpException("Users are read only, edit the configuration instead");
+    }
+
+    @Override
+    public boolean doesExist(String name) {
+        return doesExist(users, name);
+    }
+
+    @Override
+    public User authenticate(Authentication authentication) throws AuthenticationFailedException {
+        BaseProperties users = this.users;
+
+        if (authentication instanceof UsernamePasswordAuthentication auth) {
+            String name = auth.getUsername();
+            if (name == null) {
+                throw new AuthenticationFailedException("Authentication failed");
+            }
+
+            String storedPassword = users.getProperty(PREFIX + name + '.' + ATTR_PASSWORD);
+            String password = auth.getPassword() == null ? "" : auth.getPassword();
+            if (storedPassword == null || !getPasswordEncryptor().matches(password, storedPassword)) {
+                throw new AuthenticationFailedException("Authentication failed");
+            }
+            return getUserByName(users, name);
+        }
+
+        if (authentication instanceof AnonymousAuthentication) {
+            if (!doesExist(users, ANONYMOUS_NAME)) {
+                throw new AuthenticationFailedException("Authentication failed");
+            }
+            return getUserByName(users, ANONYMOUS_NAME);
+        }
+
+        throw new IllegalArgumentException("Authentication not supported by this user manager");
+    }
+
+    private static boolean doesExist(BaseProperties users, String name) {
+        return users.containsKey(PREFIX + name + HOME_SUFFIX);
+    }
+
+    private static User getUserByName(BaseProperties users, String name) {
+        if (!doesExist(users, name)) {
+            return null;
+        }
+
+        String baseKey = PREFIX + name + '.';
+        BaseUser user = new BaseUser();
+        user.setName(name);
+        user.setEnabled(users.getBoolean(baseKey + ATTR_ENABLE, true));
+        user.setHomeDirectory(users.getProperty(baseKey + ATTR_HOME, "/"));
+
+        List<Authority> authorities = new ArrayList<>();
+        if (users.getBoolean(baseKey + ATTR_WRITE_PERM, false)) {
+            authorities.add(new WritePermission());
+        }
+        authorities.add(new ConcurrentLoginPermission(
+                users.getInteger(baseKey + ATTR_MAX_LOGIN_NUMBER, 0),
+                users.getInteger(baseKey + ATTR_MAX_LOGIN_PER_IP, 0)
+        ));
+        authorities.add(new TransferRatePermission(
+                users.getInteger(baseKey + ATTR_MAX_DOWNLOAD_RATE, 0),
+                users.getInteger(baseKey + ATTR_MAX_UPLOAD_RATE, 0)
+        ));
+        user.setAuthorities(authorities);
+        user.setMaxIdleTime(users.getInteger(baseKey + ATTR_MAX_IDLE_TIME, 0));
+        return user;
+    }
+}
@@ -0,0 +1,106 @@
+package com.s3.ftp.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * 定期检查配置文件的修改时间，变化后调用 {@link GlobalConfiguration#reload(Path)} 重新加载。
+ * 修改时间需在相邻两次检查中保持不变才会加载，避免读取到正在写入的文件。
+ */
+public final class ConfigWatcher implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigWatcher.class);
+
+    private static final String THREAD_NAME = "s3-ftp-config-watcher";
+
+    private final Path path;
+
+    private final long intervalMillis;
+
+    private final Thread thread;
+
+    /**
+     * 最近一次加载（或启动时）的文件修改时间
+     */
+    private FileTime loaded;
+
+    /**
+     * 已发现但尚未确认写入完成的修改时间
+     */
+    private FileTime pending;
+
+    private volatile boolean closed = false;
+
+    public ConfigWatcher(Path path, long intervalMillis) {
+        this.path = path;
+        this.intervalMillis = intervalMillis;
+        this.loaded = modifiedTime();
+        this.thread = new Thread(this::run, THREAD_NAME);
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+        logger.info("Watching configuration {} every {}ms", path, intervalMillis);
+    }
+
+    /**
+     * 检查一次配置文件，加载失败时保留原有配置，直到文件再次修改。
+     *
+     * @return 是否重新加载了配置
+     */
+    boolean check() {
+        FileTime modified = modifiedTime();
+        if (modified == null || modified.equals(loaded)) {
+            pending = null;
+            return false;
+        }
+
+        if (!modified.equals(pending)) {
+            pending = modified;
+            return false;
+        }
+
+        loaded = modified;
+        pending = null;
+        try {
+            GlobalConfiguration.reload(path);
+            logger.info("Configuration {} reloaded", path);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Reload configuration {} failed, keep the current configuration", path, e);
+            return false;
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            check();
+        }
+    }
+
+    private FileTime modifiedTime() {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            logger.debug("Read modified time of {} failed", path, e);
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+    }
+}
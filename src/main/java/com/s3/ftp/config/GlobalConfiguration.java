@@ -1,89 +1,167 @@
 package com.s3.ftp.config;
 
+import com.s3.ftp.command.FileHashCommand;
+import com.s3.ftp.command.SizeCommand;
+import com.s3.ftp.command.StoreCommand;
+import com.s3.ftp.command.StreamingListCommand;
+import com.s3.ftp.metrics.MetricsFtplet;
+import com.s3.ftp.metrics.MetricsHttpServer;
 import com.s3.ftp.s3.S3ClientRegistry;
 import com.s3.ftp.s3.S3FileSystemFactory;
+import com.s3.ftp.s3.S3UploadJanitor;
+import com.s3.ftp.throttle.ThrottleFtplet;
+import com.s3.ftp.throttle.Throttles;
+import com.s3.ftp.util.VirtualThreads;
 import org.apache.ftpserver.*;
+import org.apache.ftpserver.command.CommandFactory;
+import org.apache.ftpserver.command.CommandFactoryFactory;
+import org.apache.ftpserver.ftplet.Ftplet;
+import org.apache.ftpserver.impl.DefaultFtpServer;
 import org.apache.ftpserver.listener.ListenerFactory;
 import org.apache.ftpserver.ssl.SslConfiguration;
 import org.apache.ftpserver.ssl.SslConfigurationFactory;
-import org.apache.ftpserver.usermanager.PropertiesUserManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 public final class GlobalConfiguration {
 
     private static final String DEFAULT_LISTENER_NAME = "default";
 
-    private static Properties configProperties;
+    private static final String METRICS_FTPLET_NAME = "metrics";
 
-    private static String bindAddress;
+    private static final String THROTTLE_FTPLET_NAME = "throttle";
 
-    private static int port = 2121;
+    private static final String SESSION_THREAD_NAME_PREFIX = "ftp-session-";
 
-    private static int idleTimeout = 300;
-
-    private static String passiveExternalAddress;
-
-    private static String passivePorts;
-
-    private static String keyStorePath;
+    /**
+     * 使用虚拟线程且未配置 max-threads 时，同时处理会话事件的线程数上限
+     */
+    private static final int VIRTUAL_SESSION_THREADS_MAX = 10000;
 
-    private static String keyStorePassword;
+    /**
+     * 只在启动时生效的配置，重新加载时发生变化仅记录警告
+     */
+    private static final List<String> RESTART_REQUIRED_PREFIXES = List.of(
+            "s3-ftp.bind-address", "s3-ftp.port", "s3-ftp.idle-timeout", "s3-ftp.passive.", "s3-ftp.ssl.",
+            "s3-ftp.anonymous-enabled", "s3-ftp.max-logins", "s3-ftp.max-threads", "s3-ftp.virtual-threads-enabled",
+            "s3-ftp.metrics.", "s3-ftp.config-reload-interval"
+    );
 
-    private static boolean implicitSsl = false;
+    private static final Logger logger = LoggerFactory.getLogger(GlobalConfiguration.class);
 
-    private static boolean anonymousEnabled = false;
+    /**
+     * 重新加载配置后需要同步更新的组件（存储客户端、用户、限速），由 {@link #createServerFactory()} 注册
+     */
+    private static final List<Consumer<Properties>> reloadListeners = new CopyOnWriteArrayList<>();
 
-    private static int maxLogins = 10;
+    private static final AtomicReference<CompletableFuture<Void>> clientsPrewarm =
+            new AtomicReference<>(CompletableFuture.completedFuture(null));
 
-    private static int maxThreads = 0;
+    /**
+     * 最近一次创建服务时启动的分片上传清理线程，再次创建服务时关闭
+     */
+    private static final AtomicReference<S3UploadJanitor> uploadJanitor = new AtomicReference<>();
 
     /**
-     * 遍历目录时最大返回数据量，过低可能引起执行 LIST 操作时数据缺失。
+     * 当前配置，整体替换。读取方在会话或传输开始时取得一次，之后只使用取得的对象。
      */
-    public static int maxListKeysLimit = 10000;
+    private static volatile Settings settings = Settings.DEFAULTS;
+
+    private GlobalConfiguration() {
+        //private
+    }
 
     /**
-     * 服务端向 S3 写入前的写缓存，默认为 10MiB，不得小于 5MiB
+     * 当前配置
      */
-    public static int writeBufferSize = 1024 * 1024 * 10;
+    public static Settings settings() {
+        return settings;
+    }
 
     /**
-     * 模拟追加写时，需要先将 S3 数据取回再写入。这里设置此类行为时最大支持的追加偏移量。
+     * 替换当前配置，不通知已注册的组件。之后开始的会话与传输使用新配置。
      */
-    public static int maxAppendOffsetSize = 1024 * 1024 * 20;
+    public static void publish(Settings settings) {
+        GlobalConfiguration.settings = settings;
+    }
 
-    private GlobalConfiguration() {
-        //private
+    public static FtpServer createServer() throws IOException {
+        FtpServer server = createServerFactory().createServer();
+        if (settings.virtualThreadsEnabled) {
+            configureSessionThreads(server);
+        }
+        return server;
     }
 
     public static FtpServerFactory createServerFactory() throws IOException {
-        ListenerFactory factory = GlobalConfiguration.createListenerFactory();
+        Settings settings = GlobalConfiguration.settings;
+        Properties configProperties = settings.properties();
+        ListenerFactory factory = GlobalConfiguration.createListenerFactory(settings);
 
         FtpServerFactory serverFactory = new FtpServerFactory();
-        serverFactory.setConnectionConfig(GlobalConfiguration.createConnectionConfig());
+        serverFactory.setConnectionConfig(GlobalConfiguration.createConnectionConfig(settings));
+        serverFactory.setCommandFactory(GlobalConfiguration.createCommandFactory());
         serverFactory.addListener(DEFAULT_LISTENER_NAME, factory.createListener());
 
-        S3FileSystemFactory fileSystemFactory = new S3FileSystemFactory(new S3ClientRegistry(configProperties));
-        serverFactory.setFileSystem(fileSystemFactory);
+        Map<String, Ftplet> ftplets = new HashMap<>();
+        ftplets.put(THROTTLE_FTPLET_NAME, new ThrottleFtplet());
+        if (settings.metricsEnabled) {
+            ftplets.put(METRICS_FTPLET_NAME, new MetricsFtplet());
+        }
+        serverFactory.setFtplets(ftplets);
+        Throttles.configure(configProperties);
+
+        reloadListeners.clear();
+        reloadListeners.add(Throttles::configure);
 
-        if (configProperties.keySet().stream().anyMatch(v -> v.toString().startsWith("ftpserver.user"))) {
-            PropertiesUserManagerFactory userManagerFactory = new PropertiesUserManagerFactory();
+        S3ClientRegistry clientRegistry = new S3ClientRegistry(configProperties);
+        reloadListeners.add(clientRegistry::reload);
+        serverFactory.setFileSystem(new S3FileSystemFactory(clientRegistry));
 
-            Path userFile = createUserProperties(configProperties);
-            userManagerFactory.setFile(userFile.toFile());
-            serverFactory.setUserManager(userManagerFactory.createUserManager());
+        clientsPrewarm.set(settings.prewarmClients ? clientRegistry.prewarm() : CompletableFuture.completedFuture(null));
+
+        S3UploadJanitor janitor = new S3UploadJanitor(clientRegistry, configProperties);
+        reloadListeners.add(janitor::reload);
+        janitor.start();
+        Optional.ofNullable(uploadJanitor.getAndSet(janitor)).ifPresent(S3UploadJanitor::close);
+
+        if (configProperties.keySet().stream().anyMatch(v -> v.toString().startsWith("ftpserver.user"))) {
+            ConfigUserManager userManager = new ConfigUserManager(configProperties);
+            reloadListeners.add(userManager::reload);
+            serverFactory.setUserManager(userManager);
         }
 
         return serverFactory;
     }
 
+    /**
+     * 按配置创建 /metrics 接口，未配置端口或关闭指标时返回空。
+     */
+    public static Optional<MetricsHttpServer> createMetricsServer() throws IOException {
+        Settings settings = GlobalConfiguration.settings;
+        if (!settings.metricsEnabled || settings.metricsPort <= 0) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new MetricsHttpServer(settings.metricsBindAddress, settings.metricsPort));
+    }
+
     public static void load(Path path) throws IOException {
         if (Files.notExists(path)) {
             throw new IllegalArgumentException("Configuration not found");
@@ -93,35 +171,55 @@ public final class GlobalConfiguration {
     }
 
     static void init(Properties props) {
-        bindAddress = props.getProperty("s3-ftp.bind-address");
-        port = Integer.parseInt(props.getProperty("s3-ftp.port", String.valueOf(port)));
-        idleTimeout = Integer.parseInt(props.getProperty("s3-ftp.idle-timeout", String.valueOf(idleTimeout)));
-        passiveExternalAddress = props.getProperty("s3-ftp.passive.external-address");
-        passivePorts = props.getProperty("s3-ftp.passive.ports");
-        keyStorePath = props.getProperty("s3-ftp.ssl.key-path");
-        keyStorePassword = props.getProperty("s3-ftp.ssl.key-password");
-        implicitSsl = Boolean.parseBoolean(props.getProperty("s3-ftp.ssl.implicit", String.valueOf(implicitSsl)));
-        anonymousEnabled = Boolean.parseBoolean(
-                props.getProperty("s3-ftp.anonymous-enabled", String.valueOf(anonymousEnabled))
-        );
-        maxLogins = Integer.parseInt(props.getProperty("s3-ftp.max-logins", String.valueOf(maxLogins)));
-        maxThreads = Integer.parseInt(props.getProperty("s3-ftp.max-threads", String.valueOf(maxThreads)));
-
-        maxListKeysLimit = Integer.parseInt(
-                props.getProperty("s3-ftp.max-list-keys-limit", String.valueOf(maxListKeysLimit))
-        );
-        writeBufferSize = Integer.parseInt(
-                props.getProperty("s3-ftp.write-buffer-size", String.valueOf(writeBufferSize))
-        );
-        maxAppendOffsetSize = Integer.parseInt(
-                props.getProperty("s3-ftp.max-append-offset-size", String.valueOf(maxAppendOffsetSize))
-        );
-
-        if (1024 * 1024 * 5 > writeBufferSize) {
-            throw new IllegalArgumentException("write-buffer-size must large then 5MiB");
+        settings = new Settings(props);
+    }
+
+    /**
+     * 最近一次创建服务时的客户端预热，未开启预热时为已完成状态。
+     */
+    public static CompletableFuture<Void> clientsPrewarm() {
+        return clientsPrewarm.get();
+    }
+
+    /**
+     * 按配置创建配置文件的监视线程，未配置检查间隔时返回空。
+     */
+    public static Optional<ConfigWatcher> createConfigWatcher(Path path) {
+        int interval = settings.configReloadInterval;
+        if (interval <= 0) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new ConfigWatcher(path, interval * 1000L));
+    }
+
+    /**
+     * 重新读取配置文件，解析并校验通过后整体替换当前配置，之后通知已注册的组件。校验失败时抛出异常，当前配置不变。
+     * 已建立的会话与进行中的传输继续使用原有的客户端和参数，新的会话与传输使用新配置。
+     */
+    public static synchronized void reload(Path path) throws IOException {
+        if (Files.notExists(path)) {
+            throw new IllegalArgumentException("Configuration not found");
         }
 
-        GlobalConfiguration.configProperties = props;
+        Settings next = new Settings(readConfigProperties(path));
+        Settings previous = settings;
+        settings = next;
+
+        Properties props = next.properties();
+        warnRestartRequired(previous.properties(), props);
+        reloadListeners.forEach(listener -> listener.accept(props));
+    }
+
+    private static void warnRestartRequired(Properties previous, Properties props) {
+        props.stringPropertyNames().stream()
+                .filter(key -> RESTART_REQUIRED_PREFIXES.stream().anyMatch(key::startsWith))
+                .filter(key -> !props.getProperty(key).equals(previous.getProperty(key)))
+                .forEach(key -> logger.warn("{} changed, restart the server to apply", key));
+        previous.stringPropertyNames().stream()
+                .filter(key -> RESTART_REQUIRED_PREFIXES.stream().anyMatch(key::startsWith))
+                .filter(key -> !props.containsKey(key))
+                .forEach(key -> logger.warn("{} removed, restart the server to apply", key));
     }
 
     private static Properties readConfigProperties(Path path) throws IOException {
@@ -132,53 +230,74 @@ public final class GlobalConfiguration {
         return properties;
     }
 
-    private static ListenerFactory createListenerFactory() {
+    private static ListenerFactory createListenerFactory(Settings settings) {
         ListenerFactory factory = new ListenerFactory();
-        factory.setServerAddress(bindAddress);
-        factory.setPort(port);
-        factory.setIdleTimeout(idleTimeout);
+        factory.setServerAddress(settings.bindAddress);
+        factory.setPort(settings.port);
+        factory.setIdleTimeout(settings.idleTimeout);
 
         SslConfiguration sslConfiguration = null;
-        if (keyStorePath != null && keyStorePassword != null) {
+        if (settings.keyStorePath != null && settings.keyStorePassword != null) {
             SslConfigurationFactory ssl = new SslConfigurationFactory();
-            ssl.setKeystoreFile(new File(keyStorePath));
-            ssl.setKeystorePassword(keyStorePassword);
+            ssl.setKeystoreFile(new File(settings.keyStorePath));
+            ssl.setKeystorePassword(settings.keyStorePassword);
             sslConfiguration = ssl.createSslConfiguration();
         }
 
-        factory.setDataConnectionConfiguration(createDataConnectionConfiguration(sslConfiguration));
+        factory.setDataConnectionConfiguration(createDataConnectionConfiguration(settings, sslConfiguration));
         factory.setSslConfiguration(sslConfiguration);
-        factory.setImplicitSsl(implicitSsl);
+        factory.setImplicitSsl(settings.implicitSsl);
 
         return factory;
     }
 
-    private static DataConnectionConfiguration createDataConnectionConfiguration(SslConfiguration ssl) {
+    private static DataConnectionConfiguration createDataConnectionConfiguration(Settings settings,
+                                                                                 SslConfiguration ssl) {
         DataConnectionConfigurationFactory factory = new DataConnectionConfigurationFactory();
         factory.setSslConfiguration(ssl);
-        factory.setImplicitSsl(implicitSsl);
-        factory.setIdleTime(idleTimeout);
-        factory.setPassiveExternalAddress(passiveExternalAddress);
-        if (passivePorts != null) {
-            factory.setPassivePorts(passivePorts);
+        factory.setImplicitSsl(settings.implicitSsl);
+        factory.setIdleTime(settings.idleTimeout);
+        factory.setPassiveExternalAddress(settings.passiveExternalAddress);
+        if (settings.passivePorts != null) {
+            factory.setPassivePorts(settings.passivePorts);
         }
 
         return factory.createDataConnectionConfiguration();
     }
 
-    private static ConnectionConfig createConnectionConfig() {
-        ConnectionConfigFactory factory = new ConnectionConfigFactory();
-        factory.setAnonymousLoginEnabled(anonymousEnabled);
-        factory.setMaxLogins(maxLogins);
-        factory.setMaxThreads(maxThreads);
-        return factory.createConnectionConfig();
+    private static CommandFactory createCommandFactory() {
+        CommandFactoryFactory factory = new CommandFactoryFactory();
+        factory.addCommand("LIST", StreamingListCommand.list());
+        factory.addCommand("NLST", StreamingListCommand.nlst());
+        factory.addCommand("MLSD", StreamingListCommand.mlsd());
+        factory.addCommand("STOR", new StoreCommand());
+        factory.addCommand("SIZE", new SizeCommand());
+        factory.addCommand("XMD5", FileHashCommand.xmd5());
+        factory.addCommand("XCRC", FileHashCommand.xcrc());
+        factory.addCommand("HASH", FileHashCommand.hash());
+        return factory.createCommandFactory();
     }
 
-    private static Path createUserProperties(Properties configProperties) throws IOException {
-        Path userFile = Files.createTempFile("s3-ftp-user", ".properties");
-        try (OutputStream os = Files.newOutputStream(userFile)) {
-            configProperties.store(os, "Users");
+    /**
+     * 将 ftpserver 处理会话事件的线程池切换为虚拟线程，会话中阻塞的 S3 调用不再占用平台线程。
+     */
+    public static void configureSessionThreads(FtpServer server) {
+        if (!VirtualThreads.isSupported()) {
+            logger.warn("Virtual threads require Java 21 or later, keep using platform threads");
+            return;
         }
-        return userFile;
+
+        ThreadPoolExecutor executor = ((DefaultFtpServer) server).getServerContext().getThreadPoolExecutor();
+        executor.setThreadFactory(VirtualThreads.factory(SESSION_THREAD_NAME_PREFIX));
+        int maxThreads = settings.maxThreads;
+        executor.setMaximumPoolSize(maxThreads > 0 ? maxThreads : VIRTUAL_SESSION_THREADS_MAX);
+    }
+
+    private static ConnectionConfig createConnectionConfig(Settings settings) {
+        ConnectionConfigFactory factory = new ConnectionConfigFactory();
+        factory.setAnonymousLoginEnabled(settings.anonymousEnabled);
+        factory.setMaxLogins(settings.maxLogins);
+        factory.setMaxThreads(settings.maxThreads);
+        return factory.createConnectionConfig();
     }
 }
@@ -0,0 +1,417 @@
+package com.s3.ftp.config;
+
+import com.s3.ftp.s3.S3FileHash;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * 一次读取得到的全部配置，创建时完成解析与校验，之后不再修改。
+ * {@link GlobalConfiguration} 以单个 volatile 引用发布当前配置，会话与传输流开始时取得一次并一直使用，
+ * 重新加载时不会读到默认值、新旧混合或校验失败的配置。
+ */
+public final class Settings {
+
+    private static final String TEMP_DIR = System.getProperty("java.io.tmpdir") + File.separator;
+
+    public static final Settings DEFAULTS = new Settings(new Properties());
+
+    private final Properties properties;
+
+    final String bindAddress;
+
+    final int port;
+
+    final int idleTimeout;
+
+    final String passiveExternalAddress;
+
+    final String passivePorts;
+
+    final String keyStorePath;
+
+    final String keyStorePassword;
+
+    final boolean implicitSsl;
+
+    final boolean anonymousEnabled;
+
+    final int maxLogins;
+
+    final int maxThreads;
+
+    /**
+     * 是否使用虚拟线程处理会话命令、数据传输以及后台 S3 传输任务，需要 Java 21 及以上版本。
+     * 开启后 max-threads 为 0 时不再按登录数限制会话线程数量。
+     */
+    public final boolean virtualThreadsEnabled;
+
+    /**
+     * 遍历目录时单次请求返回的最大数据量，超出时按页继续获取。S3 服务端通常限制为 1000。
+     */
+    public final int maxListKeysLimit;
+
+    /**
+     * 服务端向 S3 写入前的写缓存，默认为 10MiB，不得小于 5MiB
+     */
+    public final int writeBufferSize;
+
+    /**
+     * 追加写时，偏移量小于该值则将 S3 数据取回再写入，否则在服务端复制已有数据。最小为 5MiB。
+     */
+    public final int maxAppendOffsetSize;
+
+    /**
+     * 单个上传流同时上传的分片数量，分片上传期间继续从数据连接读取数据。
+     */
+    public final int uploadConcurrency;
+
+    /**
+     * 单个上传流已读取但尚未上传完成的最大数据量，超出后暂停读取数据连接，默认为 64MiB
+     */
+    public final long maxUploadInFlightSize;
+
+    /**
+     * 分片上传的分片大小上限，默认为 S3 允许的 5GiB。分片从 write-buffer-size 开始随上传进度增大，
+     * 实际上限还受 write-buffer-size * write-buffer-pool-size / (upload-concurrency + 1)（内存写缓存）
+     * 或 upload-spool-max-size / (upload-concurrency + 1)（暂存模式）限制。
+     */
+    public final long maxPartSize;
+
+    /**
+     * 分片大小翻倍的间隔分片数。S3 限制单个对象最多 10000 个分片，
+     * 默认值下分片大小不受限时 10000 个分片可容纳超过 5TiB 的对象。
+     */
+    public final int partSizeGrowthParts;
+
+    /**
+     * 所有上传共用的写缓存数量上限，决定上传占用的最大内存（乘以 write-buffer-size）。
+     * 写缓存耗尽时新的写入将等待其他上传归还。
+     */
+    public final int writeBufferPoolSize;
+
+    /**
+     * 写缓存是否使用堆外内存
+     */
+    public final boolean writeBufferDirect;
+
+    /**
+     * 等待空闲写缓存的最长时间，单位为秒，超时后上传失败。
+     */
+    public final int writeBufferAcquireTimeout;
+
+    /**
+     * 是否将上传数据先写入本地暂存目录再异步上传。开启后客户端无需等待 S3 上传即可完成传输，
+     * 上传失败的分片可从暂存文件重试，此时不再使用内存写缓存。
+     */
+    public final boolean uploadSpoolEnabled;
+
+    /**
+     * 上传暂存目录
+     */
+    public final String uploadSpoolDir;
+
+    /**
+     * 暂存目录可占用的最大空间，默认为 10GiB，空间不足时暂停读取数据连接
+     */
+    public final long uploadSpoolMaxSize;
+
+    /**
+     * 是否在启动后首次使用暂存目录时清理上次运行遗留的暂存文件
+     */
+    public final boolean uploadSpoolCleanOnStart;
+
+    /**
+     * 分片上传失败后重新上传的次数，不包含 SDK 自身的重试
+     */
+    public final int uploadPartRetries;
+
+    /**
+     * 是否在本地记录进行中的分片上传。开启后失败的上传不再中止，连接中断或重启后
+     * 客户端以分片边界为偏移量续传时继续原有的分片上传，不需要复制已上传的数据。
+     */
+    public final boolean uploadJournalEnabled;
+
+    /**
+     * 分片上传日志目录，重启后保留
+     */
+    public final String uploadJournalDir;
+
+    /**
+     * 分片上传发起及最后一个分片上传后超过该小时数视为已放弃，由后台定期中止并删除对应的上传日志，0 为不清理
+     */
+    public final int abandonedUploadExpireHours;
+
+    /**
+     * 上传时随每个分片发送的 S3 校验和算法，CRC32C 或 SHA-256，由 S3 校验分片数据，为 null 时不发送。
+     */
+    public final S3FileHash uploadPartChecksum;
+
+    /**
+     * 上传时随数据流计算并保存为对象标签的整个文件摘要，可选 MD5、CRC32、CRC32C、SHA-256。
+     * 完整下载时按同样的算法校验，XMD5、XCRC、HASH 命令直接返回保存的摘要，第一个算法为 HASH 的默认算法。
+     */
+    public final List<S3FileHash> fileHashes;
+
+    /**
+     * 每个存储缓存的对象元数据条目上限，用于应答 SIZE/MDTM/CWD 等查询，为 0 时关闭缓存。
+     */
+    public final int metadataCacheSize;
+
+    /**
+     * 元数据缓存有效期，单位为秒。其他客户端直接写入 S3 的变更最多延迟这么久可见。
+     */
+    public final int metadataCacheTtl;
+
+    /**
+     * 下载时并发 Range 请求的分块大小，默认为 8MiB
+     */
+    public final int readAheadChunkSize;
+
+    /**
+     * 下载时同时请求的分块数量，同时也是单个下载流的缓冲区数量上限，为 1 时只使用单个连接下载。
+     */
+    public final int readAheadParallelism;
+
+    /**
+     * 待下载数据不小于此值时才启用并发分块下载，默认为 32MiB
+     */
+    public final long readAheadThreshold;
+
+    /**
+     * 所有下载共用的分块缓冲区数量上限，决定并发分块下载占用的最大内存（乘以 read-ahead-chunk-size）。
+     * 缓冲区不足时下载流减少同时请求的分块，至少保留一个分块继续下载。
+     */
+    public final int readAheadBufferPoolSize;
+
+    /**
+     * 是否为存储桶建立内存目录树，建立完成后 CWD、LIST、NLST、SIZE 等查询不再请求 S3。
+     * 目录树在首次登录时通过完整遍历存储桶建立，内存占用与对象数量成正比。
+     */
+    public final boolean directoryIndexEnabled;
+
+    /**
+     * 目录树重新遍历存储桶的间隔，单位为秒，用于合并其他客户端直接写入 S3 的变更，为 0 时不重新遍历。
+     */
+    public final int directoryIndexRefresh;
+
+    /**
+     * 是否将下载过的对象缓存到本地磁盘，重复下载同一对象时直接读取本地文件。
+     */
+    public final boolean downloadCacheEnabled;
+
+    /**
+     * 下载缓存目录
+     */
+    public final String downloadCacheDir;
+
+    /**
+     * 下载缓存可占用的最大空间，默认为 10GiB，超出后淘汰最久未读取的对象
+     */
+    public final long downloadCacheMaxSize;
+
+    /**
+     * 可缓存的单个对象大小上限，默认为 1GiB，更大的对象直接从 S3 下载
+     */
+    public final long downloadCacheMaxObjectSize;
+
+    /**
+     * 缓存对象免校验的有效期，单位为秒。超过后读取前以 ETag 发送条件 HEAD 确认对象未变化。
+     */
+    public final int downloadCacheTtl;
+
+    /**
+     * 目录重命名、递归删除等批量操作的并发请求数量
+     */
+    public final int batchConcurrency;
+
+    /**
+     * 递归遍历目录树（递归删除、目录重命名、建立目录树）时同时遍历的前缀数量
+     */
+    public final int listingConcurrency;
+
+    /**
+     * 是否允许删除非空目录，开启后 RMD 会删除目录下的全部对象。
+     */
+    public final boolean recursiveDeleteEnabled;
+
+    /**
+     * 是否在创建服务时于后台为所有存储创建 S3 客户端，首次登录不再等待 SDK 与 CRT 的加载和初始化。
+     */
+    public final boolean prewarmClients;
+
+    /**
+     * 是否收集 FTP 命令、S3 请求与传输量指标，并注册到 JMX 的 com.s3.ftp 域。
+     * 默认关闭，收集指标会在每次传输读写时计数；开启后 metrics.port 大于 0 时另外开启 /metrics 接口。
+     */
+    public final boolean metricsEnabled;
+
+    /**
+     * Prometheus 格式 /metrics 接口的监听端口，为 0 时不开启
+     */
+    final int metricsPort;
+
+    final String metricsBindAddress;
+
+    /**
+     * 检查配置文件是否修改的间隔，单位为秒，为 0 时不自动重新加载。
+     * 存储、用户、限速与传输参数在重新加载后对新的会话和传输生效，监听地址、端口、SSL 等仍需重启。
+     */
+    final int configReloadInterval;
+
+    public Settings(Properties props) {
+        this.properties = new Properties();
+        this.properties.putAll(props);
+
+        bindAddress = props.getProperty("s3-ftp.bind-address");
+        port = intValue(props, "s3-ftp.port", 2121);
+        idleTimeout = intValue(props, "s3-ftp.idle-timeout", 300);
+        passiveExternalAddress = props.getProperty("s3-ftp.passive.external-address");
+        passivePorts = props.getProperty("s3-ftp.passive.ports");
+        keyStorePath = props.getProperty("s3-ftp.ssl.key-path");
+        keyStorePassword = props.getProperty("s3-ftp.ssl.key-password");
+        implicitSsl = booleanValue(props, "s3-ftp.ssl.implicit", false);
+        anonymousEnabled = booleanValue(props, "s3-ftp.anonymous-enabled", false);
+        maxLogins = intValue(props, "s3-ftp.max-logins", 10);
+        maxThreads = intValue(props, "s3-ftp.max-threads", 0);
+        virtualThreadsEnabled = booleanValue(props, "s3-ftp.virtual-threads-enabled", false);
+
+        maxListKeysLimit = intValue(props, "s3-ftp.max-list-keys-limit", 10000);
+        writeBufferSize = intValue(props, "s3-ftp.write-buffer-size", 1024 * 1024 * 10);
+        maxAppendOffsetSize = intValue(props, "s3-ftp.max-append-offset-size", 1024 * 1024 * 5);
+        uploadConcurrency = intValue(props, "s3-ftp.upload-concurrency", 4);
+        maxUploadInFlightSize = longValue(props, "s3-ftp.max-upload-in-flight-size", 1024 * 1024 * 64);
+        maxPartSize = longValue(props, "s3-ftp.max-part-size", 1024L * 1024 * 1024 * 5);
+        partSizeGrowthParts = intValue(props, "s3-ftp.part-size-growth-parts", 1000);
+        writeBufferPoolSize = intValue(props, "s3-ftp.write-buffer-pool-size", 32);
+        writeBufferDirect = booleanValue(props, "s3-ftp.write-buffer-direct", false);
+        writeBufferAcquireTimeout = intValue(props, "s3-ftp.write-buffer-acquire-timeout", 60);
+        uploadSpoolEnabled = booleanValue(props, "s3-ftp.upload-spool-enabled", false);
+        uploadSpoolDir = props.getProperty("s3-ftp.upload-spool-dir", TEMP_DIR + "s3-ftp-spool");
+        uploadSpoolMaxSize = longValue(props, "s3-ftp.upload-spool-max-size", 1024L * 1024 * 1024 * 10);
+        uploadSpoolCleanOnStart = booleanValue(props, "s3-ftp.upload-spool-clean-on-start", true);
+        uploadPartRetries = intValue(props, "s3-ftp.upload-part-retries", 2);
+        uploadJournalEnabled = booleanValue(props, "s3-ftp.upload-journal-enabled", false);
+        uploadJournalDir = props.getProperty("s3-ftp.upload-journal-dir", TEMP_DIR + "s3-ftp-journal");
+        abandonedUploadExpireHours = intValue(props, "s3-ftp.abandoned-upload-expire-hours", 24);
+        String partChecksum = props.getProperty("s3-ftp.upload-part-checksum", "");
+        uploadPartChecksum = partChecksum.isBlank() ? null : parseHash(partChecksum);
+        fileHashes = Arrays.stream(props.getProperty("s3-ftp.file-hashes", "").split(","))
+                .filter(v -> !v.isBlank())
+                .map(Settings::parseHash)
+                .distinct()
+                .toList();
+        metadataCacheSize = intValue(props, "s3-ftp.metadata-cache-size", 10000);
+        metadataCacheTtl = intValue(props, "s3-ftp.metadata-cache-ttl", 30);
+        readAheadChunkSize = intValue(props, "s3-ftp.read-ahead-chunk-size", 1024 * 1024 * 8);
+        readAheadParallelism = intValue(props, "s3-ftp.read-ahead-parallelism", 4);
+        readAheadThreshold = longValue(props, "s3-ftp.read-ahead-threshold", 1024 * 1024 * 32);
+        readAheadBufferPoolSize = intValue(props, "s3-ftp.read-ahead-buffer-pool-size", 64);
+        directoryIndexEnabled = booleanValue(props, "s3-ftp.directory-index-enabled", false);
+        directoryIndexRefresh = intValue(props, "s3-ftp.directory-index-refresh", 300);
+        downloadCacheEnabled = booleanValue(props, "s3-ftp.download-cache-enabled", false);
+        downloadCacheDir = props.getProperty("s3-ftp.download-cache-dir", TEMP_DIR + "s3-ftp-cache");
+        downloadCacheMaxSize = longValue(props, "s3-ftp.download-cache-max-size", 1024L * 1024 * 1024 * 10);
+        downloadCacheMaxObjectSize = longValue(props, "s3-ftp.download-cache-max-object-size", 1024L * 1024 * 1024);
+        downloadCacheTtl = intValue(props, "s3-ftp.download-cache-ttl", 60);
+        batchConcurrency = intValue(props, "s3-ftp.batch-concurrency", 16);
+        listingConcurrency = intValue(props, "s3-ftp.listing-concurrency", 16);
+        recursiveDeleteEnabled = booleanValue(props, "s3-ftp.recursive-delete-enabled", false);
+        prewarmClients = booleanValue(props, "s3-ftp.prewarm-clients", false);
+        metricsEnabled = booleanValue(props, "s3-ftp.metrics.enabled", false);
+        metricsPort = intValue(props, "s3-ftp.metrics.port", 0);
+        metricsBindAddress = props.getProperty("s3-ftp.metrics.bind-address");
+        configReloadInterval = intValue(props, "s3-ftp.config-reload-interval", 0);
+
+        if (1024 * 1024 * 5 > writeBufferSize) {
+            throw new IllegalArgumentException("write-buffer-size must large then 5MiB");
+        }
+
+        if (maxPartSize < writeBufferSize || maxPartSize > 1024L * 1024 * 1024 * 5) {
+            throw new IllegalArgumentException("max-part-size must between write-buffer-size and 5GiB");
+        }
+
+        if (partSizeGrowthParts < 1) {
+            throw new IllegalArgumentException("part-size-growth-parts must large then 0");
+        }
+
+        if (readAheadChunkSize < 1) {
+            throw new IllegalArgumentException("read-ahead-chunk-size must large then 0");
+        }
+
+        if (readAheadBufferPoolSize < 1) {
+            throw new IllegalArgumentException("read-ahead-buffer-pool-size must large then 0");
+        }
+
+        if (batchConcurrency < 1) {
+            throw new IllegalArgumentException("batch-concurrency must large then 0");
+        }
+
+        if (listingConcurrency < 1) {
+            throw new IllegalArgumentException("listing-concurrency must large then 0");
+        }
+
+        if (writeBufferPoolSize < 1) {
+            throw new IllegalArgumentException("write-buffer-pool-size must large then 0");
+        }
+
+        if (uploadConcurrency < 1) {
+            throw new IllegalArgumentException("upload-concurrency must large then 0");
+        }
+
+        if (uploadSpoolEnabled && uploadSpoolMaxSize < writeBufferSize) {
+            throw new IllegalArgumentException("upload-spool-max-size must not less then write-buffer-size");
+        }
+
+        if (uploadPartChecksum != null && uploadPartChecksum != S3FileHash.CRC32C
+                && uploadPartChecksum != S3FileHash.SHA_256) {
+            throw new IllegalArgumentException("upload-part-checksum must be CRC32C or SHA-256");
+        }
+
+        if (downloadCacheEnabled && downloadCacheMaxSize < downloadCacheMaxObjectSize) {
+            throw new IllegalArgumentException(
+                    "download-cache-max-size must not less then download-cache-max-object-size"
+            );
+        }
+    }
+
+    /**
+     * 生成配置时读取的原始配置项（副本），存储、用户与限速配置由各组件自行解析
+     */
+    public Properties properties() {
+        Properties props = new Properties();
+        props.putAll(properties);
+        return props;
+    }
+
+    /**
+     * 修改单个配置项后得到的新配置，当前配置不变
+     */
+    public Settings with(String key, String value) {
+        Properties props = properties();
+        props.setProperty(key, value);
+        return new Settings(props);
+    }
+
+    private static int intValue(Properties props, String key, int defaultValue) {
+        String value = props.getProperty(key);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private static long longValue(Properties props, String key, long defaultValue) {
+        String value = props.getProperty(key);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    private static boolean booleanValue(Properties props, String key, boolean defaultValue) {
+        String value = props.getProperty(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    private static S3FileHash parseHash(String name) {
+        return S3FileHash.parse(name)
+                .orElseThrow(() -> new IllegalArgumentException("unknown hash algorithm " + name.trim()));
+    }
+}
@@ -0,0 +1,14 @@
+package com.s3.ftp.metrics;
+
+public interface HistogramMXBean {
+
+    long getCount();
+
+    double getMeanMillis();
+
+    double getMaxMillis();
+
+    double get50thPercentileMillis();
+
+    double get99thPercentileMillis();
+}
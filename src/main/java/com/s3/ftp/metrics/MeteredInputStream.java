@@ -0,0 +1,59 @@
+package com.s3.ftp.metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 统计读取字节数的输入流，关闭时回调一次 onClose。
+ */
+final class MeteredInputStream extends FilterInputStream {
+
+    private final LongAdder bytes;
+
+    private final Runnable onClose;
+
+    private boolean closed = false;
+
+    MeteredInputStream(InputStream in, LongAdder bytes, Runnable onClose) {
+        super(in);
+        this.bytes = bytes;
+        this.onClose = onClose;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b != -1) {
+            bytes.increment();
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (read > 0) {
+            bytes.add(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        return in.skip(n);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            in.close();
+        } finally {
+            if (!closed) {
+                this.closed = true;
+                onClose.run();
+            }
+        }
+    }
+}
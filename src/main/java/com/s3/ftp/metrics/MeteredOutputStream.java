@@ -0,0 +1,48 @@
+package com.s3.ftp.metrics;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 统计写入字节数的输出流，关闭时回调一次 onClose。
+ */
+final class MeteredOutputStream extends FilterOutputStream {
+
+    private final LongAdder bytes;
+
+    private final Runnable onClose;
+
+    private boolean closed = false;
+
+    MeteredOutputStream(OutputStream out, LongAdder bytes, Runnable onClose) {
+        super(out);
+        this.bytes = bytes;
+        this.onClose = onClose;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        bytes.increment();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        bytes.add(len);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.close();
+        } finally {
+            if (!closed) {
+                this.closed = true;
+                onClose.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.s3.ftp.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 进程内的指标汇总：FTP 命令耗时、S3 请求耗时与失败次数、按用户与存储统计的传输字节数以及进行中的传输数量。
+ * 汇总数据注册在 JMX 的 com.s3.ftp 域下，也可通过 {@link #writePrometheus(Writer)} 以 Prometheus 文本格式输出。
+ */
+public final class Metrics implements MetricsMXBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(Metrics.class);
+
+    private static final String DOMAIN = "com.s3.ftp";
+
+    private static final Metrics INSTANCE = new Metrics();
+
+    static {
+        register(INSTANCE, "type=Metrics");
+    }
+
+    private final ConcurrentMap<String, Histogram> commandLatency = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, LongAdder> commandErrors = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<S3Operation, Histogram> s3Latency = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<S3Operation, LongAdder> s3Errors = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Transfer, LongAdder> transferred = new ConcurrentHashMap<>();
+
+    private final AtomicInteger uploadsInFlight = new AtomicInteger();
+
+    private final AtomicInteger downloadsInFlight = new AtomicInteger();
+
+    private final LongAdder downloadCacheHits = new LongAdder();
+
+    private final LongAdder downloadCacheMisses = new LongAdder();
+
+    private Metrics() {
+        //private
+    }
+
+    public static Metrics get() {
+        return INSTANCE;
+    }
+
+    public void command(String command, long nanos, boolean failed) {
+        commandLatency.computeIfAbsent(command, key -> register(
+                new Histogram(), "type=CommandLatency,command=" + ObjectName.quote(key)
+        )).record(nanos);
+
+        if (failed) {
+            commandErrors.computeIfAbsent(command, key -> new LongAdder()).increment();
+        }
+    }
+
+    public void s3Request(String store, String operation, long nanos, boolean failed) {
+        S3Operation key = new S3Operation(store, operation);
+        s3Latency.computeIfAbsent(key, k -> register(new Histogram(), "type=S3Latency,store=%s,operation=%s".formatted(
+                ObjectName.quote(k.store()), ObjectName.quote(k.operation())
+        ))).record(nanos);
+
+        if (failed) {
+            s3Errors.computeIfAbsent(key, k -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * 统计上传流写入的字节数，流关闭前计为进行中的上传。
+     */
+    public OutputStream meterUpload(OutputStream os, String user, String store) {
+        LongAdder bytes = transferred.computeIfAbsent(
+                new Transfer(Objects.toString(user, ""), store, Direction.UPLOAD), k -> new LongAdder()
+        );
+        uploadsInFlight.incrementAndGet();
+        return new MeteredOutputStream(os, bytes, uploadsInFlight::decrementAndGet);
+    }
+
+    /**
+     * 统计下载流读取的字节数，流关闭前计为进行中的下载。
+     */
+    public InputStream meterDownload(InputStream is, String user, String store) {
+        LongAdder bytes = transferred.computeIfAbsent(
+                new Transfer(Objects.toString(user, ""), store, Direction.DOWNLOAD), k -> new LongAdder()
+        );
+        downloadsInFlight.incrementAndGet();
+        return new MeteredInputStream(is, bytes, downloadsInFlight::decrementAndGet);
+    }
+
+    public void downloadCache(boolean hit) {
+        (hit ? downloadCacheHits : downloadCacheMisses).increment();
+    }
+
+    @Override
+    public int getUploadsInFlight() {
+        return uploadsInFlight.get();
+    }
+
+    @Override
+    public int getDownloadsInFlight() {
+        return downloadsInFlight.get();
+    }
+
+    @Override
+    public Map<String, Long> getBytesUploaded() {
+        return transferredBytes(Direction.UPLOAD);
+    }
+
+    @Override
+    public Map<String, Long> getBytesDownloaded() {
+        return transferredBytes(Direction.DOWNLOAD);
+    }
+
+    @Override
+    public Map<String, Long> getS3Errors() {
+        return sums(s3Errors, key -> key.store() + ":" + key.operation());
+    }
+
+    @Override
+    public Map<String, Long> getCommandErrors() {
+        return sums(commandErrors, Function.identity());
+    }
+
+    @Override
+    public long getDownloadCacheHits() {
+        return downloadCacheHits.sum();
+    }
+
+    @Override
+    public long getDownloadCacheMisses() {
+        return downloadCacheMisses.sum();
+    }
+
+    public void writePrometheus(Writer writer) throws IOException {
+        writeHistograms(writer, "s3ftp_command_duration_seconds", "FTP command latency",
+                commandLatency, command -> "command=\"%s\"".formatted(escape(command)));
+        writeCounters(writer, "s3ftp_command_errors_total", "FTP commands answered with 4xx/5xx",
+                commandErrors, command -> "command=\"%s\"".formatted(escape(command)));
+
+        Function<S3Operation, String> s3Labels = key -> "store=\"%s\",operation=\"%s\"".formatted(
+                escape(key.store()), escape(key.operation())
+        );
+        writeHistograms(writer, "s3ftp_s3_request_duration_seconds", "S3 request latency", s3Latency, s3Labels);
+        writeCounters(writer, "s3ftp_s3_request_errors_total", "Failed S3 requests", s3Errors, s3Labels);
+
+        writeCounters(writer, "s3ftp_transfer_bytes_total", "Bytes transferred over FTP data connections",
+                transferred, key -> "user=\"%s\",store=\"%s\",direction=\"%s\"".formatted(
+                        escape(key.user()), escape(key.store()), key.direction().label
+                ));
+
+        writer.write("# HELP s3ftp_transfers_in_flight Open FTP data transfers\n");
+        writer.write("# TYPE s3ftp_transfers_in_flight gauge\n");
+        writer.write("s3ftp_transfers_in_flight{direction=\"upload\"} %d\n".formatted(uploadsInFlight.get()));
+        writer.write("s3ftp_transfers_in_flight{direction=\"download\"} %d\n".formatted(downloadsInFlight.get()));
+
+        writer.write("# HELP s3ftp_download_cache_requests_total Downloads looked up in the local disk cache\n");
+        writer.write("# TYPE s3ftp_download_cache_requests_total counter\n");
+        writer.write("s3ftp_download_cache_requests_total{result=\"hit\"} %d\n".formatted(downloadCacheHits.sum()));
+        writer.write("s3ftp_download_cache_requests_total{result=\"miss\"} %d\n".formatted(downloadCacheMisses.sum()));
+    }
+
+    private Map<String, Long> transferredBytes(Direction direction) {
+        Map<String, Long> result = new TreeMap<>();
+        transferred.forEach((key, bytes) -> {
+            if (key.direction() == direction) {
+                result.put(key.user() + "@" + key.store(), bytes.sum());
+            }
+        });
+        return result;
+    }
+
+    private static <K> Map<String, Long> sums(Map<K, LongAdder> counters, Function<K, String> naming) {
+        Map<String, Long> result = new TreeMap<>();
+        counters.forEach((key, counter) -> result.put(naming.apply(key), counter.sum()));
+        return result;
+    }
+
+    private static <K> void writeHistograms(Writer writer, String name, String help, Map<K, Histogram> histograms,
+                                            Function<K, String> labels) throws IOException {
+        writer.write("# HELP %s %s\n".formatted(name, help));
+        writer.write("# TYPE %s histogram\n".formatted(name));
+        for (Map.Entry<K, Histogram> entry : histograms.entrySet()) {
+            String label = labels.apply(entry.getKey());
+            Histogram histogram = entry.getValue();
+            long[] counts = histogram.cumulativeCounts();
+            for (int i = 0; i < counts.length; i++) {
+                writer.write("%s_bucket{%s,le=\"%s\"} %d\n".formatted(name, label, Histogram.BUCKETS[i], counts[i]));
+            }
+            writer.write("%s_bucket{%s,le=\"+Inf\"} %d\n".formatted(name, label, histogram.getCount()));
+            writer.write("%s_sum{%s} %s\n".formatted(name, label, histogram.sumSeconds()));
+            writer.write("%s_count{%s} %d\n".formatted(name, label, histogram.getCount()));
+        }
+    }
+
+    private static <K> void writeCounters(Writer writer, String name, String help, Map<K, LongAdder> counters,
+                                          Function<K, String> labels) throws IOException {
+        writer.write("# HELP %s %s\n".formatted(name, help));
+        writer.write("# TYPE %s counter\n".formatted(name));
+        for (Map.Entry<K, LongAdder> entry : counters.entrySet()) {
+            writer.write("%s{%s} %d\n".formatted(name, labels.apply(entry.getKey()), entry.getValue().sum()));
+        }
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static <T> T register(T mbean, String properties) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(mbean, name);
+            }
+        } catch (JMException e) {
+            logger.warn("Register {} failed", properties, e);
+        }
+        return mbean;
+    }
+
+    private enum Direction {
+        UPLOAD("upload"), DOWNLOAD("download");
+
+        private final String label;
+
+        Direction(String label) {
+            this.label = label;
+        }
+    }
+
+    private record S3Operation(String store, String operation) {
+    }
+
+    private record Transfer(String user, String store, Direction direction) {
+    }
+}
@@ -0,0 +1,55 @@
+package com.s3.ftp.metrics;
+
+import org.apache.ftpserver.ftplet.DefaultFtplet;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.ftplet.FtpReply;
+import org.apache.ftpserver.ftplet.FtpRequest;
+import org.apache.ftpserver.ftplet.FtpSession;
+import org.apache.ftpserver.ftplet.FtpletResult;
+
+import java.io.IOException;
+
+/**
+ * 记录每条 FTP 命令从接收到应答的耗时，数据传输命令包含传输时间。
+ */
+public final class MetricsFtplet extends DefaultFtplet {
+
+    private static final String COMMAND_START_ATTRIBUTE = "com.s3.ftp.metrics.command-start";
+
+    private static final String OTHER_COMMAND = "OTHER";
+
+    @Override
+    public FtpletResult beforeCommand(FtpSession session, FtpRequest request) throws FtpException, IOException {
+        session.setAttribute(COMMAND_START_ATTRIBUTE, System.nanoTime());
+        return super.beforeCommand(session, request);
+    }
+
+    @Override
+    public FtpletResult afterCommand(FtpSession session, FtpRequest request, FtpReply reply)
+            throws FtpException, IOException {
+        if (session.getAttribute(COMMAND_START_ATTRIBUTE) instanceof Long start) {
+            session.removeAttribute(COMMAND_START_ATTRIBUTE);
+            boolean failed = reply != null && reply.getCode() >= 400;
+            Metrics.get().command(commandName(request.getCommand()), System.nanoTime() - start, failed);
+        }
+
+        return super.afterCommand(session, request, reply);
+    }
+
+    /**
+     * 命令名来自客户端输入，只保留形如 FTP 命令的名称，避免指标数量无限增长。
+     */
+    private static String commandName(String command) {
+        if (command == null || command.isEmpty() || command.length() > 4) {
+            return OTHER_COMMAND;
+        }
+
+        for (int i = 0; i < command.length(); i++) {
+            char c = command.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                return OTHER_COMMAND;
+            }
+        }
+        return command;
+    }
+}
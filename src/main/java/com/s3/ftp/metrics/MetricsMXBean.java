@@ -0,0 +1,34 @@
+package com.s3.ftp.metrics;
+
+import java.util.Map;
+
+public interface MetricsMXBean {
+
+    int getUploadsInFlight();
+
+    int getDownloadsInFlight();
+
+    /**
+     * @return 按 用户@存储 统计的上传字节数
+     */
+    Map<String, Long> getBytesUploaded();
+
+    /**
+     * @return 按 用户@存储 统计的下载字节数
+     */
+    Map<String, Long> getBytesDownloaded();
+
+    /**
+     * @return 按 存储:操作 统计的 S3 请求失败次数
+     */
+    Map<String, Long> getS3Errors();
+
+    /**
+     * @return 按命令统计的失败应答（4xx/5xx）次数
+     */
+    Map<String, Long> getCommandErrors();
+
+    long getDownloadCacheHits();
+
+    long getDownloadCacheMisses();
+}
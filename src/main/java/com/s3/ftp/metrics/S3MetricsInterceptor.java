@@ -0,0 +1,46 @@
+package com.s3.ftp.metrics;
+
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+
+/**
+ * 记录每个 S3 请求的耗时与是否失败，耗时包含 SDK 内部重试。
+ */
+public final class S3MetricsInterceptor implements ExecutionInterceptor {
+
+    private static final ExecutionAttribute<Long> START_TIME = new ExecutionAttribute<>("S3FtpMetricsStartTime");
+
+    private final String store;
+
+    public S3MetricsInterceptor(String store) {
+        this.store = store;
+    }
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes attributes) {
+        attributes.putAttribute(START_TIME, System.nanoTime());
+    }
+
+    @Override
+    public void afterExecution(Context.AfterExecution context, ExecutionAttributes attributes) {
+        record(attributes, false);
+    }
+
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes attributes) {
+        record(attributes, true);
+    }
+
+    private void record(ExecutionAttributes attributes, boolean failed) {
+        Long start = attributes.getAttribute(START_TIME);
+        if (start == null) {
+            return;
+        }
+
+        String operation = attributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME);
+        Metrics.get().s3Request(store, operation == null ? "Unknown" : operation, System.nanoTime() - start, failed);
+    }
+}
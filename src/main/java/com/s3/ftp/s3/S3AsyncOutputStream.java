@@ -0,0 +1,102 @@
+package com.s3.ftp.s3;
+
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.BlockingOutputStreamAsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.utils.CancellableOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 基于 {@link S3AsyncClient} 的上传流，数据以未知长度的请求体交给 CRT 客户端，由其自动切分分片并行上传。
+ * 写入在客户端消费不及时会阻塞，不会在内存中堆积数据；写入失败时取消请求，由 CRT 终止分片上传。
+ */
+final class S3AsyncOutputStream extends OutputStream {
+
+    private final CompletableFuture<PutObjectResponse> response;
+
+    private final CancellableOutputStream os;
+
+    private final Runnable onComplete;
+
+    private boolean closed = false;
+
+    S3AsyncOutputStream(S3AsyncClient client, String bucket, String key, Runnable onComplete) {
+        BlockingOutputStreamAsyncRequestBody body = AsyncRequestBody.forBlockingOutputStream(null);
+        this.response = client.putObject(
+                req -> req.bucket(bucket).key(key).contentType(S3PartBuffer.CONTENT_TYPE), body
+        );
+        this.os = body.outputStream();
+        this.onComplete = onComplete;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+
+        try {
+            os.write(b, off, len);
+        } catch (IOException | RuntimeException e) {
+            abort();
+            throw failure(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        this.closed = true;
+
+        try {
+            os.close();
+            response.join();
+        } catch (IOException | RuntimeException e) {
+            os.cancel();
+            throw failure(e);
+        }
+
+        onComplete.run();
+    }
+
+    /**
+     * 取消上传，之后关闭流不再提交对象
+     */
+    void abort() {
+        this.closed = true;
+        os.cancel();
+    }
+
+    /**
+     * 优先返回请求本身的失败原因，写入端的异常通常只是请求失败后的连带结果。
+     */
+    private IOException failure(Exception e) {
+        Throwable cause = e;
+        if (response.isCompletedExceptionally()) {
+            try {
+                response.join();
+            } catch (CompletionException | CancellationException ex) {
+                cause = ex;
+            }
+        }
+
+        if (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+
+        return cause instanceof IOException ioe ? ioe : new IOException("Upload failed", cause);
+    }
+}
@@ -0,0 +1,258 @@
+package com.s3.ftp.s3;
+
+import com.s3.ftp.config.Settings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Error;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 目录级别的批量操作：并发复制前缀下的全部对象，按每批 1000 个调用 DeleteObjects 删除。
+ */
+final class S3BatchOperations {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3BatchOperations.class);
+
+    private static final long COPY_OBJECT_SIZE_MAX = 1024L * 1024 * 1024 * 5;
+
+    private static final long COPY_PART_SIZE = 1024L * 1024 * 512;
+
+    private static final int DELETE_BATCH_SIZE = 1000;
+
+    private static final int PROGRESS_LOG_INTERVAL = 1000;
+
+    private final S3Client client;
+
+    private final String bucket;
+
+    private final S3MetadataCache metadataCache;
+
+    private final Settings settings;
+
+    S3BatchOperations(S3Client client, String bucket, S3MetadataCache metadataCache, Settings settings) {
+        this.client = client;
+        this.bucket = bucket;
+        this.metadataCache = metadataCache;
+        this.settings = settings;
+    }
+
+    /**
+     * 复制单个对象，超过 5GiB 时使用分片复制。
+     */
+    void copyObject(String sourceKey, String destinationKey, long size) {
+        if (size <= COPY_OBJECT_SIZE_MAX) {
+            client.copyObject(req -> req
+                    .sourceBucket(bucket)
+                    .sourceKey(sourceKey)
+                    .destinationBucket(bucket)
+                    .destinationKey(destinationKey)
+            );
+        } else {
+            copyMultipart(sourceKey, destinationKey, size);
+        }
+
+        metadataCache.written(bucket, destinationKey);
+    }
+
+    /**
+     * 将 sourcePrefix 下的全部对象复制到 destinationPrefix 下。
+     *
+     * @return 复制的对象数量
+     */
+    long copyTree(String sourcePrefix, String destinationPrefix) throws IOException {
+        AtomicLong copied = new AtomicLong();
+        try (S3ParallelLister objects = new S3ParallelLister(client, bucket, sourcePrefix, settings)) {
+            runBounded(objects, object -> {
+                String destinationKey = destinationPrefix + object.key().substring(sourcePrefix.length());
+                copyObject(object.key(), destinationKey, object.size());
+
+                long count = copied.incrementAndGet();
+                if (count % PROGRESS_LOG_INTERVAL == 0) {
+                    logger.info("Copied {} objects from {}/{} to {}",
+                            count, bucket, sourcePrefix, destinationPrefix);
+                }
+            });
+        }
+
+        logger.info("Copied {} objects from {}/{} to {} in total",
+                copied.get(), bucket, sourcePrefix, destinationPrefix);
+        return copied.get();
+    }
+
+    /**
+     * 删除 prefix 下的全部对象。
+     *
+     * @return 删除的对象数量
+     */
+    long deleteTree(String prefix) throws IOException {
+        AtomicLong deleted = new AtomicLong();
+        try (S3ParallelLister objects = new S3ParallelLister(client, bucket, prefix, settings)) {
+            Iterator<List<String>> batches = new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return objects.hasNext();
+                }
+
+                @Override
+                public List<String> next() {
+                    List<String> keys = new ArrayList<>(DELETE_BATCH_SIZE);
+                    while (keys.size() < DELETE_BATCH_SIZE && objects.hasNext()) {
+                        keys.add(objects.next().key());
+                    }
+                    return keys;
+                }
+            };
+
+            runBounded(batches, keys -> {
+                deleteObjects(keys);
+
+                long before = deleted.getAndAdd(keys.size());
+                if ((before + keys.size()) / PROGRESS_LOG_INTERVAL > before / PROGRESS_LOG_INTERVAL) {
+                    logger.info("Deleted {} objects under {}/{}", before + keys.size(), bucket, prefix);
+                }
+            });
+        }
+
+        logger.info("Deleted {} objects under {}/{} in total", deleted.get(), bucket, prefix);
+        return deleted.get();
+    }
+
+    /**
+     * 删除一批对象，只有删除成功的对象在元数据缓存中标记为不存在，有对象删除失败时抛出异常。
+     */
+    void deleteObjects(List<String> keys) {
+        List<ObjectIdentifier> identifiers = keys.stream()
+                .map(key -> ObjectIdentifier.builder().key(key).build())
+                .toList();
+
+        DeleteObjectsResponse resp = client.deleteObjects(req -> req
+                .bucket(bucket)
+                .delete(d -> d.objects(identifiers).quiet(true))
+        );
+
+        // quiet 模式只返回失败的对象，其余对象已删除
+        List<S3Error> errors = resp.hasErrors() ? resp.errors() : List.of();
+        Set<String> failed = errors.stream().map(S3Error::key).collect(Collectors.toSet());
+        keys.stream()
+                .filter(key -> !failed.contains(key))
+                .forEach(key -> metadataCache.deleted(bucket, key));
+
+        if (!errors.isEmpty()) {
+            S3Error error = errors.get(0);
+            throw new IllegalStateException("Delete %s failed: %s %s".formatted(
+                    error.key(), error.code(), error.message()
+            ));
+        }
+    }
+
+    /**
+     * 分片复制超过 5GiB 的对象，分片以 batch-concurrency 为并发上限复制。
+     * 分片复制不会带上源对象的 Content-Type 与用户元数据，创建分片上传时从源对象取得。
+     */
+    private void copyMultipart(String sourceKey, String destinationKey, long size) {
+        HeadObjectResponse source = client.headObject(req -> req.bucket(bucket).key(sourceKey));
+        String uploadId = client.createMultipartUpload(req -> req
+                .bucket(bucket)
+                .key(destinationKey)
+                .contentType(source.contentType())
+                .metadata(source.metadata())
+        ).uploadId();
+        try {
+            int partCount = (int) ((size + COPY_PART_SIZE - 1) / COPY_PART_SIZE);
+            CompletedPart[] parts = new CompletedPart[partCount];
+            runBounded(IntStream.rangeClosed(1, partCount).iterator(), number -> {
+                long start = (number - 1) * COPY_PART_SIZE;
+                String range = "bytes=%d-%d".formatted(start, Math.min(start + COPY_PART_SIZE, size) - 1);
+                String eTag = client.uploadPartCopy(req -> req
+                        .sourceBucket(bucket)
+                        .sourceKey(sourceKey)
+                        .copySourceRange(range)
+                        .destinationBucket(bucket)
+                        .destinationKey(destinationKey)
+                        .uploadId(uploadId)
+                        .partNumber(number)
+                ).copyPartResult().eTag();
+                parts[number - 1] = CompletedPart.builder().partNumber(number).eTag(eTag).build();
+            });
+
+            client.completeMultipartUpload(req -> req
+                    .bucket(bucket)
+                    .key(destinationKey)
+                    .uploadId(uploadId)
+                    .multipartUpload(mu -> mu.parts(parts))
+            );
+        } catch (IOException e) {
+            client.abortMultipartUpload(req -> req.bucket(bucket).key(destinationKey).uploadId(uploadId));
+            // 与单次复制一样抛出分片复制失败的 S3 异常
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            client.abortMultipartUpload(req -> req.bucket(bucket).key(destinationKey).uploadId(uploadId));
+            throw e;
+        }
+    }
+
+    /**
+     * 以 {@link Settings#batchConcurrency} 为并发上限执行任务，任一任务失败或遍历失败后不再提交新任务。
+     * 返回或抛出异常前等待已提交的任务全部结束，调用方之后的操作不会与残留的任务并发。
+     */
+    <T> void runBounded(Iterator<T> items, Consumer<T> task) throws IOException {
+        Semaphore permits = new Semaphore(settings.batchConcurrency);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        InterruptedException interrupted = null;
+
+        try {
+            while (failure.get() == null && items.hasNext()) {
+                T item = items.next();
+                permits.acquire();
+
+                pending.removeIf(CompletableFuture::isDone);
+                pending.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        task.accept(item);
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        permits.release();
+                    }
+                }, S3TransferExecutor.get()));
+            }
+        } catch (InterruptedException e) {
+            interrupted = e;
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+        }
+
+        if (interrupted != null) {
+            Thread.currentThread().interrupt();
+            throw new IOException("batch operation interrupted", interrupted);
+        }
+
+        if (failure.get() != null) {
+            throw new IOException("batch operation on %s failed".formatted(bucket), failure.get());
+        }
+    }
+}
@@ -1,23 +1,56 @@
 package com.s3.ftp.s3;
 
+import com.s3.ftp.config.GlobalConfiguration;
+import com.s3.ftp.metrics.S3MetricsInterceptor;
+import com.s3.ftp.throttle.RateLimits;
+import com.s3.ftp.throttle.ThrottleInterceptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.http.crt.AwsCrtHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.S3ClientBuilder;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
-public final class S3ClientRegistry {
+public final class S3ClientRegistry implements AutoCloseable {
 
-    private final Map<String, Supplier<S3ClientBuilder>> clientProviders;
+    private static final Logger logger = LoggerFactory.getLogger(S3ClientRegistry.class);
+
+    /**
+     * 存储配置的前缀，格式为 s3.存储名.配置项
+     */
+    private static final String STORE_PREFIX = "s3.";
+
+    private static final int DEFAULT_MAX_CONNECTIONS = 50;
+
+    private static final String BACKEND_SYNC = "sync";
+
+    private static final String BACKEND_CRT = "crt";
+
+    private static final double DEFAULT_CRT_TARGET_THROUGHPUT = 10.0;
+
+    private static final long DEFAULT_CRT_PART_SIZE = 1024 * 1024 * 8;
+
+    private volatile Map<String, S3ClientSupplier> clientProviders;
+
+    private final ConcurrentMap<String, S3StoreClient> clients = new ConcurrentHashMap<>();
 
     public S3ClientRegistry(Properties properties) {
         this.clientProviders = resolveConfig(properties);
@@ -29,8 +62,115 @@ public final class S3ClientRegistry {
                 .orElseThrow();
     }
 
-    private Map<String, Supplier<S3ClientBuilder>> resolveConfig(Properties properties) {
+    /**
+     * 借用存储对应的共享客户端，首次借用时创建。使用完毕后须调用 {@link S3StoreClient#release()}。
+     * 客户端在 ConcurrentHashMap 的锁之外创建（CRT 客户端的创建较慢，不应阻塞同一个桶中其他存储的借用），
+     * 并发创建时只保留先写入的一个，其余立即关闭。
+     */
+    public Optional<S3StoreClient> acquire(String storeKey) {
+        while (true) {
+            S3StoreClient current = clients.get(storeKey);
+            if (current != null) {
+                if (current.tryAcquire()) {
+                    return Optional.of(current);
+                }
+                // 已被 reload 停用，等待其从注册表中移除
+                Thread.onSpinWait();
+                continue;
+            }
+
+            S3ClientSupplier provider = clientProviders.get(storeKey);
+            if (provider == null) {
+                return Optional.empty();
+            }
+
+            RateLimits limits = provider.limits();
+            // 先创建可能因配置错误失败的异步客户端，失败时不会遗留已创建的同步客户端
+            S3AsyncClient asyncClient = provider.asyncClient().orElse(null);
+            S3StoreClient created = new S3StoreClient(
+                    storeKey, buildClient(storeKey, provider.get(), limits), asyncClient, limits
+            );
+            if (clients.putIfAbsent(storeKey, created) != null) {
+                created.retire();
+                continue;
+            }
+
+            // 创建期间配置被替换时 reload 可能未看到新客户端，按新配置重新创建
+            if (!provider.equals(clientProviders.get(storeKey))) {
+                clients.remove(storeKey, created);
+                created.retire();
+                continue;
+            }
+
+            if (created.tryAcquire()) {
+                return Optional.of(created);
+            }
+        }
+    }
+
+    /**
+     * 替换存储配置。配置发生变化或被删除的存储停止提供原有客户端，待借用方全部释放后关闭，
+     * 之后的借用按新配置创建客户端；配置未变化的存储继续使用原有客户端。
+     */
+    public synchronized void reload(Properties properties) {
+        Map<String, S3ClientSupplier> previous = clientProviders;
+        Map<String, S3ClientSupplier> providers = resolveConfig(properties);
+        clientProviders = providers;
+
+        previous.forEach((storeKey, provider) -> {
+            if (!provider.equals(providers.get(storeKey))) {
+                clients.computeIfPresent(storeKey, (k, v) -> {
+                    v.retire();
+                    return null;
+                });
+            }
+        });
+    }
+
+    /**
+     * 在后台为所有已配置的存储创建客户端，首次登录时不再等待 SDK 与 CRT 的类加载和初始化。
+     * 预热的客户端保留在注册表中，之后的借用直接使用。
+     */
+    public CompletableFuture<Void> prewarm() {
+        return CompletableFuture.allOf(clientProviders.keySet().stream()
+                .map(storeKey -> CompletableFuture.runAsync(() -> prewarm(storeKey), S3TransferExecutor.get()))
+                .toArray(CompletableFuture[]::new));
+    }
+
+    private void prewarm(String storeKey) {
+        try {
+            acquire(storeKey).ifPresent(S3StoreClient::release);
+        } catch (RuntimeException e) {
+            logger.warn("Prewarm client of store {} failed", storeKey, e);
+        }
+    }
+
+    /**
+     * 限速拦截器排在指标拦截器之前，请求耗时不包含限速等待的时间。
+     */
+    private static S3Client buildClient(String storeKey, S3ClientBuilder builder, RateLimits limits) {
+        List<ExecutionInterceptor> interceptors = new ArrayList<>();
+        if (limits.request() != null) {
+            interceptors.add(new ThrottleInterceptor(limits.request()));
+        }
+        if (GlobalConfiguration.settings().metricsEnabled) {
+            interceptors.add(new S3MetricsInterceptor(storeKey));
+        }
+        if (!interceptors.isEmpty()) {
+            builder.overrideConfiguration(c -> c.executionInterceptors(interceptors));
+        }
+        return builder.build();
+    }
+
+    @Override
+    public void close() {
+        clients.values().forEach(S3StoreClient::retire);
+        clients.clear();
+    }
+
+    private Map<String, S3ClientSupplier> resolveConfig(Properties properties) {
         Map<String, Map<String, String>> configs = properties.entrySet().stream()
+                .filter(ele -> ele.getKey().toString().startsWith(STORE_PREFIX))
                 .map(ele -> new String[]{ele.getKey().toString(), ele.getValue().toString()})
                 .collect(Collectors.groupingBy(
                         v -> v[0].split("\\.")[1],
@@ -63,8 +203,11 @@ public final class S3ClientRegistry {
 
             Region region = Optional.ofNullable(props.get("region"))
                     .map(Region::of).orElse(Region.US_EAST_1);
+            int maxConnections = Optional.ofNullable(props.get("max_connections"))
+                    .map(Integer::parseInt).orElse(DEFAULT_MAX_CONNECTIONS);
 
             return S3Client.builder()
+                    .httpClientBuilder(AwsCrtHttpClient.builder().maxConcurrency(maxConnections))
                     .endpointOverride(URI.create(endpoint))
                     .forcePathStyle(true)
                     .region(region)
@@ -72,5 +215,45 @@ public final class S3ClientRegistry {
                             accessKey, secretKey
                     )));
         }
+
+        /**
+         * 存储级别的限速：max_upload_rate、max_download_rate 为字节每秒，max_request_rate 为 S3 请求每秒。
+         */
+        RateLimits limits() {
+            return RateLimits.of(props, "max_upload_rate", "max_download_rate", "max_request_rate");
+        }
+
+        /**
+         * 存储配置的 backend 为 crt 时创建 CRT 异步客户端，上传自动切分分片，下载自动按范围并行拉取。
+         */
+        Optional<S3AsyncClient> asyncClient() {
+            String backend = props.getOrDefault("backend", BACKEND_SYNC);
+            if (backend.equals(BACKEND_SYNC)) {
+                return Optional.empty();
+            }
+
+            if (!backend.equals(BACKEND_CRT)) {
+                throw new IllegalArgumentException("Unknown backend: %s".formatted(backend));
+            }
+
+            double targetThroughput = Optional.ofNullable(props.get("crt_target_throughput"))
+                    .map(Double::parseDouble).orElse(DEFAULT_CRT_TARGET_THROUGHPUT);
+            long partSize = Optional.ofNullable(props.get("crt_part_size"))
+                    .map(Long::parseLong).orElse(DEFAULT_CRT_PART_SIZE);
+            int maxConnections = Optional.ofNullable(props.get("max_connections"))
+                    .map(Integer::parseInt).orElse(DEFAULT_MAX_CONNECTIONS);
+
+            return Optional.of(S3AsyncClient.crtBuilder()
+                    .endpointOverride(URI.create(props.get("uri")))
+                    .forcePathStyle(true)
+                    .region(Optional.ofNullable(props.get("region")).map(Region::of).orElse(Region.US_EAST_1))
+                    .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(
+                            props.get("access_key"), props.get("secret_key")
+                    )))
+                    .maxConcurrency(maxConnections)
+                    .targetThroughputInGbps(targetThroughput)
+                    .minimumPartSizeInBytes(partSize)
+                    .build());
+        }
     }
 }
@@ -0,0 +1,350 @@
+package com.s3.ftp.s3;
+
+import com.s3.ftp.s3.S3MetadataCache.S3Metadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 单个存储桶的内存目录树，由一次并发的完整遍历建立，之后随本服务的写入、删除同步更新，
+ * 并每隔 directory-index-refresh 秒在后台重新遍历以合并其他客户端的变更。
+ * 建立完成前不参与查询，调用方回退到 S3 请求。
+ */
+final class S3DirectoryIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3DirectoryIndex.class);
+
+    private static final String ROOT = "/";
+
+    private final S3Client client;
+
+    private final String bucket;
+
+    private final long refreshMillis;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    private Node root = new Node();
+
+    /**
+     * 后台重建期间发生的变更，新目录树建立后重放
+     */
+    private List<Consumer<Node>> pending;
+
+    private volatile boolean ready = false;
+
+    private volatile long builtAt = 0;
+
+    S3DirectoryIndex(S3Client client, String bucket, long refreshMillis) {
+        this.client = client;
+        this.bucket = bucket;
+        this.refreshMillis = refreshMillis;
+    }
+
+    boolean ready() {
+        return ready;
+    }
+
+    /**
+     * 在后台开始重建，已有重建任务时忽略。
+     */
+    void refresh() {
+        if (rebuilding.compareAndSet(false, true)) {
+            S3TransferExecutor.get().execute(this::rebuild);
+        }
+    }
+
+    /**
+     * @return 对象状态，目录树未建立或文件写入后尚未获取大小时返回空
+     */
+    Optional<S3Metadata> get(String key) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        refreshIfStale();
+
+        if (key.isEmpty() || key.equals(ROOT)) {
+            return Optional.of(S3Metadata.DIRECTORY);
+        }
+
+        synchronized (this) {
+            Node node = find(root, key);
+            if (node == null) {
+                return Optional.of(S3Metadata.ABSENT);
+            }
+
+            if (key.endsWith("/")) {
+                return Optional.of(node.isDirectory() ? S3Metadata.DIRECTORY : S3Metadata.ABSENT);
+            }
+
+            if (node.file) {
+                return Optional.ofNullable(node.metadata);
+            }
+
+            return Optional.of(node.isDirectory() ? S3Metadata.DIRECTORY : S3Metadata.ABSENT);
+        }
+    }
+
+    /**
+     * 列出目录下的子目录与文件，子目录在前，各自按名称排序。
+     *
+     * @param key 以 / 结尾的目录 key，/ 表示存储桶根目录
+     * @return 目录树未建立时返回空，目录不存在时返回空列表
+     */
+    Optional<List<Child>> list(String key) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        refreshIfStale();
+
+        String prefix = key.equals(ROOT) ? "" : key;
+        synchronized (this) {
+            Node node = prefix.isEmpty() ? root : find(root, prefix);
+            if (node == null || node.children == null) {
+                return Optional.of(List.of());
+            }
+
+            List<Child> result = new ArrayList<>(node.children.size());
+            node.children.forEach((name, child) -> {
+                if (child.isDirectory()) {
+                    result.add(new Child(prefix + name + "/", S3Metadata.DIRECTORY));
+                }
+            });
+            node.children.forEach((name, child) -> {
+                if (child.file) {
+                    result.add(new Child(prefix + name, child.metadata));
+                }
+            });
+            return Optional.of(result);
+        }
+    }
+
+    /**
+     * 对象已写入，文件大小在下次查询时从 S3 获取。
+     */
+    void written(String key) {
+        apply(root -> insert(root, key, null));
+    }
+
+    void deleted(String key) {
+        apply(root -> remove(root, key));
+    }
+
+    /**
+     * 记录从 S3 获取到的文件状态或新建的目录
+     */
+    void put(String key, S3Metadata metadata) {
+        if (metadata.exists() && !metadata.directory() && !key.endsWith("/")) {
+            apply(root -> insert(root, key, metadata));
+        } else if (metadata.directory() && key.endsWith("/") && !key.equals(ROOT)) {
+            apply(root -> insert(root, key, null));
+        }
+    }
+
+    /**
+     * @return 目录树中的对象数量，包含目录对象
+     */
+    synchronized long size() {
+        return root.count();
+    }
+
+    private void refreshIfStale() {
+        if (refreshMillis > 0 && System.currentTimeMillis() - builtAt > refreshMillis) {
+            refresh();
+        }
+    }
+
+    private synchronized void apply(Consumer<Node> mutation) {
+        mutation.accept(root);
+        if (pending != null) {
+            pending.add(mutation);
+        }
+    }
+
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        synchronized (this) {
+            this.pending = new ArrayList<>();
+        }
+
+        try {
+            Node fresh = new Node();
+            try (S3ParallelLister objects = new S3ParallelLister(client, bucket, "")) {
+                while (objects.hasNext()) {
+                    S3Object object = objects.next();
+                    insert(fresh, object.key(), object.key().endsWith("/")
+                            ? null
+                            : S3Metadata.file(object.size(), object.lastModified()));
+                }
+            }
+
+            long count;
+            synchronized (this) {
+                pending.forEach(mutation -> mutation.accept(fresh));
+                this.root = fresh;
+                count = fresh.count();
+            }
+            this.builtAt = System.currentTimeMillis();
+            this.ready = true;
+            logger.info("Indexed {} objects of bucket {} in {} ms", count, bucket, builtAt - start);
+        } catch (RuntimeException e) {
+            // 失败后保留原目录树，下次过期时重试
+            this.builtAt = System.currentTimeMillis();
+            logger.warn("Index bucket {} failed", bucket, e);
+        } finally {
+            synchronized (this) {
+                this.pending = null;
+            }
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * 查找 key 对应的节点，以 / 结尾的 key 对应目录节点。
+     */
+    private static Node find(Node root, String key) {
+        Node node = root;
+        int start = 0;
+        int end = key.endsWith("/") ? key.length() - 1 : key.length();
+        while (node != null && start <= end) {
+            int pos = key.indexOf('/', start);
+            if (pos < 0 || pos > end) {
+                pos = end;
+            }
+
+            node = node.children == null ? null : node.children.get(key.substring(start, pos));
+            start = pos + 1;
+        }
+        return node;
+    }
+
+    /**
+     * 插入对象，以 / 结尾的 key 记为目录对象，否则记为文件，metadata 为空表示大小未知。
+     */
+    private static void insert(Node root, String key, S3Metadata metadata) {
+        boolean directory = key.endsWith("/");
+        int end = directory ? key.length() - 1 : key.length();
+        if (end <= 0) {
+            return;
+        }
+
+        Node node = root;
+        int start = 0;
+        while (start <= end) {
+            int pos = key.indexOf('/', start);
+            if (pos < 0 || pos > end) {
+                pos = end;
+            }
+
+            node = node.child(key.substring(start, pos));
+            start = pos + 1;
+        }
+
+        if (directory) {
+            node.marker = true;
+        } else {
+            node.file = true;
+            node.metadata = metadata;
+        }
+    }
+
+    /**
+     * 删除对象，并移除因此变为空的上级节点。
+     */
+    private static void remove(Node root, String key) {
+        boolean directory = key.endsWith("/");
+        int end = directory ? key.length() - 1 : key.length();
+        if (end <= 0) {
+            return;
+        }
+
+        List<Node> path = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        Node node = root;
+        int start = 0;
+        while (start <= end) {
+            int pos = key.indexOf('/', start);
+            if (pos < 0 || pos > end) {
+                pos = end;
+            }
+
+            String name = key.substring(start, pos);
+            path.add(node);
+            names.add(name);
+            node = node.children == null ? null : node.children.get(name);
+            if (node == null) {
+                return;
+            }
+            start = pos + 1;
+        }
+
+        if (directory) {
+            node.marker = false;
+        } else {
+            node.file = false;
+            node.metadata = null;
+        }
+
+        for (int i = path.size() - 1; i >= 0 && node.isEmpty(); i--) {
+            path.get(i).children.remove(names.get(i));
+            node = path.get(i);
+        }
+    }
+
+    /**
+     * 目录子项，文件大小未知时 metadata 为空
+     */
+    record Child(String key, S3Metadata metadata) {
+    }
+
+    private static final class Node {
+
+        private Map<String, Node> children;
+
+        /**
+         * 存在以该节点为名的目录对象，即 mkdir 创建的空对象
+         */
+        private boolean marker;
+
+        /**
+         * 存在与该节点同名的文件对象
+         */
+        private boolean file;
+
+        private S3Metadata metadata;
+
+        Node child(String name) {
+            if (children == null) {
+                children = new TreeMap<>();
+            }
+            return children.computeIfAbsent(name, k -> new Node());
+        }
+
+        boolean isDirectory() {
+            return marker || children != null && !children.isEmpty();
+        }
+
+        boolean isEmpty() {
+            return !file && !isDirectory();
+        }
+
+        long count() {
+            long count = file || marker ? 1 : 0;
+            if (children != null) {
+                for (Node child : children.values()) {
+                    count += child.count();
+                }
+            }
+            return count;
+        }
+    }
+}
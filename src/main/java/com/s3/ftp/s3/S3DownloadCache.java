@@ -0,0 +1,494 @@
+package com.s3.ftp.s3;
+
+import com.s3.ftp.config.GlobalConfiguration;
+import com.s3.ftp.config.Settings;
+import com.s3.ftp.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * 本地磁盘下载缓存。完整下载的对象在读取的同时写入缓存文件，按 存储/桶/key 与 ETag 记录，
+ * 总大小超过 download-cache-max-size 时淘汰最久未读取的对象。缓存超过 download-cache-ttl 后，
+ * 读取前以 ETag 发送条件 HEAD 确认对象未被其他客户端修改。索引只保存在内存中，重建缓存时清理目录。
+ * 进行中的下载各自登记一个 {@link Fill}，下载期间对象被本服务修改或删除时标记为过期，读取完成后不再加入缓存，
+ * 避免在清除之后写入修改前的数据。
+ */
+final class S3DownloadCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3DownloadCache.class);
+
+    private static final String FILE_PREFIX = "s3-ftp-";
+
+    private static final String FILE_SUFFIX = ".cache";
+
+    private static final int NOT_MODIFIED = 304;
+
+    private static final int NOT_FOUND = 404;
+
+    private static volatile S3DownloadCache cache;
+
+    private final Path directory;
+
+    private final long maxSize;
+
+    private final long maxObjectSize;
+
+    private final long ttlMillis;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * 进行中的下载，与 entries 使用同一个锁
+     */
+    private final Set<Fill> fills = new HashSet<>();
+
+    private long size = 0;
+
+    S3DownloadCache(Path directory, long maxSize, long maxObjectSize, long ttlMillis) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxSize = maxSize;
+        this.maxObjectSize = maxObjectSize;
+        this.ttlMillis = ttlMillis;
+    }
+
+    static S3DownloadCache get(Settings settings) throws IOException {
+        S3DownloadCache current = cache;
+        if (current != null && current.matchesConfiguration(settings)) {
+            return current;
+        }
+
+        synchronized (S3DownloadCache.class) {
+            if (cache == null || !cache.matchesConfiguration(settings)) {
+                S3DownloadCache created = new S3DownloadCache(
+                        Path.of(settings.downloadCacheDir),
+                        settings.downloadCacheMaxSize,
+                        settings.downloadCacheMaxObjectSize,
+                        settings.downloadCacheTtl * 1000L
+                );
+                if (cache != null) {
+                    cache.clear();
+                }
+                created.clean();
+                cache = created;
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * 对象已被本服务修改或删除，清除已创建缓存中的对应条目
+     */
+    static void evict(String store, String bucket, String key) {
+        S3DownloadCache current = cache;
+        if (current != null) {
+            current.invalidate(store, bucket, key);
+        }
+    }
+
+    /**
+     * 目录已被本服务删除或移动，清除已创建缓存中前缀下的全部条目
+     */
+    static void evictPrefix(String store, String bucket, String prefix) {
+        S3DownloadCache current = cache;
+        if (current != null) {
+            current.invalidatePrefix(store, bucket, prefix);
+        }
+    }
+
+    boolean cacheable(long objectSize) {
+        return objectSize <= maxObjectSize;
+    }
+
+    /**
+     * 命中时返回从 offset 开始读取缓存文件的流，未命中或对象已变化时返回空。
+     */
+    Optional<InputStream> open(S3Client client, String store, String bucket, String key, long offset)
+            throws IOException {
+        String cacheKey = cacheKey(store, bucket, key);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(cacheKey);
+        }
+
+        if (entry != null && !validate(client, bucket, key, cacheKey, entry)) {
+            remove(cacheKey, entry);
+            entry = null;
+        }
+
+        if (entry != null) {
+            try {
+                FileChannel channel = FileChannel.open(entry.file(), StandardOpenOption.READ);
+                channel.position(offset);
+                record(true);
+                return Optional.of(Channels.newInputStream(channel));
+            } catch (NoSuchFileException e) {
+                remove(cacheKey, entry);
+            }
+        }
+
+        record(false);
+        return Optional.empty();
+    }
+
+    /**
+     * 从 S3 下载完整对象，读取到末尾并关闭后加入缓存，中途关闭则丢弃已写入的数据。
+     */
+    InputStream fill(S3Client client, String store, String bucket, String key) {
+        // 请求前登记，请求期间的修改也会使本次下载过期
+        Fill fill = new Fill(cacheKey(store, bucket, key));
+        synchronized (entries) {
+            fills.add(fill);
+        }
+
+        ResponseInputStream<GetObjectResponse> source;
+        try {
+            source = client.getObject(req -> req.bucket(bucket).key(key));
+        } catch (RuntimeException e) {
+            release(fill);
+            throw e;
+        }
+
+        GetObjectResponse response = source.response();
+        if (response.eTag() == null || !cacheable(response.contentLength())) {
+            release(fill);
+            return source;
+        }
+
+        Path file = null;
+        try {
+            file = Files.createTempFile(directory, FILE_PREFIX, FILE_SUFFIX);
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+            return new FillInputStream(source, fill, response, file, channel);
+        } catch (IOException e) {
+            logger.warn("Create cache file in {} failed", directory, e);
+            release(fill);
+            delete(file);
+            return source;
+        }
+    }
+
+    void invalidate(String store, String bucket, String key) {
+        String cacheKey = cacheKey(store, bucket, key);
+        Entry removed;
+        synchronized (entries) {
+            fills.stream().filter(fill -> fill.cacheKey.equals(cacheKey)).forEach(fill -> fill.stale = true);
+            removed = entries.remove(cacheKey);
+            if (removed != null) {
+                size -= removed.size();
+            }
+        }
+
+        if (removed != null) {
+            delete(removed.file());
+        }
+    }
+
+    void invalidatePrefix(String store, String bucket, String prefix) {
+        String cacheKeyPrefix = cacheKey(store, bucket, prefix);
+        List<Path> removed = new ArrayList<>();
+        synchronized (entries) {
+            fills.stream().filter(fill -> fill.cacheKey.startsWith(cacheKeyPrefix)).forEach(fill -> fill.stale = true);
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Entry> entry = iterator.next();
+                if (entry.getKey().startsWith(cacheKeyPrefix)) {
+                    iterator.remove();
+                    size -= entry.getValue().size();
+                    removed.add(entry.getValue().file());
+                }
+            }
+        }
+
+        removed.forEach(this::delete);
+    }
+
+    long size() {
+        synchronized (entries) {
+            return size;
+        }
+    }
+
+    int entries() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private boolean validate(S3Client client, String bucket, String key, String cacheKey, Entry entry) {
+        long now = System.currentTimeMillis();
+        if (entry.validatedAt() + ttlMillis > now) {
+            return true;
+        }
+
+        boolean unchanged;
+        try {
+            HeadObjectResponse head = client.headObject(req -> req.bucket(bucket).key(key).ifNoneMatch(entry.eTag()));
+            unchanged = entry.eTag().equals(head.eTag());
+        } catch (S3Exception e) {
+            if (e.statusCode() == NOT_MODIFIED) {
+                unchanged = true;
+            } else if (e.statusCode() == NOT_FOUND) {
+                unchanged = false;
+            } else {
+                throw e;
+            }
+        }
+
+        if (unchanged) {
+            synchronized (entries) {
+                entries.replace(cacheKey, entry, entry.validated(now));
+            }
+        }
+        return unchanged;
+    }
+
+    /**
+     * 下载完成后加入缓存，下载期间对象被清除时丢弃
+     */
+    private void commit(Fill fill, Entry entry) {
+        List<Path> evicted = new ArrayList<>();
+        synchronized (entries) {
+            fills.remove(fill);
+            if (fill.stale) {
+                logger.debug("Discard cache of {} modified during download", fill.cacheKey);
+                evicted.add(entry.file());
+            } else {
+                Entry previous = entries.put(fill.cacheKey, entry);
+                if (previous != null) {
+                    size -= previous.size();
+                    evicted.add(previous.file());
+                }
+                size += entry.size();
+
+                Iterator<Entry> iterator = entries.values().iterator();
+                while (size > maxSize && iterator.hasNext()) {
+                    Entry eldest = iterator.next();
+                    if (eldest != entry) {
+                        iterator.remove();
+                        size -= eldest.size();
+                        evicted.add(eldest.file());
+                    }
+                }
+            }
+        }
+
+        evicted.forEach(this::delete);
+    }
+
+    private void release(Fill fill) {
+        synchronized (entries) {
+            fills.remove(fill);
+        }
+    }
+
+    private void remove(String cacheKey, Entry entry) {
+        synchronized (entries) {
+            if (!entries.remove(cacheKey, entry)) {
+                return;
+            }
+            size -= entry.size();
+        }
+
+        delete(entry.file());
+    }
+
+    private void clear() {
+        List<Entry> removed;
+        synchronized (entries) {
+            removed = new ArrayList<>(entries.values());
+            entries.clear();
+            size = 0;
+        }
+
+        removed.forEach(entry -> delete(entry.file()));
+    }
+
+    private void record(boolean hit) {
+        if (GlobalConfiguration.settings().metricsEnabled) {
+            Metrics.get().downloadCache(hit);
+        }
+    }
+
+    private void delete(Path file) {
+        if (file == null) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Delete cache file {} failed", file, e);
+        }
+    }
+
+    private boolean matchesConfiguration(Settings settings) {
+        return directory.equals(Path.of(settings.downloadCacheDir))
+                && maxSize == settings.downloadCacheMaxSize
+                && maxObjectSize == settings.downloadCacheMaxObjectSize
+                && ttlMillis == settings.downloadCacheTtl * 1000L;
+    }
+
+    /**
+     * 删除未被索引的缓存文件
+     */
+    private void clean() throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+                count++;
+            }
+        }
+
+        if (count > 0) {
+            logger.info("Removed {} stale cache files from {}", count, directory);
+        }
+    }
+
+    private static String cacheKey(String store, String bucket, String key) {
+        return store + ':' + bucket + '/' + key;
+    }
+
+    private record Entry(Path file, String eTag, long size, long validatedAt) {
+
+        Entry validated(long now) {
+            return new Entry(file, eTag, size, now);
+        }
+    }
+
+    /**
+     * 进行中的下载。stale 由 entries 的锁保护
+     */
+    private static final class Fill {
+
+        private final String cacheKey;
+
+        private boolean stale = false;
+
+        Fill(String cacheKey) {
+            this.cacheKey = cacheKey;
+        }
+    }
+
+    /**
+     * 将读取到的数据同时写入缓存文件，写入失败时停止缓存但不影响读取。
+     */
+    private final class FillInputStream extends FilterInputStream {
+
+        private final Fill fill;
+
+        private final GetObjectResponse response;
+
+        private final Path file;
+
+        private FileChannel channel;
+
+        private long written = 0;
+
+        private boolean eof = false;
+
+        FillInputStream(InputStream in, Fill fill, GetObjectResponse response, Path file, FileChannel channel) {
+            super(in);
+            this.fill = fill;
+            this.response = response;
+            this.file = file;
+            this.channel = channel;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return n < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n < 0) {
+                this.eof = true;
+            } else if (n > 0 && channel != null) {
+                try {
+                    ByteBuffer buffer = ByteBuffer.wrap(b, off, n);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    written += n;
+                } catch (IOException e) {
+                    logger.warn("Write cache file {} failed", file, e);
+                    discard();
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            discard();
+            return in.skip(n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                in.close();
+            } finally {
+                if (channel != null) {
+                    channel.close();
+                    this.channel = null;
+                    if (eof && written == response.contentLength()) {
+                        commit(fill, new Entry(file, response.eTag(), written, System.currentTimeMillis()));
+                    } else {
+                        release(fill);
+                        delete(file);
+                    }
+                }
+            }
+        }
+
+        private void discard() {
+            if (channel == null) {
+                return;
+            }
+
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.debug("Close cache file {} failed", file, e);
+            }
+            this.channel = null;
+            release(fill);
+            delete(file);
+        }
+    }
+}
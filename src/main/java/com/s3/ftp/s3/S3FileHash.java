@@ -0,0 +1,111 @@
+package com.s3.ftp.s3;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+/**
+ * 文件摘要算法，名称与 FTP HASH 命令一致。整个文件的摘要保存为对象标签，标签名为 s3-ftp- 加小写算法名；
+ * CRC32C 与 SHA-256 同时可作为分片上传的 S3 校验和。
+ */
+public enum S3FileHash {
+
+    MD5("MD5"),
+
+    CRC32("CRC32"),
+
+    CRC32C("CRC32C"),
+
+    SHA_256("SHA-256");
+
+    private static final String TAG_PREFIX = "s3-ftp-";
+
+    private final String ftpName;
+
+    S3FileHash(String ftpName) {
+        this.ftpName = ftpName;
+    }
+
+    public String ftpName() {
+        return ftpName;
+    }
+
+    String tagKey() {
+        return TAG_PREFIX + ftpName.toLowerCase(Locale.ROOT);
+    }
+
+    public static Optional<S3FileHash> parse(String name) {
+        return Arrays.stream(values()).filter(v -> v.ftpName.equalsIgnoreCase(name.trim())).findFirst();
+    }
+
+    static Optional<S3FileHash> fromTagKey(String tagKey) {
+        return Arrays.stream(values()).filter(v -> v.tagKey().equals(tagKey)).findFirst();
+    }
+
+    Digest newDigest() {
+        return switch (this) {
+            case MD5 -> new MessageDigestDigest("MD5");
+            case SHA_256 -> new MessageDigestDigest("SHA-256");
+            case CRC32 -> new ChecksumDigest(new CRC32());
+            case CRC32C -> new ChecksumDigest(new CRC32C());
+        };
+    }
+
+    /**
+     * 增量计算的摘要，CRC 结果为 4 字节大端序
+     */
+    interface Digest {
+
+        void update(byte[] bytes, int off, int len);
+
+        byte[] digest();
+    }
+
+    private static final class MessageDigestDigest implements Digest {
+
+        private final MessageDigest digest;
+
+        private MessageDigestDigest(String algorithm) {
+            try {
+                this.digest = MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void update(byte[] bytes, int off, int len) {
+            digest.update(bytes, off, len);
+        }
+
+        @Override
+        public byte[] digest() {
+            return digest.digest();
+        }
+    }
+
+    private static final class ChecksumDigest implements Digest {
+
+        private final Checksum checksum;
+
+        private ChecksumDigest(Checksum checksum) {
+            this.checksum = checksum;
+        }
+
+        @Override
+        public void update(byte[] bytes, int off, int len) {
+            checksum.update(bytes, off, len);
+        }
+
+        @Override
+        public byte[] digest() {
+            return ByteBuffer.allocate(Integer.BYTES).putInt((int) checksum.getValue()).array();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.s3.ftp.s3;
+
+import software.amazon.awssdk.services.s3.model.Tag;
+import software.amazon.awssdk.services.s3.model.Tagging;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 随数据流增量计算整个文件的摘要，结果以十六进制保存为对象标签。
+ */
+final class S3FileHasher {
+
+    private final Map<S3FileHash, S3FileHash.Digest> digests = new EnumMap<>(S3FileHash.class);
+
+    private Map<S3FileHash, String> values;
+
+    S3FileHasher(Collection<S3FileHash> algorithms) {
+        algorithms.forEach(v -> digests.put(v, v.newDigest()));
+    }
+
+    void update(byte[] bytes, int off, int len) {
+        for (S3FileHash.Digest digest : digests.values()) {
+            digest.update(bytes, off, len);
+        }
+    }
+
+    /**
+     * 结束计算并返回各算法的摘要，之后不应再更新
+     */
+    Map<S3FileHash, String> values() {
+        if (values == null) {
+            Map<S3FileHash, String> result = new EnumMap<>(S3FileHash.class);
+            digests.forEach((hash, digest) -> result.put(hash, HexFormat.of().formatHex(digest.digest())));
+            this.values = Collections.unmodifiableMap(result);
+        }
+        return values;
+    }
+
+    Tagging tagging() {
+        List<Tag> tags = values().entrySet().stream()
+                .map(ele -> Tag.builder().key(ele.getKey().tagKey()).value(ele.getValue()).build())
+                .toList();
+        return Tagging.builder().tagSet(tags).build();
+    }
+
+    /**
+     * 从对象标签中取出本服务写入的摘要，忽略其他标签
+     */
+    static Map<S3FileHash, String> fromTags(List<Tag> tags) {
+        Map<S3FileHash, String> result = new EnumMap<>(S3FileHash.class);
+        for (Tag tag : tags) {
+            S3FileHash.fromTagKey(tag.key()).ifPresent(hash -> result.put(hash, tag.value()));
+        }
+        return result;
+    }
+}
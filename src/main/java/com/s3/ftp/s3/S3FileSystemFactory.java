@@ -5,7 +5,6 @@ import org.apache.ftpserver.ftplet.FileSystemFactory;
 import org.apache.ftpserver.ftplet.FileSystemView;
 import org.apache.ftpserver.ftplet.FtpException;
 import org.apache.ftpserver.ftplet.User;
-import software.amazon.awssdk.services.s3.S3ClientBuilder;
 
 public final class S3FileSystemFactory implements FileSystemFactory {
 
@@ -19,12 +18,10 @@ public final class S3FileSystemFactory implements FileSystemFactory {
     public FileSystemView createFileSystemView(User user) throws FtpException {
         UserStoreInfo storeInfo = UserStoreInfo.fromHomeDirectory(user.getHomeDirectory());
 
-        S3ClientBuilder builder = clientRegister.byKey(storeInfo.store());
-        if (builder == null) {
-            throw new FtpException("Home directory %s not found".formatted(user.getHomeDirectory()));
-        }
+        S3StoreClient storeClient = clientRegister.acquire(storeInfo.store())
+                .orElseThrow(() -> new FtpException("Home directory %s not found".formatted(user.getHomeDirectory())));
 
-        return new S3FileSystemView(builder.build(), storeInfo.bucket(), storeInfo.path(), user);
+        return new S3FileSystemView(storeClient, storeInfo.bucket(), storeInfo.path(), user);
     }
 
 }
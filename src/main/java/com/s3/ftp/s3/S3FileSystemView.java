@@ -1,55 +1,73 @@
 package com.s3.ftp.s3;
 
+import com.s3.ftp.config.GlobalConfiguration;
+import com.s3.ftp.config.Settings;
 import com.s3.ftp.util.PathBuilder;
 import org.apache.ftpserver.ftplet.FileSystemView;
 import org.apache.ftpserver.ftplet.FtpFile;
 import org.apache.ftpserver.ftplet.User;
 import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.S3Object;
-
-import java.util.List;
 
 public final class S3FileSystemView implements FileSystemView {
 
-    private final S3Client client;
+    private final S3StoreClient storeClient;
 
     private final String bucket;
 
+    /**
+     * 规范化后的根路径，不以 / 结尾，存储桶根目录时为空
+     */
+    private final String rootKey;
+
     private final String rootPath;
 
     private final User user;
 
-    private String currentPath = "/";
+    /**
+     * 会话开始时的配置快照，重新加载配置只影响之后登录的会话
+     */
+    private final Settings settings = GlobalConfiguration.settings();
+
+    /**
+     * 相对于根路径的当前目录，已规范化
+     */
+    private String currentPath = "";
 
     public S3FileSystemView(S3Client client, String bucket, String path, User user) {
-        this.client = client;
+        this(S3StoreClient.standalone(client).acquire(), bucket, path, user);
+    }
+
+    public S3FileSystemView(S3StoreClient storeClient, String bucket, String path, User user) {
+        this.storeClient = storeClient;
         this.bucket = bucket;
-        this.rootPath = PathBuilder.root(path).buildDirPath();
+        this.rootKey = PathBuilder.root(path).build();
+        this.rootPath = toKey("", true);
         this.user = user;
+
+        if (settings.directoryIndexEnabled) {
+            storeClient.directoryIndex(bucket);
+        }
     }
 
     @Override
     public FtpFile getHomeDirectory() {
-        return new S3FtpFile(client, bucket, rootPath, user);
+        return new S3FtpFile(storeClient, settings, bucket, rootPath, null, user);
     }
 
     @Override
     public FtpFile getWorkingDirectory() {
-        String workingPath = PathBuilder.root(rootPath).resolve(currentPath).buildDirPath();
-        return new S3FtpFile(client, bucket, workingPath, user);
+        return new S3FtpFile(storeClient, settings, bucket, toKey(currentPath, true), null, user);
     }
 
     @Override
     public boolean changeWorkingDirectory(String dir) {
-        String workingPath = PathBuilder.root(rootPath).resolve(currentPath).resolve(dir).buildDirPath();
-        if (rootPath.equals(workingPath)) {
-            this.currentPath = rootPath;
+        String workingPath = PathBuilder.normalize(currentPath, dir);
+        if (workingPath.isEmpty()) {
+            this.currentPath = workingPath;
             return true;
         }
 
-        List<S3Object> contents = client.listObjectsV2(req -> req.bucket(bucket).prefix(workingPath).maxKeys(1))
-                .contents();
-        if (!contents.isEmpty()) {
+        if (new S3FtpFile(storeClient, settings, bucket, toKey(workingPath, true), null, user).doesExist()) {
             this.currentPath = workingPath;
             return true;
         }
@@ -59,9 +77,8 @@ public final class S3FileSystemView implements FileSystemView {
 
     @Override
     public FtpFile getFile(String path) {
-        PathBuilder builder = PathBuilder.root(rootPath).resolve(currentPath).resolve(path);
-        String filePath = path.endsWith("/") ? builder.buildDirPath() : builder.build();
-        return new S3FtpFile(client, bucket, filePath, user);
+        String filePath = PathBuilder.normalize(currentPath, path);
+        return new S3FtpFile(storeClient, settings, bucket, toKey(filePath, path.endsWith("/")), null, user);
     }
 
     @Override
@@ -71,8 +88,15 @@ public final class S3FileSystemView implements FileSystemView {
 
     @Override
     public void dispose() {
-        client.close();
+        storeClient.release();
     }
 
+    /**
+     * 将相对于根路径的路径转换为对象 key，目录以 / 结尾。
+     */
+    private String toKey(String path, boolean directory) {
+        String key = rootKey.isEmpty() ? path : path.isEmpty() ? rootKey : rootKey + '/' + path;
+        return directory ? key + '/' : key;
+    }
 
 }
@@ -1,53 +1,88 @@
 package com.s3.ftp.s3;
 
 import com.s3.ftp.config.GlobalConfiguration;
+import com.s3.ftp.config.Settings;
+import com.s3.ftp.metrics.Metrics;
+import com.s3.ftp.s3.S3MetadataCache.S3Metadata;
+import com.s3.ftp.throttle.Throttles;
+import com.s3.ftp.util.DataConnectionStreams;
 import org.apache.ftpserver.ftplet.FtpFile;
 import org.apache.ftpserver.ftplet.User;
 import org.apache.ftpserver.usermanager.impl.WriteRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
 import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.time.Instant;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Stream;
 
 public final class S3FtpFile implements FtpFile {
 
-    private static final Instant LAST_MODIFIED_EMPTY = Instant.ofEpochSecond(0);
+    private static final Logger logger = LoggerFactory.getLogger(S3FtpFile.class);
+
+    private static final int NOT_FOUND = 404;
+
+    private final S3StoreClient storeClient;
 
     private final S3Client client;
 
+    private final S3MetadataCache metadataCache;
+
     private final String bucket;
 
     private final String key;
 
-    private final Instant lastModified;
-
-    private final long size;
-
     private final User user;
 
-    private Boolean exist;
+    /**
+     * 所属会话创建时的配置快照，同一会话内的全部操作使用相同的配置
+     */
+    private final Settings settings;
+
+    private S3Metadata metadata;
 
     public S3FtpFile(S3Client client, String bucket, String key, User user) {
-        this(client, bucket, key, LAST_MODIFIED_EMPTY, 0L, user);
+        this(S3StoreClient.standalone(client), bucket, key, null, user);
     }
 
     public S3FtpFile(S3Client client, String bucket, String key, Instant lastModified, Long size, User user) {
-        this.client = client;
+        this(S3StoreClient.standalone(client), bucket, key, S3Metadata.file(size, lastModified), user);
+    }
+
+    S3FtpFile(S3StoreClient storeClient, String bucket, String key, User user) {
+        this(storeClient, bucket, key, null, user);
+    }
+
+    S3FtpFile(S3StoreClient storeClient, String bucket, String key, S3Metadata metadata, User user) {
+        this(storeClient, GlobalConfiguration.settings(), bucket, key, metadata, user);
+    }
+
+    S3FtpFile(S3StoreClient storeClient, Settings settings, String bucket, String key, S3Metadata metadata, User user) {
+        this.storeClient = storeClient;
+        this.settings = settings;
+        this.client = storeClient.client();
+        this.metadataCache = storeClient.metadataCache();
         this.bucket = bucket;
         this.key = key;
-        this.lastModified = lastModified;
-        this.size = size;
+        this.metadata = metadata;
         this.user = user;
     }
 
@@ -85,13 +120,7 @@ public final class S3FtpFile implements FtpFile {
 
     @Override
     public boolean doesExist() {
-        if (exist == null) {
-            this.exist = !client.listObjectsV2(req -> req.bucket(bucket).prefix(key).maxKeys(1))
-                    .contents()
-                    .isEmpty();
-        }
-
-        return exist;
+        return metadata().exists();
     }
 
     @Override
@@ -114,11 +143,14 @@ public final class S3FtpFile implements FtpFile {
             return false;
         }
 
-        if (isDirectory()) {
-            return Optional.ofNullable(listFiles())
-                    .map(Collection::stream)
-                    .orElse(Stream.of())
-                    .allMatch(v -> v.getAbsolutePath().equals(getAbsolutePath()));
+        if (isDirectory() && !settings.recursiveDeleteEnabled) {
+            ListObjectsV2Response resp = client.listObjectsV2(req -> req.bucket(bucket)
+                    .prefix(key)
+                    .delimiter("/")
+                    .maxKeys(2)
+            );
+            return resp.commonPrefixes().isEmpty()
+                    && resp.contents().stream().allMatch(v -> v.key().equals(key));
         }
 
         return true;
@@ -141,7 +173,7 @@ public final class S3FtpFile implements FtpFile {
 
     @Override
     public long getLastModified() {
-        return lastModified.toEpochMilli();
+        return isDirectory() ? 0L : metadata().lastModified().toEpochMilli();
     }
 
     @Override
@@ -151,7 +183,7 @@ public final class S3FtpFile implements FtpFile {
 
     @Override
     public long getSize() {
-        return size;
+        return isDirectory() ? 0L : metadata().size();
     }
 
     @Override
@@ -169,6 +201,8 @@ public final class S3FtpFile implements FtpFile {
                 req -> req.bucket(bucket).key(key).contentType("application/x-directory"),
                 RequestBody.empty()
         );
+        metadataCache.written(bucket, key);
+        metadataCache.put(bucket, key, S3Metadata.DIRECTORY);
         return true;
     }
 
@@ -178,7 +212,22 @@ public final class S3FtpFile implements FtpFile {
             return false;
         }
 
+        if (isDirectory() && settings.recursiveDeleteEnabled) {
+            try {
+                batchOperations().deleteTree(key);
+                return true;
+            } catch (IOException e) {
+                logger.warn("Delete directory {}/{} failed", bucket, key, e);
+                return false;
+            } finally {
+                // 失败时也可能已删除部分对象
+                S3DownloadCache.evictPrefix(storeClient.store(), bucket, key);
+            }
+        }
+
         client.deleteObject(req -> req.bucket(bucket).key(key));
+        metadataCache.deleted(bucket, key);
+        S3DownloadCache.evict(storeClient.store(), bucket, key);
         return true;
     }
 
@@ -188,18 +237,27 @@ public final class S3FtpFile implements FtpFile {
             return false;
         }
 
+        String destinationKey = destination.getAbsolutePath();
         try {
+            S3Metadata source = metadata();
+            if (!source.exists()) {
+                return false;
+            }
+
+            if (isDirectory() || source.directory()) {
+                return moveDirectory(destinationKey);
+            }
+
             // 复制数据
-            client.copyObject(req -> req
-                    .sourceBucket(bucket)
-                    .sourceKey(key)
-                    .destinationBucket(bucket)
-                    .destinationKey(destination.getAbsolutePath())
-            );
+            batchOperations().copyObject(key, destinationKey, source.size());
             // 确认数据复制成功
-            client.headObject(req -> req.bucket(bucket).key(destination.getAbsolutePath()));
+            HeadObjectResponse head = client.headObject(req -> req.bucket(bucket).key(destinationKey));
+            metadataCache.put(bucket, destinationKey, S3Metadata.file(head.contentLength(), head.lastModified()));
+            S3DownloadCache.evict(storeClient.store(), bucket, destinationKey);
             // 删除源数据
             client.deleteObject(req -> req.bucket(bucket).key(key));
+            metadataCache.deleted(bucket, key);
+            S3DownloadCache.evict(storeClient.store(), bucket, key);
             return true;
         } catch (AwsServiceException | SdkClientException e) {
             return false;
@@ -212,33 +270,243 @@ public final class S3FtpFile implements FtpFile {
             return null;
         }
 
+        List<S3FtpFile> files = new ArrayList<>();
+        iterateFiles().forEachRemaining(files::add);
+        return files;
+    }
+
+    /**
+     * 逐页遍历目录内容，不会一次性加载整个目录，供大目录的 LIST/NLST 流式输出使用。
+     */
+    public Iterator<S3FtpFile> iterateFiles() {
+        Optional<List<S3DirectoryIndex.Child>> indexed = metadataCache.list(bucket, key);
+        if (indexed.isPresent()) {
+            return indexed.get().stream()
+                    .map(v -> new S3FtpFile(storeClient, settings, bucket, v.key(), v.metadata(), user))
+                    .iterator();
+        }
+
         ListObjectsV2Request.Builder builder = ListObjectsV2Request.builder()
                 .bucket(bucket)
-                .maxKeys(GlobalConfiguration.maxListKeysLimit)
+                .maxKeys(settings.maxListKeysLimit)
                 .delimiter("/");
 
         if (!key.equals("/")) {
             builder.prefix(key);
         }
-        ListObjectsV2Response resp = client.listObjectsV2(builder.build());
 
-        return Stream.concat(
+        return new S3ListingIterator<>(client, builder.build(), resp -> Stream.concat(
                         resp.commonPrefixes().stream()
-                                .map(v -> new S3FtpFile(client, bucket, v.prefix(), user)),
+                                .map(v -> toFile(v.prefix(), S3Metadata.DIRECTORY)),
                         resp.contents().stream()
-                                .map(v -> new S3FtpFile(client, bucket, v.key(), v.lastModified(), v.size(), user))
+                                .filter(v -> !v.key().equals(key))
+                                .map(v -> toFile(v.key(), S3Metadata.file(v.size(), v.lastModified())))
                 )
-                .toList();
+                .iterator());
     }
 
     @Override
     public OutputStream createOutputStream(long offset) throws IOException {
-        return new S3OutputStream(client, bucket, key, offset);
+        metadataCache.invalidate(bucket, key);
+        S3DownloadCache.evict(storeClient.store(), bucket, key);
+        // 上传期间开始的下载可能读到修改前的数据，完成时再清除一次
+        Runnable onComplete = () -> {
+            metadataCache.written(bucket, key);
+            S3DownloadCache.evict(storeClient.store(), bucket, key);
+        };
+        Optional<S3AsyncClient> asyncClient = storeClient.asyncClient();
+        S3UploadJournal.Entry journal = settings.uploadJournalEnabled
+                ? S3UploadJournal.get(settings).entry(storeClient.store(), bucket, key)
+                : null;
+        // 续传、上传日志与文件摘要只由 S3OutputStream 支持
+        OutputStream os;
+        Runnable onAbort;
+        if (asyncClient.isPresent() && offset == 0 && journal == null && settings.fileHashes.isEmpty()) {
+            S3AsyncOutputStream asyncStream = new S3AsyncOutputStream(asyncClient.get(), bucket, key, onComplete);
+            os = asyncStream;
+            onAbort = asyncStream::abort;
+        } else {
+            S3OutputStream stream = new S3OutputStream(client, settings, bucket, key, offset, onComplete, journal);
+            os = stream;
+            onAbort = stream::abort;
+        }
+        os = Throttles.throttleUpload(os, Throttles.user(user.getName()), storeClient.limits());
+        return DataConnectionStreams.upload(settings.metricsEnabled
+                ? Metrics.get().meterUpload(os, user.getName(), storeClient.store())
+                : os, onAbort);
     }
 
     @Override
-    public InputStream createInputStream(long offset) {
-        return client.getObject(req -> req.bucket(bucket).key(key).range("%s-".formatted(offset)));
+    public InputStream createInputStream(long offset) throws IOException {
+        Optional<InputStream> cached = settings.downloadCacheEnabled
+                ? openCachedInputStream(offset)
+                : Optional.empty();
+        Optional<S3AsyncClient> asyncClient = storeClient.asyncClient();
+        InputStream is;
+        if (cached.isPresent()) {
+            is = cached.get();
+        } else if (asyncClient.isPresent()) {
+            is = openAsyncInputStream(asyncClient.get(), offset);
+        } else {
+            is = openInputStream(offset);
+        }
+        if (offset == 0 && !settings.fileHashes.isEmpty()) {
+            is = new S3HashingInputStream(is, key, new S3FileHasher(settings.fileHashes), this::fileHashes);
+        }
+        is = Throttles.throttleDownload(is, Throttles.user(user.getName()), storeClient.limits());
+
+        return DataConnectionStreams.download(settings.metricsEnabled
+                ? Metrics.get().meterDownload(is, user.getName(), storeClient.store())
+                : is);
+    }
+
+    /**
+     * 未完成的分片上传中可续传的大小，即日志中从第一个分片起连续完成的分片总大小。
+     * 没有保留的分片上传、未开启分片上传日志或已存在完整的对象时返回空，此时 SIZE 返回对象本身的大小。
+     */
+    public Optional<Long> resumableSize() throws IOException {
+        if (!settings.uploadJournalEnabled) {
+            return Optional.empty();
+        }
+
+        return S3UploadJournal.get(settings).entry(storeClient.store(), bucket, key).read()
+                .map(S3UploadJournal.Upload::resumableSize)
+                .filter(size -> size > 0 && !doesExist());
+    }
+
+    /**
+     * 上传时保存在对象标签中的文件摘要，不读取对象内容。对象不存在或未保存摘要时返回空 Map。
+     */
+    public Map<S3FileHash, String> fileHashes() {
+        try {
+            return S3FileHasher.fromTags(client.getObjectTagging(req -> req.bucket(bucket).key(key)).tagSet());
+        } catch (S3Exception e) {
+            if (e.statusCode() == NOT_FOUND) {
+                return Map.of();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 优先读取下载缓存；未命中时，从头开始的完整下载在读取的同时写入缓存。
+     */
+    private Optional<InputStream> openCachedInputStream(long offset) throws IOException {
+        S3DownloadCache cache = S3DownloadCache.get(settings);
+        Optional<InputStream> cached = cache.open(client, storeClient.store(), bucket, key, offset);
+        if (cached.isPresent() || offset > 0 || !cache.cacheable(getSize())) {
+            return cached;
+        }
+
+        return Optional.of(cache.fill(client, storeClient.store(), bucket, key));
+    }
+
+    /**
+     * 缓存的对象大小只用于判断是否并发分块下载，实际大小与版本取自下载响应。
+     */
+    private InputStream openInputStream(long offset) {
+        if (settings.readAheadParallelism > 1 && getSize() - offset >= settings.readAheadThreshold) {
+            return new S3ReadAheadInputStream(client, bucket, key, offset,
+                    S3ReadAheadBufferPool.get(settings), settings.readAheadParallelism);
+        }
+
+        return client.getObject(req -> req.bucket(bucket).key(key).range("bytes=%d-".formatted(offset)));
+    }
+
+    /**
+     * 通过 CRT 客户端下载，完整下载时不带 Range 头以便 CRT 拆分为并行的范围请求。
+     * 返回的流按读取进度向 S3 请求数据，读取慢时不会继续缓冲。
+     */
+    private InputStream openAsyncInputStream(S3AsyncClient asyncClient, long offset) throws IOException {
+        try {
+            return asyncClient.getObject(req -> {
+                req.bucket(bucket).key(key);
+                if (offset > 0) {
+                    req.range("bytes=%d-".formatted(offset));
+                }
+            }, AsyncResponseTransformer.toBlockingInputStream()).join();
+        } catch (CompletionException e) {
+            throw new IOException("Download %s/%s failed".formatted(bucket, key), e.getCause());
+        }
+    }
+
+    /**
+     * 复制目录前缀下的全部对象后删除源数据，复制失败时保留源数据。
+     */
+    private boolean moveDirectory(String destinationKey) {
+        String sourcePrefix = isDirectory() ? key : key + "/";
+        String destinationPrefix = destinationKey.endsWith("/") ? destinationKey : destinationKey + "/";
+        if (destinationPrefix.startsWith(sourcePrefix)) {
+            return false;
+        }
+
+        try {
+            S3BatchOperations operations = batchOperations();
+            operations.copyTree(sourcePrefix, destinationPrefix);
+            operations.deleteTree(sourcePrefix);
+            return true;
+        } catch (IOException e) {
+            logger.warn("Move directory {}/{} to {} failed", bucket, sourcePrefix, destinationPrefix, e);
+            return false;
+        } finally {
+            S3DownloadCache.evictPrefix(storeClient.store(), bucket, destinationPrefix);
+            S3DownloadCache.evictPrefix(storeClient.store(), bucket, sourcePrefix);
+        }
+    }
+
+    private S3BatchOperations batchOperations() {
+        return new S3BatchOperations(client, bucket, metadataCache, settings);
+    }
+
+    private S3FtpFile toFile(String fileKey, S3Metadata fileMetadata) {
+        metadataCache.put(bucket, fileKey, fileMetadata);
+        return new S3FtpFile(storeClient, settings, bucket, fileKey, fileMetadata, user);
+    }
+
+    /**
+     * 依次从自身、存储的元数据缓存、S3 获取对象状态，LIST 结果创建的文件自带状态，不会再请求 S3。
+     * 目录以存在前缀下的对象为准；文件以一次 HEAD 获取大小与修改时间，
+     * 同名对象不存在时再检查是否存在以其为目录的对象（即未带 / 的目录路径）。
+     */
+    private S3Metadata metadata() {
+        if (metadata != null) {
+            return metadata;
+        }
+
+        S3Metadata cached = metadataCache.get(bucket, key).orElse(null);
+        if (cached != null) {
+            this.metadata = cached;
+            return cached;
+        }
+
+        S3Metadata resolved;
+        if (isDirectory()) {
+            resolved = hasObjects(key) ? S3Metadata.DIRECTORY : S3Metadata.ABSENT;
+        } else {
+            resolved = headFile().orElseGet(() -> hasObjects(key + "/")
+                    ? S3Metadata.DIRECTORY
+                    : S3Metadata.ABSENT);
+        }
+
+        metadataCache.put(bucket, key, resolved);
+        this.metadata = resolved;
+        return resolved;
+    }
+
+    private Optional<S3Metadata> headFile() {
+        try {
+            HeadObjectResponse head = client.headObject(req -> req.bucket(bucket).key(key));
+            return Optional.of(S3Metadata.file(head.contentLength(), head.lastModified()));
+        } catch (S3Exception e) {
+            if (e.statusCode() == NOT_FOUND) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    private boolean hasObjects(String prefix) {
+        return !client.listObjectsV2(req -> req.bucket(bucket).prefix(prefix).maxKeys(1)).contents().isEmpty();
     }
 
 }
@@ -0,0 +1,87 @@
+package com.s3.ftp.s3;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 完整下载时随读取计算文件摘要，读到末尾后与上传时保存的摘要比对，不一致时读取失败，客户端不会得到成功应答。
+ * 跳过数据后不再校验。
+ */
+final class S3HashingInputStream extends FilterInputStream {
+
+    private final String key;
+
+    private final Supplier<Map<S3FileHash, String>> expected;
+
+    private S3FileHasher hasher;
+
+    /**
+     * @param expected 读到末尾时才获取，对象没有保存摘要时返回空 Map
+     */
+    S3HashingInputStream(InputStream in, String key, S3FileHasher hasher, Supplier<Map<S3FileHash, String>> expected) {
+        super(in);
+        this.key = key;
+        this.hasher = hasher;
+        this.expected = expected;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b == -1) {
+            verify();
+        } else if (hasher != null) {
+            hasher.update(new byte[]{(byte) b}, 0, 1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int size = super.read(b, off, len);
+        if (size == -1) {
+            verify();
+        } else if (hasher != null) {
+            hasher.update(b, off, size);
+        }
+        return size;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        this.hasher = null;
+        return super.skip(n);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void verify() throws IOException {
+        S3FileHasher completed = hasher;
+        if (completed == null) {
+            return;
+        }
+        this.hasher = null;
+
+        Map<S3FileHash, String> stored;
+        try {
+            stored = expected.get();
+        } catch (RuntimeException e) {
+            throw new IOException("read hashes of %s failed".formatted(key), e);
+        }
+
+        for (Map.Entry<S3FileHash, String> ele : completed.values().entrySet()) {
+            String value = stored.get(ele.getKey());
+            if (value != null && !value.equalsIgnoreCase(ele.getValue())) {
+                throw new IOException("%s mismatch for %s: expected %s, got %s".formatted(
+                        ele.getKey().ftpName(), key, value, ele.getValue()
+                ));
+            }
+        }
+    }
+}
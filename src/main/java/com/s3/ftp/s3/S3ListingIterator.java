@@ -0,0 +1,79 @@
+package com.s3.ftp.s3;
+
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * 按 continuation token 逐页遍历 listObjectsV2 结果。取得一页后立即在后台请求下一页，
+ * 内存中最多同时保留当前页与预取页。
+ */
+final class S3ListingIterator<T> implements Iterator<T> {
+
+    private final S3Client client;
+
+    private final ListObjectsV2Request request;
+
+    private final Function<ListObjectsV2Response, Iterator<T>> mapper;
+
+    private Iterator<T> current = Collections.emptyIterator();
+
+    private CompletableFuture<ListObjectsV2Response> nextPage;
+
+    S3ListingIterator(S3Client client, ListObjectsV2Request request,
+                      Function<ListObjectsV2Response, Iterator<T>> mapper) {
+        this.client = client;
+        this.request = request;
+        this.mapper = mapper;
+        this.nextPage = CompletableFuture.completedFuture(client.listObjectsV2(request));
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (nextPage == null) {
+                return false;
+            }
+
+            ListObjectsV2Response resp = awaitPage();
+            if (Boolean.TRUE.equals(resp.isTruncated()) && resp.nextContinuationToken() != null) {
+                ListObjectsV2Request next = request.toBuilder().continuationToken(resp.nextContinuationToken()).build();
+                this.nextPage = CompletableFuture.supplyAsync(() -> client.listObjectsV2(next), S3TransferExecutor.get());
+            } else {
+                this.nextPage = null;
+            }
+
+            this.current = mapper.apply(resp);
+        }
+
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        return current.next();
+    }
+
+    private ListObjectsV2Response awaitPage() {
+        try {
+            return nextPage.join();
+        } catch (CompletionException e) {
+            this.nextPage = null;
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.s3.ftp.s3;
+
+import com.s3.ftp.util.BufferPool;
+import com.s3.ftp.util.ByteBufferInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 使用缓冲池中写缓存的分片暂存区。创建时一次借出分片所需的全部写缓存，并发上传不会各自持有一部分写缓存而互相等待；
+ * 缓冲池空闲的写缓存不足时分片大小逐次减半，最少等待借用一个。封存时归还未写入的写缓存。
+ * 请求体直接读取缓冲区，不复制数据。
+ */
+final class S3MemoryPartBuffer implements S3PartBuffer {
+
+    private final BufferPool pool;
+
+    private final List<ByteBuffer> buffers = new ArrayList<>();
+
+    /**
+     * 正在写入的写缓存序号
+     */
+    private int current = 0;
+
+    private boolean sealed = false;
+
+    S3MemoryPartBuffer(BufferPool pool) throws IOException {
+        this(pool, pool.getBufferSize());
+    }
+
+    /**
+     * @param capacity 期望的分片大小，为写缓存大小的整数倍
+     */
+    S3MemoryPartBuffer(BufferPool pool, long capacity) throws IOException {
+        this.pool = pool;
+
+        Optional<List<ByteBuffer>> reserved = Optional.empty();
+        for (long count = capacity / pool.getBufferSize(); count > 1 && reserved.isEmpty(); count /= 2) {
+            reserved = pool.tryAcquire((int) Math.min(count, pool.getCapacity()));
+        }
+
+        if (reserved.isPresent()) {
+            this.buffers.addAll(reserved.get());
+        } else {
+            this.buffers.add(pool.acquire());
+        }
+    }
+
+    @Override
+    public int write(byte[] bytes, int off, int len) throws IOException {
+        if (sealed) {
+            throw new IllegalStateException("part buffer sealed");
+        }
+
+        ByteBuffer buffer = buffers.get(current);
+        if (!buffer.hasRemaining()) {
+            if (isFull()) {
+                return 0;
+            }
+            buffer = buffers.get(++current);
+        }
+
+        int size = Math.min(len, buffer.remaining());
+        buffer.put(bytes, off, size);
+        return size;
+    }
+
+    @Override
+    public boolean isFull() {
+        return current == buffers.size() - 1 && !buffers.get(current).hasRemaining();
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (ByteBuffer buffer : buffers) {
+            size += sealed ? buffer.limit() : buffer.position();
+        }
+        return size;
+    }
+
+    /**
+     * @return 已写入数据的写缓存数量，即封存后占用的写缓存数量
+     */
+    int buffers() {
+        return current + 1;
+    }
+
+    @Override
+    public void seal() {
+        if (!sealed) {
+            List<ByteBuffer> unused = buffers.subList(current + 1, buffers.size());
+            unused.forEach(pool::release);
+            unused.clear();
+            buffers.forEach(ByteBuffer::flip);
+            this.sealed = true;
+        }
+    }
+
+    @Override
+    public RequestBody requestBody() {
+        List<ByteBuffer> content = List.copyOf(buffers);
+        return RequestBody.fromContentProvider(() -> newStream(content), size(), CONTENT_TYPE);
+    }
+
+    @Override
+    public synchronized void close() {
+        buffers.forEach(pool::release);
+        buffers.clear();
+    }
+
+    private static InputStream newStream(List<ByteBuffer> content) {
+        if (content.size() == 1) {
+            return new ByteBufferInputStream(content.get(0));
+        }
+
+        return new SequenceInputStream(Collections.enumeration(
+                content.stream().map(ByteBufferInputStream::new).toList()
+        ));
+    }
+}
@@ -0,0 +1,163 @@
+package com.s3.ftp.s3;
+
+import com.s3.ftp.s3.S3DirectoryIndex.Child;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 存储级别的对象元数据缓存，按 LRU 淘汰并在 TTL 后过期。数据来自 LIST 结果与 HEAD 响应，
+ * 本服务自身的写入、删除、移动操作会同步更新缓存。
+ * 存储桶关联了 {@link S3DirectoryIndex} 时优先从目录树应答，变更同时写入目录树。
+ */
+final class S3MetadataCache {
+
+    private final int maxSize;
+
+    private final long ttlMillis;
+
+    private final Map<String, Entry> entries;
+
+    private final Map<String, S3DirectoryIndex> indexes = new ConcurrentHashMap<>();
+
+    S3MetadataCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > S3MetadataCache.this.maxSize;
+            }
+        };
+    }
+
+    Optional<S3Metadata> get(String bucket, String key) {
+        S3DirectoryIndex index = indexes.get(bucket);
+        if (index != null) {
+            Optional<S3Metadata> indexed = index.get(key);
+            if (indexed.isPresent()) {
+                return indexed;
+            }
+        }
+
+        if (maxSize <= 0) {
+            return Optional.empty();
+        }
+
+        String cacheKey = cacheKey(bucket, key);
+        synchronized (entries) {
+            Entry entry = entries.get(cacheKey);
+            if (entry == null) {
+                return Optional.empty();
+            }
+
+            if (entry.expireAt() < System.currentTimeMillis()) {
+                entries.remove(cacheKey);
+                return Optional.empty();
+            }
+
+            return Optional.of(entry.metadata());
+        }
+    }
+
+    void put(String bucket, String key, S3Metadata metadata) {
+        S3DirectoryIndex index = indexes.get(bucket);
+        if (index != null) {
+            index.put(key, metadata);
+        }
+
+        if (maxSize <= 0) {
+            return;
+        }
+
+        synchronized (entries) {
+            entries.put(cacheKey(bucket, key), new Entry(metadata, System.currentTimeMillis() + ttlMillis));
+        }
+    }
+
+    /**
+     * 对象已写入：清除对象自身的缓存，其所有上级目录均视为存在。
+     */
+    void written(String bucket, String key) {
+        S3DirectoryIndex index = indexes.get(bucket);
+        if (index != null) {
+            index.written(key);
+        }
+
+        invalidate(bucket, key);
+        forEachParent(key, parent -> put(bucket, parent, S3Metadata.DIRECTORY));
+    }
+
+    /**
+     * 对象已删除：对象不再存在，上级目录可能随之消失，一并清除。
+     */
+    void deleted(String bucket, String key) {
+        S3DirectoryIndex index = indexes.get(bucket);
+        if (index != null) {
+            index.deleted(key);
+        }
+
+        put(bucket, key, S3Metadata.ABSENT);
+        forEachParent(key, parent -> invalidate(bucket, parent));
+    }
+
+    void invalidate(String bucket, String key) {
+        synchronized (entries) {
+            entries.remove(cacheKey(bucket, key));
+        }
+    }
+
+    /**
+     * 从目录树列出目录内容，未关联目录树或目录树尚未建立时返回空。
+     */
+    Optional<List<Child>> list(String bucket, String key) {
+        S3DirectoryIndex index = indexes.get(bucket);
+        return index != null ? index.list(key) : Optional.empty();
+    }
+
+    S3DirectoryIndex index(String bucket, Function<String, S3DirectoryIndex> factory) {
+        return indexes.computeIfAbsent(bucket, factory);
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static void forEachParent(String key, Consumer<String> action) {
+        int end = key.endsWith("/") ? key.length() - 1 : key.length();
+        int pos;
+        while ((pos = key.lastIndexOf('/', end - 1)) > 0) {
+            action.accept(key.substring(0, pos + 1));
+            end = pos;
+        }
+    }
+
+    private static String cacheKey(String bucket, String key) {
+        return bucket + '/' + key;
+    }
+
+    private record Entry(S3Metadata metadata, long expireAt) {
+    }
+
+    /**
+     * 缓存的对象状态。目录只记录是否存在。
+     */
+    record S3Metadata(boolean exists, boolean directory, long size, Instant lastModified) {
+
+        static final S3Metadata ABSENT = new S3Metadata(false, false, 0L, Instant.EPOCH);
+
+        static final S3Metadata DIRECTORY = new S3Metadata(true, true, 0L, Instant.EPOCH);
+
+        static S3Metadata file(long size, Instant lastModified) {
+            return new S3Metadata(true, false, size, lastModified);
+        }
+    }
+}
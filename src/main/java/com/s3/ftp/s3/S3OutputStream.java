@@ -1,36 +1,117 @@
 package com.s3.ftp.s3;
 
 import com.s3.ftp.config.GlobalConfiguration;
-import software.amazon.awssdk.core.sync.RequestBody;
+import com.s3.ftp.config.Settings;
+import com.s3.ftp.util.BufferPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.ChecksumAlgorithm;
 import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CopyPartResult;
 import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyResponse;
 import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 final class S3OutputStream extends OutputStream {
 
+    private static final Logger logger = LoggerFactory.getLogger(S3OutputStream.class);
+
     private static final int MULTIPART_SIZE_MIN = 1024 * 1024 * 5;
 
+    private static final long COPY_PART_SIZE_MAX = 1024L * 1024 * 1024 * 5;
+
+    private static final long PART_RETRY_BACKOFF_BASE = 500;
+
+    private static final long PART_RETRY_BACKOFF_MAX = 1000 * 30;
+
     private final S3Client client;
 
+    /**
+     * 创建时的配置快照，上传过程中重新加载配置不影响分片大小与并发
+     */
+    private final Settings settings;
+
     private final String bucket;
 
     private final String key;
 
     private final String contentType;
 
-    private final ByteBuffer writeBuffer;
+    private final Runnable onComplete;
+
+    private final S3UploadSpool spool;
+
+    private final BufferPool bufferPool;
+
+    private final S3PartSizer partSizer;
+
+    /**
+     * 随分片上传的 S3 校验和算法，未开启时为 null
+     */
+    private final S3FileHash partChecksum;
+
+    /**
+     * 整个文件的摘要，未开启或追加写时为 null
+     */
+    private final S3FileHasher fileHasher;
+
+    /**
+     * 已封存待上传的分片占用的写缓存数量，暂存模式下不限制
+     */
+    private final Semaphore bufferedParts;
+
+    private final Semaphore uploadSlots;
+
+    private final Queue<Runnable> queuedParts = new ConcurrentLinkedQueue<>();
+
+    private final List<CompletableFuture<Void>> pendingParts = new ArrayList<>();
+
+    private final Map<Integer, S3UploadJournal.Part> completedParts = new ConcurrentSkipListMap<>();
+
+    /**
+     * 分片上传日志，未开启时为 null
+     */
+    private final S3UploadJournal.Entry journal;
+
+    /**
+     * 开始上传时日志中已有的 uploadId，上传成功后对象已被覆盖，日志未被其他上传修改时一并删除
+     */
+    private final String supersededUploadId;
+
+    /**
+     * 写入期间会阻塞等待 S3，使用 ReentrantLock 而非 synchronized，避免虚拟线程被固定在载体线程上
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private S3PartBuffer writeBuffer;
+
+    private S3FileHash.Digest partDigest;
 
     private long offset;
 
@@ -38,20 +119,62 @@ final class S3OutputStream extends OutputStream {
 
     private int uploadPartNumber = 0;
 
-    private Map<Integer, String> completedParts;
+    /**
+     * 已写入的字节数，用于测算写入速率
+     */
+    private long written = 0;
+
+    private volatile Throwable failure;
+
+    /**
+     * 数据连接中断，关闭时不提交对象
+     */
+    private volatile boolean aborted = false;
 
     private boolean closed = false;
 
     public S3OutputStream(S3Client client, String bucket, String key, long offset) throws IOException {
+        this(client, bucket, key, offset, () -> {
+        });
+    }
+
+    /**
+     * @param onComplete 对象成功写入 S3 后回调
+     */
+    S3OutputStream(S3Client client, String bucket, String key, long offset, Runnable onComplete) throws IOException {
+        this(client, bucket, key, offset, onComplete, null);
+    }
+
+    /**
+     * @param journal 记录分片上传进度的日志，为 null 时不支持跨会话续传
+     */
+    S3OutputStream(S3Client client, String bucket, String key, long offset, Runnable onComplete,
+                   S3UploadJournal.Entry journal) throws IOException {
+        this(client, GlobalConfiguration.settings(), bucket, key, offset, onComplete, journal);
+    }
+
+    S3OutputStream(S3Client client, Settings settings, String bucket, String key, long offset, Runnable onComplete,
+                   S3UploadJournal.Entry journal) throws IOException {
         this.client = client;
+        this.settings = settings;
+        this.journal = journal;
+        this.supersededUploadId = journal != null ? journal.uploadId() : null;
+        this.onComplete = onComplete;
         this.bucket = bucket;
         this.key = key;
         this.contentType = Files.probeContentType(Path.of(key));
-        this.writeBuffer = ByteBuffer.allocate(GlobalConfiguration.writeBufferSize);
+        this.spool = settings.uploadSpoolEnabled ? S3UploadSpool.get(settings) : null;
+        this.bufferPool = spool == null ? S3WriteBufferPool.get(settings) : null;
+        this.partSizer = new S3PartSizer(
+                settings.writeBufferSize, maxPartSize(settings, spool != null), settings.partSizeGrowthParts
+        );
+        this.bufferedParts = new Semaphore(spool == null ? maxInFlightBuffers(settings, partSizer) : Integer.MAX_VALUE);
+        this.uploadSlots = new Semaphore(settings.uploadConcurrency);
+        this.partChecksum = settings.uploadPartChecksum;
+        this.fileHasher = offset == 0 && !settings.fileHashes.isEmpty()
+                ? new S3FileHasher(settings.fileHashes)
+                : null;
         this.offset = offset;
-        if (offset > GlobalConfiguration.maxAppendOffsetSize) {
-            throw new IOException("offset over limit: %s byte".formatted(GlobalConfiguration.maxAppendOffsetSize));
-        }
     }
 
     @Override
@@ -60,93 +183,396 @@ final class S3OutputStream extends OutputStream {
     }
 
     @Override
-    public synchronized void write(byte[] bytes, int off, int len) throws IOException {
-        if (offset != 0) {
-            this.offset = 0;
+    public void write(byte[] bytes, int off, int len) throws IOException {
+        lock.lock();
+        try {
+            if (offset != 0) {
+                beginAppend();
+            }
 
-            try (InputStream is = client.getObject(req -> req.bucket(bucket).key(key))) {
-                is.transferTo(this);
-            } catch (NoSuchKeyException e) {
-                throw new IOException("file %s not found".formatted(key), e);
+            if (off < 0 || len < 0 || off + len > bytes.length) {
+                throw new IOException(new IndexOutOfBoundsException());
             }
-        }
 
-        try {
-            if (writeBuffer.remaining() >= len - off) {
-                writeBuffer.put(bytes, off, len);
-            } else {
-                int remaining = writeBuffer.remaining();
-                writeBuffer.put(bytes, off, remaining);
-                appendMultipartObject();
-                writeBuffer.rewind();
-                writeBuffer.put(bytes, off + remaining, len - remaining);
+            while (len > 0) {
+                if (writeBuffer == null) {
+                    this.writeBuffer = newPartBuffer();
+                    this.partDigest = partChecksum != null ? partChecksum.newDigest() : null;
+                } else if (writeBuffer.isFull()) {
+                    appendMultipartObject();
+                    continue;
+                }
+
+                int size = writeBuffer.write(bytes, off, len);
+                if (partDigest != null) {
+                    partDigest.update(bytes, off, size);
+                }
+                if (fileHasher != null) {
+                    fileHasher.update(bytes, off, size);
+                }
+                off += size;
+                len -= size;
+                written += size;
             }
-        } catch (IndexOutOfBoundsException e) {
-            throw new IOException(e);
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
-    public void close() {
-        synchronized (this) {
+    public void close() throws IOException {
+        lock.lock();
+        try {
             if (closed) {
                 return;
             }
 
             this.closed = true;
+
+            if (offset != 0 && !aborted) {
+                beginAppend();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (aborted) {
+            closeAborted();
+            return;
         }
 
         if (uploadId == null) {
-            putObjectSingle();
+            try {
+                putObjectSingle();
+            } finally {
+                releaseWriteBuffer();
+            }
+            removeJournal();
+            onComplete.run();
             return;
         }
 
-        appendMultipartObject();
-        completeMultipartUpload();
+        try {
+            if (writeBuffer != null && writeBuffer.size() > 0) {
+                appendMultipartObject();
+            }
+            releaseWriteBuffer();
+            awaitParts();
+            completeMultipartUpload();
+        } catch (IOException | RuntimeException e) {
+            releaseWriteBuffer();
+            if (journal != null) {
+                keepMultipartUpload();
+            } else {
+                abortMultipartUpload();
+            }
+            throw e;
+        }
+        removeJournal();
+        onComplete.run();
+    }
+
+    /**
+     * 标记传输因数据连接中断而未完成，需在 {@link #close()} 之前调用。
+     */
+    void abort() {
+        this.aborted = true;
     }
 
     @Override
-    public synchronized void flush() {
-        if (writeBuffer.position() > MULTIPART_SIZE_MIN) {
-            appendMultipartObject();
-            writeBuffer.rewind();
+    public void flush() throws IOException {
+        lock.lock();
+        try {
+            if (writeBuffer != null && writeBuffer.size() > MULTIPART_SIZE_MIN) {
+                appendMultipartObject();
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
-    private void putObjectSingle() {
-        if (writeBuffer.position() == 0) {
+    /**
+     * 追加写时保留已有对象 offset 之前的数据。日志中有未完成的分片上传且 offset 位于分片边界时继续该上传；
+     * 否则偏移量较小时取回数据重新写入，较大时通过 UploadPartCopy 在服务端复制为分片上传的前几个分片，只上传新数据。
+     */
+    private void beginAppend() throws IOException {
+        long appendOffset = offset;
+        this.offset = 0;
+
+        if (resumeMultipartUpload(appendOffset)) {
             return;
         }
 
-        writeBuffer.flip();
+        if (appendOffset < Math.max(MULTIPART_SIZE_MIN, settings.maxAppendOffsetSize)) {
+            String range = "bytes=0-%d".formatted(appendOffset - 1);
+            try (InputStream is = client.getObject(req -> req.bucket(bucket).key(key).range(range))) {
+                if (is.transferTo(this) != appendOffset) {
+                    throw new IOException("file %s is shorter than offset %d".formatted(key, appendOffset));
+                }
+            } catch (NoSuchKeyException e) {
+                throw new IOException("file %s not found".formatted(key), e);
+            }
+            return;
+        }
+
+        createMultipartUpload();
+
+        long parts = (appendOffset + COPY_PART_SIZE_MAX - 1) / COPY_PART_SIZE_MAX;
+        long partSize = (appendOffset + parts - 1) / parts;
+        for (long start = 0; start < appendOffset; start += partSize) {
+            long first = start;
+            long last = Math.min(start + partSize, appendOffset) - 1;
+            int partNumber = ++this.uploadPartNumber;
+            submitPart(() -> copyPart(partNumber, first, last));
+        }
+    }
+
+    /**
+     * 续传日志中记录的分片上传，保留 offset 之前的分片，之后的分片由新写入的数据覆盖。
+     */
+    private boolean resumeMultipartUpload(long appendOffset) {
+        if (journal == null) {
+            return false;
+        }
+
+        Optional<S3UploadJournal.Upload> upload = journal.read();
+        Optional<Integer> resumed = upload.flatMap(v -> v.resumePartNumber(appendOffset));
+        if (resumed.isEmpty()) {
+            return false;
+        }
+
+        int partNumber = resumed.get();
+        this.uploadId = upload.get().uploadId();
+        this.uploadPartNumber = partNumber;
+        completedParts.putAll(upload.get().parts().headMap(partNumber + 1));
+        journal.begin(uploadId, completedParts);
+        logger.info("Resume multipart upload {} of {} after part {}", uploadId, key, partNumber);
+        return true;
+    }
+
+    private void putObjectSingle() throws IOException {
+        if (writeBuffer == null || writeBuffer.size() == 0) {
+            return;
+        }
+
+        writeBuffer.seal();
+        String checksum = partChecksum();
         client.putObject(
-                req -> req.bucket(bucket).key(key).contentType(contentType),
-                RequestBody.fromByteBuffer(writeBuffer)
+                req -> {
+                    req.bucket(bucket).key(key).contentType(contentType);
+                    withChecksum(checksum, req::checksumCRC32C, req::checksumSHA256);
+                    if (fileHasher != null) {
+                        req.tagging(fileHasher.tagging());
+                    }
+                },
+                writeBuffer.requestBody()
         );
     }
 
-    private void appendMultipartObject() {
+    /**
+     * 开启暂存模式时分片写入本地暂存目录，否则使用缓冲池中的写缓存，分片大小由 {@link S3PartSizer} 决定。
+     */
+    private S3PartBuffer newPartBuffer() throws IOException {
+        long partSize = partSizer.partSize(uploadPartNumber + 1, written);
+        return spool != null
+                ? new S3SpoolPartBuffer(spool, partSize)
+                : new S3MemoryPartBuffer(bufferPool, partSize);
+    }
+
+    private void releaseWriteBuffer() {
+        if (writeBuffer != null) {
+            writeBuffer.close();
+            this.writeBuffer = null;
+        }
+    }
+
+    /**
+     * 将当前写缓存作为一个分片交由后台线程上传，并切换到新的写缓存。在途数据超出限制时阻塞等待。
+     */
+    private void appendMultipartObject() throws IOException {
+        checkFailure();
+
+        if (uploadPartNumber >= S3PartSizer.MAX_PARTS) {
+            throw new IOException("upload of %s exceeds %d parts, raise %s".formatted(
+                    key, S3PartSizer.MAX_PARTS, partSizeLimit(settings, spool != null)
+            ));
+        }
+
         if (uploadId == null) {
-            CreateMultipartUploadResponse cResp = client.createMultipartUpload(
-                    req -> req.bucket(bucket).key(key).contentType(contentType)
-            );
+            createMultipartUpload();
+        }
 
-            this.uploadId = cResp.uploadId();
-            this.completedParts = new HashMap<>();
+        S3PartBuffer part = writeBuffer;
+        int buffers = part instanceof S3MemoryPartBuffer memoryPart ? memoryPart.buffers() : 1;
+        try {
+            bufferedParts.acquire(buffers);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("upload of %s interrupted".formatted(key), e);
         }
 
-        writeBuffer.flip();
-        this.uploadPartNumber += 1;
-        UploadPartResponse pResp = client.uploadPart(
-                req -> req.bucket(bucket).key(key).uploadId(uploadId).partNumber(uploadPartNumber),
-                RequestBody.fromByteBuffer(writeBuffer)
-        );
-        completedParts.put(uploadPartNumber, pResp.eTag());
+        this.writeBuffer = null;
+        String checksum = partChecksum();
+        try {
+            part.seal();
+        } catch (IOException e) {
+            part.close();
+            bufferedParts.release(buffers);
+            throw e;
+        }
+
+        int partNumber = ++this.uploadPartNumber;
+        submitPart(() -> uploadPart(partNumber, part, buffers, checksum));
+    }
+
+    /**
+     * 分片任务排队执行，同时执行的任务不超过 upload-concurrency 个。
+     */
+    private void submitPart(Runnable task) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        pendingParts.removeIf(CompletableFuture::isDone);
+        pendingParts.add(future);
+
+        queuedParts.add(() -> {
+            try {
+                task.run();
+                future.complete(null);
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        dispatchParts();
+    }
+
+    private void dispatchParts() {
+        while (!queuedParts.isEmpty() && uploadSlots.tryAcquire()) {
+            Runnable task = queuedParts.poll();
+            if (task == null) {
+                uploadSlots.release();
+                return;
+            }
+
+            S3TransferExecutor.get().execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    uploadSlots.release();
+                    dispatchParts();
+                }
+            });
+        }
+    }
+
+    private void createMultipartUpload() {
+        CreateMultipartUploadResponse cResp = client.createMultipartUpload(req -> {
+            req.bucket(bucket).key(key).contentType(contentType);
+            if (partChecksum != null) {
+                req.checksumAlgorithm(partChecksum == S3FileHash.SHA_256
+                        ? ChecksumAlgorithm.SHA256
+                        : ChecksumAlgorithm.CRC32_C);
+            }
+        });
+
+        this.uploadId = cResp.uploadId();
+        if (journal != null) {
+            journal.begin(uploadId, Map.of());
+        }
+    }
+
+    private void copyPart(int partNumber, long first, long last) {
+        String range = "bytes=%d-%d".formatted(first, last);
+        try {
+            UploadPartCopyResponse pResp = retryPart(partNumber, () -> client.uploadPartCopy(req -> req
+                    .sourceBucket(bucket)
+                    .sourceKey(key)
+                    .copySourceRange(range)
+                    .destinationBucket(bucket)
+                    .destinationKey(key)
+                    .uploadId(uploadId)
+                    .partNumber(partNumber)
+            ));
+            CopyPartResult result = pResp.copyPartResult();
+            String checksum = partChecksum == S3FileHash.SHA_256 ? result.checksumSHA256() : result.checksumCRC32C();
+            completePart(partNumber, new S3UploadJournal.Part(
+                    last - first + 1, result.eTag(), partChecksum != null ? checksum : null
+            ));
+        } catch (RuntimeException e) {
+            this.failure = e;
+            throw e;
+        }
+    }
+
+    private void uploadPart(int partNumber, S3PartBuffer part, int buffers, String checksum) {
+        try {
+            UploadPartResponse pResp = retryPart(partNumber, () -> client.uploadPart(
+                    req -> {
+                        req.bucket(bucket).key(key).uploadId(uploadId).partNumber(partNumber);
+                        withChecksum(checksum, req::checksumCRC32C, req::checksumSHA256);
+                    },
+                    part.requestBody()
+            ));
+            completePart(partNumber, new S3UploadJournal.Part(part.size(), pResp.eTag(), checksum));
+        } catch (RuntimeException e) {
+            this.failure = e;
+            throw e;
+        } finally {
+            part.close();
+            bufferedParts.release(buffers);
+        }
+    }
+
+    /**
+     * 执行分片请求（UploadPart 或 UploadPartCopy），可重试的失败按 upload-part-retries 退避后重新请求。
+     * 上传分片时每次请求重新从暂存区读取分片数据。
+     */
+    private <T> T retryPart(int partNumber, Supplier<T> request) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return request.get();
+            } catch (SdkException e) {
+                if (attempt >= settings.uploadPartRetries || !isRetryable(e)) {
+                    throw e;
+                }
+
+                logger.warn("Upload part {} of {} failed, retry {}/{}",
+                        partNumber, key, attempt + 1, settings.uploadPartRetries, e);
+                backoff(attempt, e);
+            }
+        }
+    }
+
+    private void completePart(int partNumber, S3UploadJournal.Part part) {
+        completedParts.put(partNumber, part);
+        if (journal != null) {
+            journal.append(uploadId, partNumber, part);
+        }
+    }
+
+    private void awaitParts() throws IOException {
+        try {
+            CompletableFuture.allOf(pendingParts.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            throw new IOException("upload part of %s failed".formatted(key), e.getCause());
+        }
+
+        checkFailure();
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("upload part of %s failed".formatted(key), failure);
+        }
     }
 
     private void completeMultipartUpload() {
         List<CompletedPart> parts = completedParts.entrySet().stream()
-                .map(ele -> CompletedPart.builder().partNumber(ele.getKey()).eTag(ele.getValue()).build())
+                .map(ele -> {
+                    CompletedPart.Builder part = CompletedPart.builder()
+                            .partNumber(ele.getKey())
+                            .eTag(ele.getValue().eTag());
+                    withChecksum(ele.getValue().checksum(), part::checksumCRC32C, part::checksumSHA256);
+                    return part.build();
+                })
                 .toList();
 
         client.completeMultipartUpload(req -> req.bucket(bucket)
@@ -154,5 +580,148 @@ final class S3OutputStream extends OutputStream {
                 .uploadId(uploadId)
                 .multipartUpload(mu -> mu.parts(parts))
         );
+
+        if (fileHasher != null) {
+            putFileHashes();
+        }
+    }
+
+    /**
+     * 分片上传开始时还不知道整个文件的摘要，完成后再写入对象标签。写入失败不影响已完成的上传。
+     */
+    private void putFileHashes() {
+        try {
+            client.putObjectTagging(req -> req.bucket(bucket).key(key).tagging(fileHasher.tagging()));
+        } catch (RuntimeException e) {
+            logger.warn("Put file hashes of {} failed", key, e);
+        }
+    }
+
+    /**
+     * 结束当前分片的校验和计算
+     *
+     * @return Base64 编码的校验和，未开启时为 null
+     */
+    private String partChecksum() {
+        if (partDigest == null) {
+            return null;
+        }
+
+        String checksum = Base64.getEncoder().encodeToString(partDigest.digest());
+        this.partDigest = null;
+        return checksum;
+    }
+
+    private void withChecksum(String checksum, Consumer<String> crc32c, Consumer<String> sha256) {
+        if (checksum != null) {
+            (partChecksum == S3FileHash.SHA_256 ? sha256 : crc32c).accept(checksum);
+        }
+    }
+
+    private void abortMultipartUpload() {
+        try {
+            awaitParts();
+        } catch (IOException e) {
+            logger.debug("Part upload of {} failed before abort", key, e);
+        }
+
+        try {
+            client.abortMultipartUpload(req -> req.bucket(bucket).key(key).uploadId(uploadId));
+        } catch (RuntimeException e) {
+            logger.warn("Abort multipart upload {} of {} failed", uploadId, key, e);
+        }
+    }
+
+    /**
+     * 开启分片上传日志时失败的上传不中止，已完成的分片保留在日志中，客户端可从分片边界续传。
+     */
+    private void keepMultipartUpload() {
+        try {
+            awaitParts();
+        } catch (IOException e) {
+            logger.debug("Part upload of {} failed", key, e);
+        }
+
+        logger.info("Keep multipart upload {} of {} with {} parts for resume", uploadId, key, completedParts.size());
+    }
+
+    /**
+     * 传输未完成时丢弃未写满的分片。开启分片上传日志时保留已完成的分片，客户端可通过 SIZE 取得续传偏移量后 REST + STOR 续传；
+     * 否则中止分片上传，不会把部分数据作为完整的文件写入。
+     */
+    private void closeAborted() {
+        releaseWriteBuffer();
+        if (uploadId == null) {
+            logger.info("Upload of {} aborted before any part was uploaded", key);
+            return;
+        }
+
+        if (journal != null) {
+            keepMultipartUpload();
+        } else {
+            abortMultipartUpload();
+        }
+    }
+
+    private void removeJournal() {
+        if (journal != null) {
+            journal.remove(uploadId != null ? uploadId : supersededUploadId);
+        }
+    }
+
+    /**
+     * SDK 自身的重试用尽后，连接异常、服务端错误及限流仍可从暂存区重新上传分片。
+     */
+    private static boolean isRetryable(SdkException e) {
+        if (e instanceof SdkServiceException se) {
+            return se.statusCode() >= 500 || se.isThrottlingException();
+        }
+        return e instanceof SdkClientException;
+    }
+
+    private static void backoff(int attempt, SdkException cause) {
+        long delay = Math.min(PART_RETRY_BACKOFF_MAX, PART_RETRY_BACKOFF_BASE << attempt);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(delay / 2, delay + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+
+    /**
+     * 分片大小上限。不超过共享写缓存池（暂存模式下为暂存空间）的 1/(upload-concurrency + 1)，
+     * 避免单个分片独占所有上传共用的空间。
+     */
+    static long maxPartSize(Settings settings, boolean spooled) {
+        return Math.min(settings.maxPartSize, partSizeBudget(settings, spooled));
+    }
+
+    private static long partSizeBudget(Settings settings, boolean spooled) {
+        long shared = spooled
+                ? settings.uploadSpoolMaxSize
+                : (long) settings.writeBufferSize * settings.writeBufferPoolSize;
+        return shared / (settings.uploadConcurrency + 1);
+    }
+
+    /**
+     * 限制分片大小的配置项，分片数超出上限时提示
+     */
+    private static String partSizeLimit(Settings settings, boolean spooled) {
+        if (settings.maxPartSize <= partSizeBudget(settings, spooled)) {
+            return "max-part-size";
+        }
+        return spooled
+                ? "upload-spool-max-size or lower upload-concurrency"
+                : "write-buffer-pool-size or lower upload-concurrency";
+    }
+
+    /**
+     * 在途分片可占用的写缓存数量，至少容纳一个最大的分片。
+     */
+    private static int maxInFlightBuffers(Settings settings, S3PartSizer partSizer) {
+        long partBuffers = partSizer.maxPartSize() / settings.writeBufferSize;
+        long buffers = settings.maxUploadInFlightSize / settings.writeBufferSize;
+        return (int) Math.max(partBuffers, Math.min(settings.uploadConcurrency * partBuffers, buffers));
     }
 }
@@ -0,0 +1,256 @@
+package com.s3.ftp.s3;
+
+import com.s3.ftp.config.GlobalConfiguration;
+import com.s3.ftp.config.Settings;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按 / 分隔的公共前缀切分键空间并发遍历 prefix 下的全部对象。每个前缀以带分隔符的 LIST 逐页遍历，
+ * 发现的子前缀放入共享的待遍历队列，由 concurrency 个工作线程领取。结果不保证顺序，
+ * 结果队列写满时工作线程暂停，读取方跟不上时不会无限堆积。
+ */
+final class S3ParallelLister implements Iterator<S3Object>, AutoCloseable {
+
+    private static final String DELIMITER = "/";
+
+    private static final List<S3Object> END = Collections.emptyList();
+
+    private static final long OFFER_INTERVAL_MILLIS = 100;
+
+    private final S3Client client;
+
+    private final String bucket;
+
+    private final int maxKeys;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition changed = lock.newCondition();
+
+    /**
+     * 待遍历的前缀，后进先出以优先深入已发现的子树，控制队列长度
+     */
+    private final Deque<String> prefixes = new ArrayDeque<>();
+
+    private final BlockingQueue<List<S3Object>> pages;
+
+    private final AtomicInteger workers;
+
+    private int active = 0;
+
+    private volatile boolean closed = false;
+
+    private volatile RuntimeException failure;
+
+    private Iterator<S3Object> current = Collections.emptyIterator();
+
+    private boolean finished = false;
+
+    S3ParallelLister(S3Client client, String bucket, String prefix) {
+        this(client, bucket, prefix, GlobalConfiguration.settings());
+    }
+
+    S3ParallelLister(S3Client client, String bucket, String prefix, Settings settings) {
+        this(client, bucket, prefix, settings.listingConcurrency, settings.maxListKeysLimit);
+    }
+
+    S3ParallelLister(S3Client client, String bucket, String prefix, int concurrency) {
+        this(client, bucket, prefix, concurrency, GlobalConfiguration.settings().maxListKeysLimit);
+    }
+
+    S3ParallelLister(S3Client client, String bucket, String prefix, int concurrency, int maxKeys) {
+        this.client = client;
+        this.bucket = bucket;
+        this.maxKeys = maxKeys;
+        this.pages = new ArrayBlockingQueue<>(concurrency * 2);
+        this.workers = new AtomicInteger(concurrency);
+        this.prefixes.push(prefix);
+
+        for (int i = 0; i < concurrency; i++) {
+            S3TransferExecutor.get().execute(this::work);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (finished) {
+                return false;
+            }
+
+            List<S3Object> page;
+            try {
+                page = pages.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new IllegalStateException("listing %s interrupted".formatted(bucket), e);
+            }
+
+            if (page == END) {
+                this.finished = true;
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+            this.current = page.iterator();
+        }
+
+        return true;
+    }
+
+    @Override
+    public S3Object next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        return current.next();
+    }
+
+    /**
+     * 停止遍历，工作线程在完成当前请求后退出。
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        lock.lock();
+        try {
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        pages.clear();
+    }
+
+    private void work() {
+        try {
+            String prefix;
+            while ((prefix = take()) != null) {
+                try {
+                    listPrefix(prefix);
+                } catch (RuntimeException e) {
+                    fail(e);
+                } finally {
+                    lock.lock();
+                    try {
+                        active--;
+                        changed.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(new IllegalStateException("listing %s interrupted".formatted(bucket), e));
+        } finally {
+            if (workers.decrementAndGet() == 0) {
+                offer(END);
+            }
+        }
+    }
+
+    /**
+     * 领取下一个前缀，队列为空且仍有前缀在遍历时等待其发现新的子前缀，全部完成后返回 null。
+     */
+    private String take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (!closed && prefixes.isEmpty() && active > 0) {
+                changed.await();
+            }
+
+            if (closed || prefixes.isEmpty()) {
+                return null;
+            }
+
+            active++;
+            return prefixes.pop();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void listPrefix(String prefix) {
+        ListObjectsV2Request.Builder builder = ListObjectsV2Request.builder()
+                .bucket(bucket)
+                .delimiter(DELIMITER)
+                .maxKeys(maxKeys);
+        if (!prefix.isEmpty()) {
+            builder.prefix(prefix);
+        }
+
+        ListObjectsV2Request request = builder.build();
+        String token = null;
+        do {
+            if (closed) {
+                return;
+            }
+
+            ListObjectsV2Response resp = client.listObjectsV2(
+                    token == null ? request : request.toBuilder().continuationToken(token).build()
+            );
+
+            if (resp.hasCommonPrefixes() && !resp.commonPrefixes().isEmpty()) {
+                lock.lock();
+                try {
+                    for (CommonPrefix commonPrefix : resp.commonPrefixes()) {
+                        prefixes.push(commonPrefix.prefix());
+                    }
+                    changed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            if (!resp.contents().isEmpty()) {
+                offer(resp.contents());
+            }
+
+            token = Boolean.TRUE.equals(resp.isTruncated()) ? resp.nextContinuationToken() : null;
+        } while (token != null);
+    }
+
+    private void fail(RuntimeException e) {
+        if (failure == null) {
+            this.failure = e;
+        }
+        close();
+    }
+
+    /**
+     * 放入结果页，队列已满时等待读取方，关闭后丢弃。结束标记总能放入，关闭时队列已被清空。
+     */
+    private void offer(List<S3Object> page) {
+        try {
+            while (!pages.offer(page, OFFER_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (closed) {
+                    if (page != END) {
+                        return;
+                    }
+                    pages.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.s3.ftp.s3;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 上传流的分片暂存区，写满或上传流关闭时作为一个分片上传。
+ * 封存后的内容可重复读取，分片上传失败时无需客户端重新发送即可重试。
+ */
+interface S3PartBuffer extends Closeable {
+
+    String CONTENT_TYPE = "application/octet-stream";
+
+    /**
+     * 写入数据，超出剩余容量的部分不写入。
+     *
+     * @return 实际写入的字节数
+     */
+    int write(byte[] bytes, int off, int len) throws IOException;
+
+    boolean isFull();
+
+    long size();
+
+    /**
+     * 停止写入，之后可通过 {@link #requestBody()} 读取内容。
+     */
+    void seal() throws IOException;
+
+    RequestBody requestBody();
+
+    /**
+     * 释放暂存区占用的内存或磁盘空间
+     */
+    @Override
+    void close();
+}
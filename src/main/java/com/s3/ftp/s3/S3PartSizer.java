@@ -0,0 +1,57 @@
+package com.s3.ftp.s3;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分片上传的分片大小策略，分片大小为写缓存大小的整数倍。
+ * 分片大小随上传进度每 growthParts 个分片翻倍，保证 10000 个分片内可容纳足够大的对象；
+ * 写入持续一秒后还按已测得的写入速率取约一秒的数据量，高速上传时尽早使用大分片以减少请求数量。
+ */
+final class S3PartSizer {
+
+    static final int MAX_PARTS = 10000;
+
+    private static final long TARGET_PART_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * 翻倍次数上限，避免移位溢出，此时分片大小早已达到上限
+     */
+    private static final int MAX_DOUBLINGS = 30;
+
+    private final long unit;
+
+    private final long maxPartSize;
+
+    private final int growthParts;
+
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * @param unit        最小分片大小，即写缓存大小
+     * @param maxPartSize 分片大小上限，向下取整为 unit 的整数倍
+     * @param growthParts 分片大小翻倍的间隔分片数
+     */
+    S3PartSizer(long unit, long maxPartSize, int growthParts) {
+        this.unit = unit;
+        this.maxPartSize = Math.max(unit, maxPartSize / unit * unit);
+        this.growthParts = growthParts;
+    }
+
+    /**
+     * @param partNumber 即将写入的分片序号，从 1 开始
+     * @param written    上传流已写入的字节数
+     */
+    long partSize(int partNumber, long written) {
+        long scheduled = unit << Math.min(MAX_DOUBLINGS, (partNumber - 1) / growthParts);
+
+        long elapsed = System.nanoTime() - startNanos;
+        long measured = elapsed >= TARGET_PART_NANOS ? (long) ((double) written * TARGET_PART_NANOS / elapsed) : 0;
+
+        long size = Math.min(maxPartSize, Math.max(scheduled, measured));
+        return Math.max(unit, size / unit * unit);
+    }
+
+    long maxPartSize() {
+        return maxPartSize;
+    }
+}
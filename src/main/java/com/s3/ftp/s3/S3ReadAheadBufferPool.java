@@ -0,0 +1,43 @@
+package com.s3.ftp.s3;
+
+import com.s3.ftp.config.Settings;
+import com.s3.ftp.util.BufferPool;
+
+/**
+ * 并发分块下载共用的缓冲池，按当前配置创建，配置变化后重建，并以 com.s3.ftp:type=BufferPool,name=read-ahead 注册到 JMX。
+ */
+final class S3ReadAheadBufferPool {
+
+    private static final String OBJECT_NAME = "com.s3.ftp:type=BufferPool,name=read-ahead";
+
+    private static volatile BufferPool pool;
+
+    private S3ReadAheadBufferPool() {
+        //private
+    }
+
+    static BufferPool get(Settings settings) {
+        BufferPool current = pool;
+        if (current != null && matchesConfiguration(current, settings)) {
+            return current;
+        }
+
+        synchronized (S3ReadAheadBufferPool.class) {
+            if (pool == null || !matchesConfiguration(pool, settings)) {
+                pool = new BufferPool(
+                        settings.readAheadChunkSize,
+                        settings.readAheadBufferPoolSize,
+                        false,
+                        settings.writeBufferAcquireTimeout * 1000L
+                );
+                S3WriteBufferPool.register(pool, OBJECT_NAME);
+            }
+            return pool;
+        }
+    }
+
+    private static boolean matchesConfiguration(BufferPool pool, Settings settings) {
+        return pool.getBufferSize() == settings.readAheadChunkSize
+                && pool.getCapacity() == settings.readAheadBufferPoolSize;
+    }
+}
@@ -0,0 +1,266 @@
+package com.s3.ftp.s3;
+
+import com.s3.ftp.util.BufferPool;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 将对象按缓冲区大小切分为多个 Range 请求并发下载，按顺序拼接后输出。
+ * 对象大小与 ETag 取自第一个分块的响应，之后的分块以 If-Match 请求同一版本，对象在下载过程中被覆盖时下载失败，
+ * 不会截断或拼接出两个版本的数据。缓冲区从共用的缓冲池（需为堆内存）借用，缓冲池不足时减少同时请求的分块。
+ */
+final class S3ReadAheadInputStream extends InputStream {
+
+    private static final int PRECONDITION_FAILED = 412;
+
+    private final S3Client client;
+
+    private final String bucket;
+
+    private final String key;
+
+    private final BufferPool bufferPool;
+
+    private final int chunkSize;
+
+    private final int parallelism;
+
+    private final Deque<Pending> pendingChunks = new ArrayDeque<>();
+
+    /**
+     * 第一个分块响应中的 ETag
+     */
+    private String eTag;
+
+    /**
+     * 对象大小，取自第一个分块响应的 Content-Range，请求第一个分块前为 -1
+     */
+    private long end = -1;
+
+    private long fetchOffset;
+
+    private Chunk current;
+
+    private int position;
+
+    private volatile boolean closed = false;
+
+    /**
+     * @param offset      起始读取位置
+     * @param bufferPool  分块缓冲区，分块大小即为缓冲区大小
+     * @param parallelism 同时请求的分块数量上限
+     */
+    S3ReadAheadInputStream(S3Client client, String bucket, String key, long offset,
+                           BufferPool bufferPool, int parallelism) {
+        this.client = client;
+        this.bucket = bucket;
+        this.key = key;
+        this.fetchOffset = offset;
+        this.bufferPool = bufferPool;
+        this.chunkSize = bufferPool.getBufferSize();
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureChunk()) {
+            return -1;
+        }
+
+        return current.buffer().array()[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        if (!ensureChunk()) {
+            return -1;
+        }
+
+        int size = Math.min(len, current.length() - position);
+        System.arraycopy(current.buffer().array(), position, bytes, off, size);
+        position += size;
+        return size;
+    }
+
+    @Override
+    public int available() {
+        return current == null ? 0 : current.length() - position;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+
+        this.closed = true;
+        // 请求中的分块仍在写入缓冲区，完成后才能归还
+        pendingChunks.forEach(pending -> pending.future().whenComplete(
+                (chunk, e) -> bufferPool.release(pending.buffer())
+        ));
+        pendingChunks.clear();
+        if (current != null) {
+            bufferPool.release(current.buffer());
+            this.current = null;
+        }
+    }
+
+    private boolean ensureChunk() throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+
+        if (current != null && position < current.length()) {
+            return true;
+        }
+
+        if (current != null) {
+            bufferPool.release(current.buffer());
+            this.current = null;
+        }
+
+        scheduleChunks();
+        Pending next = pendingChunks.poll();
+        if (next == null) {
+            return false;
+        }
+
+        try {
+            this.current = next.future().join();
+            this.position = 0;
+        } catch (CompletionException e) {
+            bufferPool.release(next.buffer());
+            throw e.getCause() instanceof UncheckedIOException ue
+                    ? ue.getCause()
+                    : new IOException("read %s failed".formatted(key), e.getCause());
+        }
+
+        scheduleChunks();
+        return true;
+    }
+
+    private void scheduleChunks() throws IOException {
+        if (end < 0) {
+            fetchFirst();
+        }
+
+        while (pendingChunks.size() < parallelism && fetchOffset < end) {
+            // 没有可读的数据时必须等到缓冲区，否则只使用空闲的缓冲区
+            Optional<ByteBuffer> buffer = current == null && pendingChunks.isEmpty()
+                    ? Optional.of(bufferPool.acquire())
+                    : bufferPool.tryAcquire();
+            if (buffer.isEmpty()) {
+                return;
+            }
+
+            long start = fetchOffset;
+            int length = (int) Math.min(chunkSize, end - start);
+            ByteBuffer chunkBuffer = buffer.get();
+            pendingChunks.add(new Pending(chunkBuffer, CompletableFuture.supplyAsync(
+                    () -> fetch(start, length, chunkBuffer), S3TransferExecutor.get()
+            )));
+            fetchOffset += length;
+        }
+    }
+
+    /**
+     * 在当前线程请求第一个分块，从响应头取得对象大小与 ETag，分块数据在后台读取。
+     */
+    private void fetchFirst() throws IOException {
+        long start = fetchOffset;
+        ByteBuffer buffer = bufferPool.acquire();
+        ResponseInputStream<GetObjectResponse> is;
+        try {
+            is = client.getObject(req -> req.bucket(bucket).key(key).range(range(start, chunkSize)));
+        } catch (SdkException e) {
+            bufferPool.release(buffer);
+            throw new IOException("read %s failed".formatted(key), e);
+        }
+
+        this.eTag = is.response().eTag();
+        this.end = objectSize(is.response(), start);
+        int length = (int) Math.min(chunkSize, end - start);
+        pendingChunks.add(new Pending(buffer, CompletableFuture.supplyAsync(
+                () -> read(is, length, buffer), S3TransferExecutor.get()
+        )));
+        fetchOffset += length;
+    }
+
+    private Chunk fetch(long start, int length, ByteBuffer buffer) {
+        if (closed) {
+            throw new CancellationException();
+        }
+
+        ResponseInputStream<GetObjectResponse> is;
+        try {
+            is = client.getObject(req -> req.bucket(bucket).key(key).range(range(start, length)).ifMatch(eTag));
+        } catch (S3Exception e) {
+            if (e.statusCode() == PRECONDITION_FAILED) {
+                throw new UncheckedIOException(changed(e));
+            }
+            throw e;
+        }
+        return read(is, length, buffer);
+    }
+
+    private Chunk read(ResponseInputStream<GetObjectResponse> is, int length, ByteBuffer buffer) {
+        try (is) {
+            String responseETag = is.response().eTag();
+            if (eTag != null && responseETag != null && !eTag.equals(responseETag)) {
+                throw changed(null);
+            }
+
+            int read = is.readNBytes(buffer.array(), 0, length);
+            if (read != length) {
+                throw changed(null);
+            }
+            return new Chunk(buffer, read);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private IOException changed(Throwable cause) {
+        return new IOException("object %s changed during download".formatted(key), cause);
+    }
+
+    private static String range(long start, long length) {
+        return "bytes=%d-%d".formatted(start, start + length - 1);
+    }
+
+    /**
+     * 从 Content-Range（bytes start-end/size）中取得对象大小，没有时按本次响应的长度计算
+     */
+    private static long objectSize(GetObjectResponse response, long start) {
+        String contentRange = response.contentRange();
+        int slash = contentRange == null ? -1 : contentRange.lastIndexOf('/');
+        if (slash < 0 || contentRange.endsWith("*")) {
+            return start + response.contentLength();
+        }
+        return Long.parseLong(contentRange.substring(slash + 1).trim());
+    }
+
+    private record Pending(ByteBuffer buffer, CompletableFuture<Chunk> future) {
+    }
+
+    private record Chunk(ByteBuffer buffer, int length) {
+    }
+}
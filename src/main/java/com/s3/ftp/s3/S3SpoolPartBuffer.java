@@ -0,0 +1,123 @@
+package com.s3.ftp.s3;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.sync.RequestBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 写入本地暂存目录的分片暂存区，创建时即占用 capacity 大小的暂存空间，关闭时删除文件并归还空间。
+ */
+final class S3SpoolPartBuffer implements S3PartBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3SpoolPartBuffer.class);
+
+    private final S3UploadSpool spool;
+
+    private final Path file;
+
+    private final long capacity;
+
+    private FileChannel channel;
+
+    private InputStream stream;
+
+    private long size;
+
+    private boolean closed = false;
+
+    S3SpoolPartBuffer(S3UploadSpool spool, long capacity) throws IOException {
+        this.spool = spool;
+        this.capacity = capacity;
+        this.file = spool.reserve(capacity);
+
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            spool.release(file, capacity);
+            throw e;
+        }
+    }
+
+    @Override
+    public int write(byte[] bytes, int off, int len) throws IOException {
+        if (channel == null) {
+            throw new IllegalStateException("part buffer sealed");
+        }
+
+        int length = (int) Math.min(len, capacity - size);
+        ByteBuffer src = ByteBuffer.wrap(bytes, off, length);
+        while (src.hasRemaining()) {
+            channel.write(src);
+        }
+        size += length;
+        return length;
+    }
+
+    @Override
+    public boolean isFull() {
+        return size >= capacity;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public void seal() throws IOException {
+        if (channel != null) {
+            channel.close();
+            this.channel = null;
+        }
+    }
+
+    @Override
+    public RequestBody requestBody() {
+        return RequestBody.fromContentProvider(this::newStream, size, CONTENT_TYPE);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+
+        this.closed = true;
+        try {
+            seal();
+            closeStream();
+        } catch (IOException e) {
+            logger.debug("Close spool file {} failed", file, e);
+        }
+        spool.release(file, capacity);
+    }
+
+    /**
+     * 每次重试都会重新获取请求体，关闭上一次打开的文件流。
+     */
+    private synchronized InputStream newStream() {
+        try {
+            closeStream();
+            this.stream = Files.newInputStream(file);
+            return stream;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void closeStream() throws IOException {
+        if (stream != null) {
+            stream.close();
+            this.stream = null;
+        }
+    }
+}
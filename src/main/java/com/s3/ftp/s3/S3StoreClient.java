@@ -0,0 +1,143 @@
+package com.s3.ftp.s3;
+
+import com.s3.ftp.config.GlobalConfiguration;
+import com.s3.ftp.config.Settings;
+import com.s3.ftp.throttle.RateLimits;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个存储配置对应的共享 S3 客户端，由 {@link S3ClientRegistry} 持有，各会话通过引用计数借用。
+ */
+public final class S3StoreClient {
+
+    private final String store;
+
+    private final S3Client client;
+
+    /**
+     * 配置了 crt 传输后端时用于数据读写的异步客户端，否则为 null
+     */
+    private final S3AsyncClient asyncClient;
+
+    /**
+     * 存储级别的限速，由使用该存储的所有用户共享
+     */
+    private final RateLimits limits;
+
+    private final S3MetadataCache metadataCache;
+
+    private final AtomicInteger references = new AtomicInteger();
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private volatile boolean retired = false;
+
+    S3StoreClient(String store, S3Client client) {
+        this(store, client, null);
+    }
+
+    S3StoreClient(String store, S3Client client, S3AsyncClient asyncClient) {
+        this(store, client, asyncClient, RateLimits.NONE);
+    }
+
+    S3StoreClient(String store, S3Client client, S3AsyncClient asyncClient, RateLimits limits) {
+        this.store = store;
+        this.client = client;
+        this.asyncClient = asyncClient;
+        this.limits = limits;
+        Settings settings = GlobalConfiguration.settings();
+        this.metadataCache = new S3MetadataCache(settings.metadataCacheSize, settings.metadataCacheTtl * 1000L);
+    }
+
+    /**
+     * 包装一个独立的客户端，最后一个引用释放时即关闭。
+     */
+    static S3StoreClient standalone(S3Client client) {
+        S3StoreClient storeClient = new S3StoreClient("", client);
+        storeClient.retired = true;
+        return storeClient;
+    }
+
+    public String store() {
+        return store;
+    }
+
+    public S3Client client() {
+        return client;
+    }
+
+    public Optional<S3AsyncClient> asyncClient() {
+        return Optional.ofNullable(asyncClient);
+    }
+
+    public RateLimits limits() {
+        return limits;
+    }
+
+    S3MetadataCache metadataCache() {
+        return metadataCache;
+    }
+
+    /**
+     * 获取存储桶的目录树，首次获取时在后台开始建立。
+     */
+    S3DirectoryIndex directoryIndex(String bucket) {
+        return metadataCache.index(bucket, k -> {
+            long refreshMillis = GlobalConfiguration.settings().directoryIndexRefresh * 1000L;
+            S3DirectoryIndex index = new S3DirectoryIndex(client, k, refreshMillis);
+            index.refresh();
+            return index;
+        });
+    }
+
+    public int references() {
+        return references.get();
+    }
+
+    S3StoreClient acquire() {
+        references.incrementAndGet();
+        return this;
+    }
+
+    /**
+     * 借用未停用的客户端，已停用时不增加引用并返回 false。
+     */
+    boolean tryAcquire() {
+        references.incrementAndGet();
+        if (retired) {
+            release();
+            return false;
+        }
+        return true;
+    }
+
+    public void release() {
+        if (references.decrementAndGet() <= 0 && retired) {
+            closeClient();
+        }
+    }
+
+    /**
+     * 停止对外提供该客户端，待所有借用方释放后关闭。
+     */
+    void retire() {
+        this.retired = true;
+        if (references.get() <= 0) {
+            closeClient();
+        }
+    }
+
+    private void closeClient() {
+        if (closed.compareAndSet(false, true)) {
+            client.close();
+            if (asyncClient != null) {
+                asyncClient.close();
+            }
+        }
+    }
+}
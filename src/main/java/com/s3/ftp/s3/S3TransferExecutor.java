@@ -0,0 +1,47 @@
+package com.s3.ftp.s3;
+
+import com.s3.ftp.config.GlobalConfiguration;
+import com.s3.ftp.util.VirtualThreads;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分片上传等后台 S3 传输任务共用的线程池，并发度由各调用方自行限制。
+ * 开启虚拟线程时每个任务使用一个虚拟线程。
+ */
+final class S3TransferExecutor {
+
+    private static final String THREAD_NAME_PREFIX = "s3-transfer-";
+
+    private static final ExecutorService EXECUTOR = createExecutor();
+
+    private S3TransferExecutor() {
+        //private
+    }
+
+    static ExecutorService get() {
+        return EXECUTOR;
+    }
+
+    private static ExecutorService createExecutor() {
+        if (GlobalConfiguration.settings().virtualThreadsEnabled && VirtualThreads.isSupported()) {
+            return VirtualThreads.newExecutor(THREAD_NAME_PREFIX);
+        }
+        return Executors.newCachedThreadPool(new TransferThreadFactory());
+    }
+
+    private static final class TransferThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, THREAD_NAME_PREFIX + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
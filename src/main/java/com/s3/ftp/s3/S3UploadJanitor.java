@@ -0,0 +1,238 @@
+package com.s3.ftp.s3;
+
+import com.s3.ftp.config.GlobalConfiguration;
+import com.s3.ftp.config.Settings;
+import com.s3.ftp.config.UserStoreInfo;
+import com.s3.ftp.util.PathBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.MultipartUpload;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+import software.amazon.awssdk.services.s3.model.Part;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定期中止已放弃的分片上传。进程在上传过程中退出，或开启分片上传日志后客户端不再续传时，已上传的分片会一直占用存储空间。
+ * 按各存储中用户主目录所在的桶与路径列出进行中的分片上传，发起时间与最后一个分片的上传时间都早于
+ * abandoned-upload-expire-hours 的上传被中止并删除其上传日志，超过同样时间未更新的上传日志也一并删除。
+ */
+public final class S3UploadJanitor implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3UploadJanitor.class);
+
+    private static final String THREAD_NAME = "s3-ftp-upload-janitor";
+
+    private static final String USER_PREFIX = "ftpserver.user.";
+
+    private static final String HOME_SUFFIX = ".homedirectory";
+
+    private static final long INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final S3ClientRegistry clientRegistry;
+
+    private final Thread thread;
+
+    /**
+     * 存储 -> 桶 -> 需要清理的路径前缀，空字符串为整个桶
+     */
+    private volatile Map<String, Map<String, Set<String>>> targets;
+
+    private volatile boolean closed = false;
+
+    public S3UploadJanitor(S3ClientRegistry clientRegistry, Properties properties) {
+        this.clientRegistry = clientRegistry;
+        this.targets = resolveTargets(properties);
+        this.thread = new Thread(this::run, THREAD_NAME);
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * 按新的用户配置更新需要清理的桶与路径
+     */
+    public void reload(Properties properties) {
+        this.targets = resolveTargets(properties);
+    }
+
+    /**
+     * 清理一次所有存储
+     *
+     * @return 中止的分片上传数量
+     */
+    int sweep() {
+        Settings settings = GlobalConfiguration.settings();
+        if (settings.abandonedUploadExpireHours <= 0) {
+            return 0;
+        }
+
+        Instant expiredBefore = Instant.now().minus(settings.abandonedUploadExpireHours, ChronoUnit.HOURS);
+        S3UploadJournal journal = null;
+        if (settings.uploadJournalEnabled) {
+            try {
+                journal = S3UploadJournal.get(settings);
+            } catch (IOException e) {
+                logger.warn("Open upload journal {} failed", settings.uploadJournalDir, e);
+            }
+        }
+
+        int aborted = 0;
+        for (Map.Entry<String, Map<String, Set<String>>> entry : targets.entrySet()) {
+            aborted += sweep(entry.getKey(), entry.getValue(), expiredBefore, journal);
+        }
+
+        if (journal != null) {
+            int removed = journal.removeExpired(expiredBefore);
+            if (removed > 0) {
+                logger.info("Removed {} expired upload journals", removed);
+            }
+        }
+        return aborted;
+    }
+
+    private int sweep(String store, Map<String, Set<String>> buckets, Instant expiredBefore,
+                      S3UploadJournal journal) {
+        Optional<S3StoreClient> storeClient;
+        try {
+            storeClient = clientRegistry.acquire(store);
+        } catch (RuntimeException e) {
+            logger.warn("Create client of store {} failed", store, e);
+            return 0;
+        }
+        if (storeClient.isEmpty()) {
+            return 0;
+        }
+
+        int aborted = 0;
+        try {
+            S3Client client = storeClient.get().client();
+            for (Map.Entry<String, Set<String>> bucket : buckets.entrySet()) {
+                for (String prefix : bucket.getValue()) {
+                    try {
+                        aborted += abortAbandoned(store, client, bucket.getKey(), prefix, expiredBefore, journal);
+                    } catch (SdkException e) {
+                        logger.warn("Clean abandoned uploads of {}:{}/{} failed", store, bucket.getKey(), prefix, e);
+                    }
+                }
+            }
+        } finally {
+            storeClient.get().release();
+        }
+        return aborted;
+    }
+
+    /**
+     * 中止桶中 prefix 下发起时间与最后一个分片的上传时间都早于 expiredBefore 的分片上传
+     *
+     * @param journal 开启分片上传日志时删除被中止上传的日志，否则为 null
+     * @return 中止的分片上传数量
+     */
+    static int abortAbandoned(String store, S3Client client, String bucket, String prefix, Instant expiredBefore,
+                              S3UploadJournal journal) {
+        int aborted = 0;
+        Iterable<MultipartUpload> uploads = client.listMultipartUploadsPaginator(
+                req -> req.bucket(bucket).prefix(prefix.isEmpty() ? null : prefix)
+        ).uploads();
+        for (MultipartUpload upload : uploads) {
+            if (upload.initiated().isAfter(expiredBefore) || lastModified(client, bucket, upload).isAfter(expiredBefore)) {
+                continue;
+            }
+
+            try {
+                client.abortMultipartUpload(req -> req.bucket(bucket).key(upload.key()).uploadId(upload.uploadId()));
+                logger.info("Aborted multipart upload {} of {}:{}/{} initiated at {}",
+                        upload.uploadId(), store, bucket, upload.key(), upload.initiated());
+                aborted++;
+            } catch (NoSuchUploadException e) {
+                logger.debug("Multipart upload {} of {} already finished", upload.uploadId(), upload.key());
+            }
+
+            if (journal != null) {
+                journal.entry(store, bucket, upload.key()).remove(upload.uploadId());
+            }
+        }
+        return aborted;
+    }
+
+    /**
+     * 最后一个分片的上传时间，没有分片时为发起时间。长时间运行的上传仍在上传分片，不会被中止。
+     */
+    private static Instant lastModified(S3Client client, String bucket, MultipartUpload upload) {
+        Instant lastModified = upload.initiated();
+        for (Part part : client.listPartsPaginator(
+                req -> req.bucket(bucket).key(upload.key()).uploadId(upload.uploadId())
+        ).parts()) {
+            if (part.lastModified() != null && part.lastModified().isAfter(lastModified)) {
+                lastModified = part.lastModified();
+            }
+        }
+        return lastModified;
+    }
+
+    /**
+     * 从用户主目录（存储:桶/路径）得到需要清理的范围，同一个桶中包含整个桶时不再按路径清理
+     */
+    static Map<String, Map<String, Set<String>>> resolveTargets(Properties properties) {
+        Map<String, Map<String, Set<String>>> targets = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (!key.startsWith(USER_PREFIX) || !key.endsWith(HOME_SUFFIX)) {
+                continue;
+            }
+
+            UserStoreInfo storeInfo;
+            String rootKey;
+            try {
+                storeInfo = UserStoreInfo.fromHomeDirectory(properties.getProperty(key));
+                rootKey = PathBuilder.root(storeInfo.path()).build();
+            } catch (IllegalArgumentException e) {
+                logger.debug("Skip invalid home directory of {}", key, e);
+                continue;
+            }
+
+            targets.computeIfAbsent(storeInfo.store(), k -> new HashMap<>())
+                    .computeIfAbsent(storeInfo.bucket(), k -> new HashSet<>())
+                    .add(rootKey.isEmpty() ? "" : rootKey + '/');
+        }
+
+        targets.values().forEach(buckets -> buckets.replaceAll(
+                (bucket, prefixes) -> prefixes.contains("") ? Set.of("") : Set.copyOf(prefixes)
+        ));
+        return Map.copyOf(targets);
+    }
+
+    private void run() {
+        while (!closed) {
+            try {
+                Thread.sleep(INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            try {
+                sweep();
+            } catch (RuntimeException e) {
+                logger.warn("Clean abandoned uploads failed", e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+    }
+}
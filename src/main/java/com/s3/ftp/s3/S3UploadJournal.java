@@ -0,0 +1,288 @@
+package com.s3.ftp.s3;
+
+import com.s3.ftp.config.Settings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * 分片上传日志。进行中的分片上传按 存储/桶/key 记录 uploadId 及已完成分片的大小与 ETag，
+ * 连接中断或进程重启后，客户端以分片边界为偏移量续传（REST + STOR）时继续同一个分片上传，只上传剩余数据。
+ * 每个上传一个日志文件，首行为 uploadId，之后每完成一个分片追加一行（序号、大小、ETag 及可选的校验和），上传完成后删除。
+ * 同一对象的并发上传共用一个日志文件，追加与删除前核对首行的 uploadId，已被新的上传覆盖的日志不再修改。
+ */
+final class S3UploadJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3UploadJournal.class);
+
+    private static final String FILE_SUFFIX = ".journal";
+
+    /**
+     * 按日志文件分段加锁，核对 uploadId 与写入之间不会被同一对象的其他上传打断
+     */
+    private static final Object[] LOCKS = new Object[64];
+
+    static {
+        Arrays.setAll(LOCKS, i -> new Object());
+    }
+
+    private static volatile S3UploadJournal journal;
+
+    private final Path directory;
+
+    S3UploadJournal(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    static S3UploadJournal get(Settings settings) throws IOException {
+        Path directory = Path.of(settings.uploadJournalDir);
+        S3UploadJournal current = journal;
+        if (current != null && current.directory.equals(directory)) {
+            return current;
+        }
+
+        synchronized (S3UploadJournal.class) {
+            if (journal == null || !journal.directory.equals(directory)) {
+                journal = new S3UploadJournal(directory);
+            }
+            return journal;
+        }
+    }
+
+    Entry entry(String store, String bucket, String key) {
+        return new Entry(directory.resolve(fileName(store, bucket, key)));
+    }
+
+    /**
+     * 删除修改时间早于 modifiedBefore 的日志，其分片上传已被中止或不会再续传
+     *
+     * @return 删除的日志数量
+     */
+    int removeExpired(Instant modifiedBefore) {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(file -> file.getFileName().toString().endsWith(FILE_SUFFIX)).toList();
+        } catch (IOException e) {
+            logger.warn("List upload journal {} failed", directory, e);
+            return 0;
+        }
+
+        int removed = 0;
+        for (Path file : files) {
+            synchronized (lock(file)) {
+                try {
+                    if (Files.getLastModifiedTime(file).toInstant().isBefore(modifiedBefore)) {
+                        Files.delete(file);
+                        removed++;
+                    }
+                } catch (NoSuchFileException e) {
+                    // 已被上传流删除
+                } catch (IOException e) {
+                    logger.warn("Delete expired upload journal {} failed", file, e);
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 日志中记录的分片上传
+     *
+     * @param parts 已完成的分片，按分片序号排序
+     */
+    record Upload(String uploadId, SortedMap<Integer, Part> parts) {
+
+        /**
+         * 从第一个分片起连续的分片总大小恰好为 offset 时可以续传
+         *
+         * @return 续传前已完成的最后一个分片序号，offset 不在分片边界上时返回空
+         */
+        Optional<Integer> resumePartNumber(long offset) {
+            long size = 0;
+            int partNumber = 0;
+            while (size < offset) {
+                Part part = parts.get(partNumber + 1);
+                if (part == null) {
+                    return Optional.empty();
+                }
+                size += part.size();
+                partNumber++;
+            }
+            return size == offset ? Optional.of(partNumber) : Optional.empty();
+        }
+
+        /**
+         * 从第一个分片起连续完成的分片总大小，即客户端可以续传的偏移量
+         */
+        long resumableSize() {
+            long size = 0;
+            for (int partNumber = 1; parts.containsKey(partNumber); partNumber++) {
+                size += parts.get(partNumber).size();
+            }
+            return size;
+        }
+    }
+
+    /**
+     * @param checksum 分片的 S3 校验和，未开启时为 null
+     */
+    record Part(long size, String eTag, String checksum) {
+
+        Part(long size, String eTag) {
+            this(size, eTag, null);
+        }
+    }
+
+    /**
+     * 单个对象的日志文件。写入失败只记录日志，不影响上传本身。
+     */
+    static final class Entry {
+
+        private final Path file;
+
+        private Entry(Path file) {
+            this.file = file;
+        }
+
+        Optional<Upload> read() {
+            List<String> lines;
+            try {
+                lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            } catch (NoSuchFileException e) {
+                return Optional.empty();
+            } catch (IOException e) {
+                logger.warn("Read upload journal {} failed", file, e);
+                return Optional.empty();
+            }
+
+            if (lines.isEmpty() || lines.get(0).isBlank()) {
+                return Optional.empty();
+            }
+
+            SortedMap<Integer, Part> parts = new TreeMap<>();
+            for (String line : lines.subList(1, lines.size())) {
+                // 进程在追加过程中退出时最后一行可能不完整，忽略无法解析的行
+                String[] fields = line.split(" ");
+                if (fields.length != 3 && fields.length != 4) {
+                    continue;
+                }
+                try {
+                    parts.put(Integer.parseInt(fields[0]), new Part(
+                            Long.parseLong(fields[1]), fields[2], fields.length == 4 ? fields[3] : null
+                    ));
+                } catch (NumberFormatException e) {
+                    logger.debug("Skip malformed line in upload journal {}", file);
+                }
+            }
+            return Optional.of(new Upload(lines.get(0), Collections.unmodifiableSortedMap(parts)));
+        }
+
+        /**
+         * 开始记录新的分片上传，覆盖同一对象之前的记录
+         *
+         * @param parts 续传时沿用的分片
+         */
+        void begin(String uploadId, Map<Integer, Part> parts) {
+            StringBuilder content = new StringBuilder(uploadId).append('\n');
+            parts.forEach((partNumber, part) -> content.append(line(partNumber, part)));
+            synchronized (lock(file)) {
+                try {
+                    Files.writeString(file, content, StandardCharsets.UTF_8);
+                } catch (IOException e) {
+                    logger.warn("Write upload journal {} failed", file, e);
+                }
+            }
+        }
+
+        /**
+         * 追加 uploadId 已完成的分片。日志已被删除或已属于其他上传时不再修改。
+         */
+        void append(String uploadId, int partNumber, Part part) {
+            synchronized (lock(file)) {
+                if (!uploadId.equals(uploadId())) {
+                    logger.debug("Upload journal {} no longer belongs to {}, skip part {}", file, uploadId, partNumber);
+                    return;
+                }
+
+                try {
+                    Files.writeString(file, line(partNumber, part), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+                } catch (IOException e) {
+                    logger.warn("Append upload journal {} failed", file, e);
+                }
+            }
+        }
+
+        /**
+         * 删除 uploadId 的日志，日志已属于其他上传时保留
+         */
+        void remove(String uploadId) {
+            synchronized (lock(file)) {
+                if (uploadId == null || !uploadId.equals(uploadId())) {
+                    return;
+                }
+
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    logger.warn("Delete upload journal {} failed", file, e);
+                }
+            }
+        }
+
+        /**
+         * 日志首行记录的 uploadId，日志不存在时返回 null
+         */
+        String uploadId() {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                return reader.readLine();
+            } catch (NoSuchFileException e) {
+                return null;
+            } catch (IOException e) {
+                logger.warn("Read upload journal {} failed", file, e);
+                return null;
+            }
+        }
+
+        private static String line(int partNumber, Part part) {
+            return part.checksum() == null
+                    ? "%d %d %s\n".formatted(partNumber, part.size(), part.eTag())
+                    : "%d %d %s %s\n".formatted(partNumber, part.size(), part.eTag(), part.checksum());
+        }
+    }
+
+    private static Object lock(Path file) {
+        return LOCKS[Math.floorMod(file.hashCode(), LOCKS.length)];
+    }
+
+    /**
+     * key 可能包含文件名不允许的字符，以摘要作为文件名
+     */
+    private static String fileName(String store, String bucket, String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((store + ':' + bucket + '/' + key).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash) + FILE_SUFFIX;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.s3.ftp.s3;
+
+import com.s3.ftp.config.Settings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 上传暂存目录。暂存文件总大小受 upload-spool-max-size 限制，空间不足时写入方等待已有分片上传完成。
+ * 进程异常退出后遗留的暂存文件在首次使用时清理。
+ */
+final class S3UploadSpool {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3UploadSpool.class);
+
+    private static final String FILE_PREFIX = "s3-ftp-";
+
+    private static final String FILE_SUFFIX = ".part";
+
+    private static volatile S3UploadSpool spool;
+
+    private final Path directory;
+
+    private final long maxSize;
+
+    private final long reserveTimeoutMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition released = lock.newCondition();
+
+    private long reserved = 0;
+
+    S3UploadSpool(Path directory, long maxSize, long reserveTimeoutMillis) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxSize = maxSize;
+        this.reserveTimeoutMillis = reserveTimeoutMillis;
+    }
+
+    static S3UploadSpool get(Settings settings) throws IOException {
+        S3UploadSpool current = spool;
+        if (current != null && current.matchesConfiguration(settings)) {
+            return current;
+        }
+
+        synchronized (S3UploadSpool.class) {
+            if (spool == null || !spool.matchesConfiguration(settings)) {
+                S3UploadSpool created = new S3UploadSpool(
+                        Path.of(settings.uploadSpoolDir),
+                        settings.uploadSpoolMaxSize,
+                        settings.writeBufferAcquireTimeout * 1000L
+                );
+                if (spool == null && settings.uploadSpoolCleanOnStart) {
+                    created.clean();
+                }
+                spool = created;
+            }
+            return spool;
+        }
+    }
+
+    /**
+     * 占用 size 大小的暂存空间并创建暂存文件，空间不足时等待，超时后失败。
+     */
+    Path reserve(long size) throws IOException {
+        if (size > maxSize) {
+            throw new IOException("upload spool %s is smaller than part size %d".formatted(directory, size));
+        }
+
+        lock.lock();
+        try {
+            long waitNanos = TimeUnit.MILLISECONDS.toNanos(reserveTimeoutMillis);
+            while (reserved + size > maxSize) {
+                if (waitNanos <= 0) {
+                    throw new IOException("no space in upload spool %s for %d ms".formatted(
+                            directory, reserveTimeoutMillis
+                    ));
+                }
+                waitNanos = released.awaitNanos(waitNanos);
+            }
+            reserved += size;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for upload spool");
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            return Files.createTempFile(directory, FILE_PREFIX, FILE_SUFFIX);
+        } catch (IOException e) {
+            release(null, size);
+            throw e;
+        }
+    }
+
+    void release(Path file, long size) {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Delete spool file {} failed", file, e);
+            }
+        }
+
+        lock.lock();
+        try {
+            reserved -= size;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long reserved() {
+        lock.lock();
+        try {
+            return reserved;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean matchesConfiguration(Settings settings) {
+        return directory.equals(Path.of(settings.uploadSpoolDir))
+                && maxSize == settings.uploadSpoolMaxSize;
+    }
+
+    /**
+     * 删除上次运行遗留的暂存文件
+     */
+    private void clean() throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+                count++;
+            }
+        }
+
+        if (count > 0) {
+            logger.info("Removed {} stale spool files from {}", count, directory);
+        }
+    }
+}
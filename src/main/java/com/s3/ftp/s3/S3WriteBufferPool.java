@@ -0,0 +1,69 @@
+package com.s3.ftp.s3;
+
+import com.s3.ftp.config.Settings;
+import com.s3.ftp.util.BufferPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * 上传写缓存共用的缓冲池，按当前配置创建，配置变化后重建，并以 com.s3.ftp:type=BufferPool,name=write 注册到 JMX。
+ */
+final class S3WriteBufferPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3WriteBufferPool.class);
+
+    private static final String OBJECT_NAME = "com.s3.ftp:type=BufferPool,name=write";
+
+    private static volatile BufferPool pool;
+
+    private S3WriteBufferPool() {
+        //private
+    }
+
+    static BufferPool get(Settings settings) {
+        BufferPool current = pool;
+        if (current != null && matchesConfiguration(current, settings)) {
+            return current;
+        }
+
+        synchronized (S3WriteBufferPool.class) {
+            if (pool == null || !matchesConfiguration(pool, settings)) {
+                pool = new BufferPool(
+                        settings.writeBufferSize,
+                        settings.writeBufferPoolSize,
+                        settings.writeBufferDirect,
+                        settings.writeBufferAcquireTimeout * 1000L
+                );
+                register(pool, OBJECT_NAME);
+            }
+            return pool;
+        }
+    }
+
+    private static boolean matchesConfiguration(BufferPool pool, Settings settings) {
+        return pool.getBufferSize() == settings.writeBufferSize
+                && pool.getCapacity() == settings.writeBufferPoolSize
+                && pool.isDirect() == settings.writeBufferDirect;
+    }
+
+    /**
+     * 以 objectName 注册到 JMX，替换配置变化前注册的缓冲池
+     */
+    static void register(BufferPool pool, String objectName) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(objectName);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(pool, name);
+        } catch (JMException e) {
+            logger.warn("Register {} failed", objectName, e);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.s3.ftp.throttle;
+
+import java.util.Map;
+
+/**
+ * 一组限速配置，未限速的项为 null。
+ *
+ * @param upload   上传字节数每秒
+ * @param download 下载字节数每秒
+ * @param request  请求数每秒
+ */
+public record RateLimits(TokenBucket upload, TokenBucket download, TokenBucket request) {
+
+    public static final RateLimits NONE = new RateLimits(null, null, null);
+
+    /**
+     * 从配置项创建，未配置或不大于 0 的项不限速。
+     */
+    public static RateLimits of(Map<String, String> props, String uploadKey, String downloadKey, String requestKey) {
+        TokenBucket upload = bucket(props.get(uploadKey));
+        TokenBucket download = bucket(props.get(downloadKey));
+        TokenBucket request = bucket(props.get(requestKey));
+        return upload == null && download == null && request == null
+                ? NONE
+                : new RateLimits(upload, download, request);
+    }
+
+    /**
+     * 速率与 previous 相同的项沿用其令牌桶，重新加载配置时进行中的限速与已消耗的令牌不受影响，只重建速率变化的项。
+     * 各项均沿用时返回 previous 本身。
+     */
+    public RateLimits reuse(RateLimits previous) {
+        TokenBucket upload = reuse(this.upload, previous.upload);
+        TokenBucket download = reuse(this.download, previous.download);
+        TokenBucket request = reuse(this.request, previous.request);
+        return upload == previous.upload && download == previous.download && request == previous.request
+                ? previous
+                : new RateLimits(upload, download, request);
+    }
+
+    private static TokenBucket reuse(TokenBucket bucket, TokenBucket previous) {
+        return bucket != null && previous != null && bucket.rate() == previous.rate() ? previous : bucket;
+    }
+
+    private static TokenBucket bucket(String rate) {
+        if (rate == null || rate.isBlank()) {
+            return null;
+        }
+
+        long value = Long.parseLong(rate.trim());
+        return value > 0 ? new TokenBucket(value) : null;
+    }
+}
@@ -0,0 +1,35 @@
+package com.s3.ftp.throttle;
+
+import org.apache.ftpserver.ftplet.DefaultFtplet;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.ftplet.FtpRequest;
+import org.apache.ftpserver.ftplet.FtpSession;
+import org.apache.ftpserver.ftplet.FtpletResult;
+import org.apache.ftpserver.ftplet.User;
+
+import java.io.IOException;
+
+/**
+ * 按用户的 commandrate 限制已登录会话的命令速率，超出时延迟处理命令。
+ * 命令是用户触发 S3 请求的单位，共享的 S3 客户端无法区分请求所属的用户。
+ */
+public final class ThrottleFtplet extends DefaultFtplet {
+
+    @Override
+    public FtpletResult beforeCommand(FtpSession session, FtpRequest request) throws FtpException, IOException {
+        User user = session.getUser();
+        if (user != null) {
+            TokenBucket bucket = Throttles.user(user.getName()).request();
+            if (bucket != null) {
+                try {
+                    bucket.acquire(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new FtpException("Interrupted while throttling command", e);
+                }
+            }
+        }
+
+        return super.beforeCommand(session, request);
+    }
+}
@@ -0,0 +1,28 @@
+package com.s3.ftp.throttle;
+
+import software.amazon.awssdk.core.exception.AbortedException;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+
+/**
+ * 限制 S3 客户端的请求速率，超出时在发起请求的线程上等待，SDK 内部重试不重复计数。
+ */
+public final class ThrottleInterceptor implements ExecutionInterceptor {
+
+    private final TokenBucket bucket;
+
+    public ThrottleInterceptor(TokenBucket bucket) {
+        this.bucket = bucket;
+    }
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes attributes) {
+        try {
+            bucket.acquire(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw AbortedException.create("Interrupted while throttling S3 request", e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.s3.ftp.throttle;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * 读取后按实际读到的字节数从令牌桶取出令牌，令牌不足时阻塞读取方。
+ */
+final class ThrottledInputStream extends FilterInputStream {
+
+    private final TokenBucket[] buckets;
+
+    ThrottledInputStream(InputStream in, TokenBucket[] buckets) {
+        super(in);
+        this.buckets = buckets;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b >= 0) {
+            throttle(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = in.read(b, off, len);
+        if (n > 0) {
+            throttle(n);
+        }
+        return n;
+    }
+
+    private void throttle(int len) throws InterruptedIOException {
+        try {
+            TokenBucket.acquire(buckets, len);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while throttling download");
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.s3.ftp.throttle;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * 写入前按字节数从令牌桶取出令牌，令牌不足时阻塞写入方。
+ */
+final class ThrottledOutputStream extends FilterOutputStream {
+
+    private final TokenBucket[] buckets;
+
+    ThrottledOutputStream(OutputStream out, TokenBucket[] buckets) {
+        super(out);
+        this.buckets = buckets;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        throttle(1);
+        out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        throttle(len);
+        out.write(b, off, len);
+    }
+
+    private void throttle(int len) throws InterruptedIOException {
+        try {
+            TokenBucket.acquire(buckets, len);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while throttling upload");
+        }
+    }
+}
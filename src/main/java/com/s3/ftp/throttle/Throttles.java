@@ -0,0 +1,87 @@
+package com.s3.ftp.throttle;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Function;
+
+/**
+ * 按用户配置的限速，同一用户的所有会话共用令牌桶。配置项为 ftpserver.user.&lt;name&gt; 下的
+ * totaluploadrate、totaldownloadrate（字节每秒）与 commandrate（FTP 命令每秒）。
+ * 与 ftpserver 自带的 uploadrate/downloadrate 不同，后者只限制单个数据连接。
+ */
+public final class Throttles {
+
+    public static final String UPLOAD_RATE = "totaluploadrate";
+
+    public static final String DOWNLOAD_RATE = "totaldownloadrate";
+
+    public static final String COMMAND_RATE = "commandrate";
+
+    private static final String USER_PREFIX = "ftpserver.user.";
+
+    private static volatile Map<String, RateLimits> users = Map.of();
+
+    private Throttles() {
+        //private
+    }
+
+    /**
+     * 按配置替换各用户的限速。速率未变化的令牌桶继续使用，同一用户进行中的传输与新建的会话仍共用同一个令牌桶。
+     */
+    public static synchronized void configure(Properties props) {
+        Map<String, Map<String, String>> configs = new HashMap<>();
+        props.stringPropertyNames().forEach(key -> {
+            int pos = key.lastIndexOf('.');
+            if (key.startsWith(USER_PREFIX) && pos > USER_PREFIX.length()) {
+                configs.computeIfAbsent(key.substring(USER_PREFIX.length(), pos), k -> new HashMap<>())
+                        .put(key.substring(pos + 1), props.getProperty(key));
+            }
+        });
+
+        Map<String, RateLimits> previous = Throttles.users;
+        Map<String, RateLimits> limits = new HashMap<>();
+        configs.forEach((user, config) -> {
+            RateLimits userLimits = RateLimits.of(config, UPLOAD_RATE, DOWNLOAD_RATE, COMMAND_RATE);
+            if (userLimits != RateLimits.NONE) {
+                limits.put(user, userLimits.reuse(previous.getOrDefault(user, RateLimits.NONE)));
+            }
+        });
+        Throttles.users = Map.copyOf(limits);
+    }
+
+    public static RateLimits user(String name) {
+        return name == null ? RateLimits.NONE : users.getOrDefault(name, RateLimits.NONE);
+    }
+
+    /**
+     * 按各组限速中的上传限制包装上传流，均未限速时原样返回。
+     */
+    public static OutputStream throttleUpload(OutputStream os, RateLimits... limits) {
+        TokenBucket[] buckets = buckets(limits, RateLimits::upload);
+        return buckets.length == 0 ? os : new ThrottledOutputStream(os, buckets);
+    }
+
+    /**
+     * 按各组限速中的下载限制包装下载流，均未限速时原样返回。
+     */
+    public static InputStream throttleDownload(InputStream is, RateLimits... limits) {
+        TokenBucket[] buckets = buckets(limits, RateLimits::download);
+        return buckets.length == 0 ? is : new ThrottledInputStream(is, buckets);
+    }
+
+    private static TokenBucket[] buckets(RateLimits[] limits, Function<RateLimits, TokenBucket> selector) {
+        List<TokenBucket> buckets = new ArrayList<>(limits.length);
+        for (RateLimits limit : limits) {
+            TokenBucket bucket = selector.apply(limit);
+            if (bucket != null) {
+                buckets.add(bucket);
+            }
+        }
+        return buckets.toArray(TokenBucket[]::new);
+    }
+}
@@ -0,0 +1,81 @@
+package com.s3.ftp.throttle;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 令牌桶限速器，容量为一秒的令牌，空闲后允许一秒内的突发。
+ * 只记录已取出的令牌全部补足的时间点，获取令牌为一次 CAS，不加锁；令牌不足时先扣除再休眠至补足，
+ * 因此单次获取的数量不受容量限制，并发获取方按扣除顺序依次放行。
+ */
+public final class TokenBucket {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final long rate;
+
+    private final double nanosPerPermit;
+
+    /**
+     * 已取出的令牌全部补足的时间点，早于当前时间一秒以上时桶为满
+     */
+    private final AtomicLong refilledAt;
+
+    /**
+     * @param rate 每秒补充的令牌数
+     */
+    public TokenBucket(long rate) {
+        if (rate < 1) {
+            throw new IllegalArgumentException("rate must large then 0");
+        }
+
+        this.rate = rate;
+        this.nanosPerPermit = (double) NANOS_PER_SECOND / rate;
+        this.refilledAt = new AtomicLong(System.nanoTime() - NANOS_PER_SECOND);
+    }
+
+    public long rate() {
+        return rate;
+    }
+
+    /**
+     * 取出令牌，令牌不足时阻塞至补足。
+     */
+    public void acquire(long permits) throws InterruptedException {
+        long wait = reserve(permits);
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * 同时从多个令牌桶取出令牌，等待时间以最慢的为准。
+     */
+    static void acquire(TokenBucket[] buckets, long permits) throws InterruptedException {
+        long wait = 0;
+        for (TokenBucket bucket : buckets) {
+            wait = Math.max(wait, bucket.reserve(permits));
+        }
+
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * 扣除令牌，不足部分记为欠账。
+     *
+     * @return 令牌补足前需要等待的纳秒数
+     */
+    long reserve(long permits) {
+        long cost = (long) Math.ceil(permits * nanosPerPermit);
+        while (true) {
+            long now = System.nanoTime();
+            long current = refilledAt.get();
+            long next = Math.max(current, now - NANOS_PER_SECOND) + cost;
+            if (refilledAt.compareAndSet(current, next)) {
+                return Math.max(0, next - now);
+            }
+        }
+    }
+}
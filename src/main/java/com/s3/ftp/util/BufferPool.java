@@ -0,0 +1,130 @@
+package com.s3.ftp.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 固定大小缓冲区的有界池。缓冲区按需创建，归还后复用；全部借出时借用方阻塞等待，超时则失败。
+ */
+public final class BufferPool implements BufferPoolMXBean {
+
+    private final int bufferSize;
+
+    private final int capacity;
+
+    private final boolean direct;
+
+    private final long acquireTimeoutMillis;
+
+    private final Semaphore permits;
+
+    private final Queue<ByteBuffer> freeBuffers = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger allocated = new AtomicInteger();
+
+    public BufferPool(int bufferSize, int capacity, boolean direct, long acquireTimeoutMillis) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must large then 0");
+        }
+
+        this.bufferSize = bufferSize;
+        this.capacity = capacity;
+        this.direct = direct;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.permits = new Semaphore(capacity, true);
+    }
+
+    public ByteBuffer acquire() throws IOException {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new IOException("no buffer available in %d ms".formatted(acquireTimeoutMillis));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for buffer");
+        }
+
+        return take();
+    }
+
+    /**
+     * 不等待的借用，缓冲区已全部借出时返回空
+     */
+    public Optional<ByteBuffer> tryAcquire() {
+        if (!permits.tryAcquire()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(take());
+    }
+
+    /**
+     * 不等待地一次借用 count 个缓冲区，空闲数量不足时不借用任何缓冲区并返回空。
+     * 需要多个缓冲区的借用方不会各自持有一部分而互相等待。
+     */
+    public Optional<List<ByteBuffer>> tryAcquire(int count) {
+        if (!permits.tryAcquire(count)) {
+            return Optional.empty();
+        }
+
+        List<ByteBuffer> buffers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            buffers.add(take());
+        }
+        return Optional.of(buffers);
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() == bufferSize && buffer.isDirect() == direct) {
+            freeBuffers.offer(buffer.clear());
+        } else {
+            allocated.decrementAndGet();
+        }
+
+        permits.release();
+    }
+
+    private ByteBuffer take() {
+        ByteBuffer buffer = freeBuffers.poll();
+        if (buffer == null) {
+            buffer = direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+            allocated.incrementAndGet();
+        }
+
+        return buffer.clear();
+    }
+
+    @Override
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public int getAllocated() {
+        return allocated.get();
+    }
+
+    @Override
+    public int getInUse() {
+        return capacity - permits.availablePermits();
+    }
+
+    @Override
+    public boolean isDirect() {
+        return direct;
+    }
+}
@@ -0,0 +1,17 @@
+package com.s3.ftp.util;
+
+/**
+ * 缓冲池占用情况，通过 JMX 暴露。
+ */
+public interface BufferPoolMXBean {
+
+    int getBufferSize();
+
+    int getCapacity();
+
+    int getAllocated();
+
+    int getInUse();
+
+    boolean isDirect();
+}
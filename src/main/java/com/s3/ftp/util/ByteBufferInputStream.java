@@ -0,0 +1,48 @@
+package com.s3.ftp.util;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 直接读取 ByteBuffer 剩余内容的输入流，不复制数据，也不改变原缓冲区的位置。
+ */
+public final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    public ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer.duplicate();
+    }
+
+    @Override
+    public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+
+        int size = Math.min(len, buffer.remaining());
+        buffer.get(bytes, off, size);
+        return size;
+    }
+
+    @Override
+    public long skip(long n) {
+        int size = (int) Math.max(0, Math.min(n, buffer.remaining()));
+        buffer.position(buffer.position() + size);
+        return size;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+}
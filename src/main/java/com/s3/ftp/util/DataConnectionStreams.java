@@ -0,0 +1,104 @@
+package com.s3.ftp.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 交给 ftpserver 数据连接读写的文件流。ftpserver 以 4096 字节的数组在数据连接与文件流之间搬运数据，
+ * 并为不是 Buffered 的文件流再包装一层 8KiB 缓冲，每个字节因此多复制一次。
+ * 这里返回的流本身即是 Buffered 流，ftpserver 不再包装，数组读写直接转交文件流，
+ * 只有 ASCII 模式逐字节写入时才经过缓冲。
+ */
+public final class DataConnectionStreams {
+
+    /**
+     * 逐字节写入时的缓冲大小，与 ftpserver 每次读写的字节数相同
+     */
+    private static final int BYTE_BUFFER_SIZE = 4096;
+
+    private DataConnectionStreams() {
+        //private
+    }
+
+    public static BufferedOutputStream upload(OutputStream os) {
+        return os instanceof PassThroughOutputStream pos ? pos : new PassThroughOutputStream(os, () -> {
+        });
+    }
+
+    /**
+     * @param onAbort 由 {@link #abort(OutputStream)} 调用，通知上传流传输未完成
+     */
+    public static BufferedOutputStream upload(OutputStream os, Runnable onAbort) {
+        return new PassThroughOutputStream(os, onAbort);
+    }
+
+    /**
+     * 数据连接中断时在关闭上传流之前调用，之后关闭流不再把已收到的部分数据作为完整的文件提交。
+     */
+    public static void abort(OutputStream os) {
+        if (os instanceof PassThroughOutputStream pos) {
+            pos.onAbort.run();
+        }
+    }
+
+    public static BufferedInputStream download(InputStream is) {
+        return is instanceof PassThroughInputStream pis ? pis : new PassThroughInputStream(is);
+    }
+
+    private static final class PassThroughOutputStream extends BufferedOutputStream {
+
+        private final Runnable onAbort;
+
+        private PassThroughOutputStream(OutputStream out, Runnable onAbort) {
+            super(out, BYTE_BUFFER_SIZE);
+            this.onAbort = onAbort;
+        }
+
+        /**
+         * 只有数据连接的传输线程写入，不需要加锁
+         */
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (count > 0) {
+                out.write(buf, 0, count);
+                count = 0;
+            }
+            out.write(b, off, len);
+        }
+    }
+
+    private static final class PassThroughInputStream extends BufferedInputStream {
+
+        private PassThroughInputStream(InputStream in) {
+            super(in, 1);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return in.read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return in.skip(n);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return in.available();
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -1,70 +1,107 @@
 package com.s3.ftp.util;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
+/**
+ * 单次扫描字符完成路径规范化：忽略空段与 "."，就地回退 ".."，不创建中间集合。
+ */
 public final class PathBuilder {
 
-    private final List<String> elements = new ArrayList<>();
+    private final String root;
+
+    private final StringBuilder path;
 
-    private final List<String> roots;
+    private String invalidPath;
 
     public static PathBuilder root() {
         return root("");
     }
 
     public static PathBuilder root(String root) {
-        return new PathBuilder(root);
+        PathBuilder builder = new PathBuilder("", new StringBuilder(root.length())).resolve(root);
+        return new PathBuilder(builder.build(), new StringBuilder());
+    }
+
+    /**
+     * 在已规范化的相对路径 base 上解析 path，path 以 / 开头时忽略 base。
+     *
+     * @return 规范化后的相对路径，不以 / 开头或结尾
+     */
+    public static String normalize(String base, String path) {
+        StringBuilder builder = new StringBuilder(base.length() + path.length() + 1).append(base);
+        return new PathBuilder("", builder).resolve(path).build();
     }
 
-    private PathBuilder(String root) {
-        this.roots = normalize(root).toList();
+    private PathBuilder(String root, StringBuilder path) {
+        this.root = root;
+        this.path = path;
     }
 
     public PathBuilder resolve(String path) {
-        if (!path.isEmpty() && path.charAt(0) == '/') {
-            elements.clear();
+        int len = path.length();
+        if (len > 0 && path.charAt(0) == '/') {
+            this.path.setLength(0);
+            this.invalidPath = null;
         }
 
-        normalize(path).forEach(elements::add);
+        int start = 0;
+        while (start < len) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = len;
+            }
+
+            appendSegment(path, start, end);
+            start = end + 1;
+        }
 
         return this;
     }
 
     public String build() {
-        List<String> result = new ArrayList<>();
-
-        for (String ele : elements) {
-            if (ele.equals("..")) {
-                if (result.isEmpty()) {
-                    throw new IllegalArgumentException(
-                            "Invalid path: %s".formatted(String.join("/", elements))
-                    );
-                }
-
-                result.remove(result.size() - 1);
-                continue;
-            }
+        if (invalidPath != null) {
+            throw new IllegalArgumentException("Invalid path: %s".formatted(invalidPath));
+        }
 
-            result.add(ele);
+        if (root.isEmpty()) {
+            return path.toString();
         }
 
-        return Stream.concat(roots.stream(), result.stream())
-                .collect(Collectors.joining("/"));
-    }
+        if (path.isEmpty()) {
+            return root;
+        }
 
-    private static Stream<String> normalize(String path) {
-        return Arrays.stream(path.split("/"))
-                .map(String::trim)
-                .filter(ele -> !ele.isEmpty())
-                .filter(ele -> !".".equals(ele));
+        return root + '/' + path;
     }
 
     public String buildDirPath() {
         return build() + "/";
     }
 
+    private void appendSegment(String segment, int start, int end) {
+        while (start < end && segment.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && segment.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        int len = end - start;
+        if (len == 0 || len == 1 && segment.charAt(start) == '.') {
+            return;
+        }
+
+        if (len == 2 && segment.charAt(start) == '.' && segment.charAt(start + 1) == '.') {
+            if (path.isEmpty()) {
+                this.invalidPath = segment;
+            } else {
+                path.setLength(Math.max(path.lastIndexOf("/"), 0));
+            }
+            return;
+        }
+
+        if (!path.isEmpty()) {
+            path.append('/');
+        }
+        path.append(segment, start, end);
+    }
+
 }
@@ -0,0 +1,104 @@
+package com.s3.ftp;
+
+import com.robothy.s3.rest.LocalS3;
+import com.s3.ftp.config.GlobalConfiguration;
+import org.apache.ftpserver.FtpServer;
+import org.apache.ftpserver.impl.DefaultFtpServer;
+import org.apache.ftpserver.usermanager.Md5PasswordEncryptor;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class S3FTPServerTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3FTPServerTest.class);
+
+    /**
+     * 从读取配置到接受首个连接的时间上限，同一 JVM 中之前的测试可能已加载部分类，结果只用于发现明显的退化
+     */
+    private static final long STARTUP_LIMIT_MILLIS = 5000;
+
+    static LocalS3 localS3 = LocalS3.builder().port(-1).build();
+
+    @BeforeAll
+    static void beforeAll() {
+        localS3.start();
+    }
+
+    @AfterAll
+    static void afterAll() {
+        localS3.shutdown();
+    }
+
+    @Test
+    void startup(@TempDir Path dir) throws Exception {
+        Path config = dir.resolve("config.properties");
+        Files.writeString(config, """
+                s3-ftp.bind-address=127.0.0.1
+                s3-ftp.port=0
+                s3-ftp.prewarm-clients=true
+                s3.test.uri=http://127.0.0.1:%d
+                s3.test.access_key=foo
+                s3.test.secret_key=bar
+                ftpserver.user.test.homedirectory=test:test
+                ftpserver.user.test.userpassword=%s
+                """.formatted(localS3.getPort(), new Md5PasswordEncryptor().encrypt("secret")));
+
+        long start = System.nanoTime();
+        GlobalConfiguration.load(config);
+        FtpServer server = GlobalConfiguration.createServer();
+        try {
+            server.start();
+            int port = ((DefaultFtpServer) server).getServerContext().getListener("default").getPort();
+
+            try (Socket socket = new Socket("127.0.0.1", port);
+                 BufferedReader reader = new BufferedReader(
+                         new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                 Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII)) {
+                assertTrue(reader.readLine().startsWith("220"));
+                long accepted = System.nanoTime();
+
+                assertTrue(command(reader, writer, "USER test").startsWith("331"));
+                assertTrue(command(reader, writer, "PASS secret").startsWith("230"));
+                assertTrue(command(reader, writer, "PWD").startsWith("257"));
+                long loggedIn = System.nanoTime();
+
+                GlobalConfiguration.clientsPrewarm().join();
+                long prewarmed = System.nanoTime();
+
+                logger.info("First connection accepted after {}ms, first login after {}ms, clients prewarmed after {}ms",
+                        TimeUnit.NANOSECONDS.toMillis(accepted - start),
+                        TimeUnit.NANOSECONDS.toMillis(loggedIn - start),
+                        TimeUnit.NANOSECONDS.toMillis(prewarmed - start));
+                assertTrue(TimeUnit.NANOSECONDS.toMillis(accepted - start) < STARTUP_LIMIT_MILLIS);
+                assertTrue(command(reader, writer, "QUIT").startsWith("221"));
+            }
+        } finally {
+            server.stop();
+            Files.writeString(config, "");
+            GlobalConfiguration.reload(config);
+        }
+    }
+
+    private static String command(BufferedReader reader, Writer writer, String command) throws IOException {
+        writer.write(command + "\r\n");
+        writer.flush();
+        return reader.readLine();
+    }
+}
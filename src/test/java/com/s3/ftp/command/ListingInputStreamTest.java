@@ -0,0 +1,44 @@
+package com.s3.ftp.command;
+
+import org.apache.ftpserver.command.impl.listing.NLSTFileFormater;
+import org.apache.ftpserver.ftplet.FtpFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ListingInputStreamTest {
+
+    @Test
+    void testRead() throws IOException {
+        List<FtpFile> files = List.of(mockFile("a", false), mockFile(".b", true), mockFile("中文.txt", false));
+
+        try (InputStream is = new ListingInputStream(files.iterator(), FtpFile::isFile, new NLSTFileFormater())) {
+            assertEquals("a\r\n中文.txt\r\n", new String(is.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        try (InputStream is = new ListingInputStream(files.iterator(), null, new NLSTFileFormater())) {
+            assertEquals('a', is.read());
+            assertEquals(".b\r\n", new String(is.readNBytes(6), StandardCharsets.UTF_8).substring(2));
+        }
+
+        try (InputStream is = new ListingInputStream(List.<FtpFile>of().iterator(), null, new NLSTFileFormater())) {
+            assertEquals(-1, is.read());
+            assertEquals(-1, is.read(new byte[10]));
+        }
+    }
+
+    private static FtpFile mockFile(String name, boolean directory) {
+        FtpFile file = mock(FtpFile.class);
+        when(file.getName()).thenReturn(name);
+        when(file.isFile()).thenReturn(!directory);
+        when(file.isDirectory()).thenReturn(directory);
+        return file;
+    }
+}
@@ -0,0 +1,135 @@
+package com.s3.ftp.command;
+
+import com.s3.ftp.config.GlobalConfiguration;
+import com.s3.ftp.jupiter.LocalS3;
+import org.apache.commons.lang3.RandomUtils;
+import org.apache.ftpserver.FtpServer;
+import org.apache.ftpserver.impl.DefaultFtpServer;
+import org.apache.ftpserver.usermanager.Md5PasswordEncryptor;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("JUnitMalformedDeclaration")
+@LocalS3
+class StoreCommandTest {
+
+    private static final int PART_SIZE = 1024 * 1024 * 5;
+
+    private static final Pattern PASV_REPLY = Pattern.compile("\\((\\d+),(\\d+),(\\d+),(\\d+),(\\d+),(\\d+)\\)");
+
+    @BeforeAll
+    static void beforeAll(S3Client client) {
+        client.createBucket(req -> req.bucket("test"));
+    }
+
+    @Test
+    void testResumeAbortedUpload(S3Client client, @TempDir Path dir) throws Exception {
+        Path config = dir.resolve("config.properties");
+        Files.writeString(config, """
+                s3-ftp.bind-address=127.0.0.1
+                s3-ftp.port=0
+                s3-ftp.write-buffer-size=%d
+                s3-ftp.upload-journal-enabled=true
+                s3-ftp.upload-journal-dir=%s
+                s3.test.uri=%s
+                s3.test.access_key=foo
+                s3.test.secret_key=bar
+                ftpserver.user.test.homedirectory=test:test
+                ftpserver.user.test.userpassword=%s
+                ftpserver.user.test.writepermission=true
+                """.formatted(
+                PART_SIZE,
+                dir.resolve("journal").toString().replace('\\', '/'),
+                client.serviceClientConfiguration().endpointOverride().orElseThrow(),
+                new Md5PasswordEncryptor().encrypt("secret")
+        ));
+
+        byte[] content = RandomUtils.nextBytes(PART_SIZE * 3 + 1024);
+        GlobalConfiguration.load(config);
+        FtpServer server = GlobalConfiguration.createServer();
+        try {
+            server.start();
+            int port = ((DefaultFtpServer) server).getServerContext().getListener("default").getPort();
+
+            try (Socket socket = new Socket("127.0.0.1", port);
+                 BufferedReader reader = new BufferedReader(
+                         new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                 Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII)) {
+                assertTrue(reader.readLine().startsWith("220"));
+                assertTrue(command(reader, writer, "USER test").startsWith("331"));
+                assertTrue(command(reader, writer, "PASS secret").startsWith("230"));
+                assertTrue(command(reader, writer, "TYPE I").startsWith("200"));
+
+                // 发送两个多分片的数据后以 RST 中断数据连接
+                try (Socket data = passive(reader, writer)) {
+                    assertTrue(command(reader, writer, "STOR big.dat").startsWith("150"));
+                    OutputStream os = data.getOutputStream();
+                    os.write(content, 0, PART_SIZE * 2 + 1024);
+                    os.flush();
+                    Thread.sleep(1000);
+                    data.setSoLinger(true, 0);
+                }
+                assertTrue(reader.readLine().startsWith("426"));
+                assertThrows(NoSuchKeyException.class, () -> client.headObject(req -> req.bucket("test").key("big.dat")));
+
+                String size = command(reader, writer, "SIZE big.dat");
+                assertTrue(size.startsWith("213 "));
+                long offset = Long.parseLong(size.substring(4).trim());
+                assertTrue(offset > 0);
+                assertTrue(offset <= PART_SIZE * 2);
+                assertEquals(0, offset % PART_SIZE);
+
+                // 从分片边界续传剩余数据
+                assertTrue(command(reader, writer, "REST " + offset).startsWith("350"));
+                try (Socket data = passive(reader, writer)) {
+                    assertTrue(command(reader, writer, "STOR big.dat").startsWith("150"));
+                    OutputStream os = data.getOutputStream();
+                    os.write(content, (int) offset, content.length - (int) offset);
+                    os.flush();
+                }
+                assertTrue(reader.readLine().startsWith("226"));
+
+                assertArrayEquals(content, client.getObjectAsBytes(req -> req.bucket("test").key("big.dat")).asByteArray());
+                assertEquals("213 " + content.length, command(reader, writer, "SIZE big.dat"));
+                assertTrue(command(reader, writer, "QUIT").startsWith("221"));
+            }
+        } finally {
+            server.stop();
+            Files.writeString(config, "");
+            GlobalConfiguration.reload(config);
+        }
+    }
+
+    private static Socket passive(BufferedReader reader, Writer writer) throws IOException {
+        String reply = command(reader, writer, "PASV");
+        Matcher matcher = PASV_REPLY.matcher(reply);
+        assertTrue(matcher.find());
+        String host = String.join(".", matcher.group(1), matcher.group(2), matcher.group(3), matcher.group(4));
+        int port = Integer.parseInt(matcher.group(5)) * 256 + Integer.parseInt(matcher.group(6));
+        return new Socket(host, port);
+    }
+
+    private static String command(BufferedReader reader, Writer writer, String command) throws IOException {
+        writer.write(command + "\r\n");
+        writer.flush();
+        return reader.readLine();
+    }
+}
@@ -0,0 +1,78 @@
+package com.s3.ftp.config;
+
+import org.apache.ftpserver.ftplet.AuthenticationFailedException;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.ftplet.User;
+import org.apache.ftpserver.usermanager.AnonymousAuthentication;
+import org.apache.ftpserver.usermanager.Md5PasswordEncryptor;
+import org.apache.ftpserver.usermanager.UsernamePasswordAuthentication;
+import org.apache.ftpserver.usermanager.impl.TransferRateRequest;
+import org.apache.ftpserver.usermanager.impl.WriteRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConfigUserManagerTest {
+
+    @Test
+    void authenticate() throws AuthenticationFailedException {
+        ConfigUserManager userManager = new ConfigUserManager(buildProperties());
+
+        User user = userManager.authenticate(new UsernamePasswordAuthentication("alice", "secret"));
+        assertEquals("alice", user.getName());
+        assertEquals("s3:bucket/alice", user.getHomeDirectory());
+        assertTrue(user.getEnabled());
+        assertEquals(60, user.getMaxIdleTime());
+        assertNotNull(user.authorize(new WriteRequest()));
+        TransferRateRequest rate = (TransferRateRequest) user.authorize(new TransferRateRequest());
+        assertEquals(1024, rate.getMaxUploadRate());
+        assertEquals(0, rate.getMaxDownloadRate());
+
+        assertThrows(AuthenticationFailedException.class,
+                () -> userManager.authenticate(new UsernamePasswordAuthentication("alice", "wrong")));
+        assertThrows(AuthenticationFailedException.class,
+                () -> userManager.authenticate(new UsernamePasswordAuthentication("bob", "secret")));
+
+        User anonymous = userManager.authenticate(new AnonymousAuthentication());
+        assertEquals("anonymous", anonymous.getName());
+        assertNull(anonymous.authorize(new WriteRequest()));
+    }
+
+    @Test
+    void reload() throws FtpException {
+        Properties properties = buildProperties();
+        ConfigUserManager userManager = new ConfigUserManager(properties);
+        assertArrayEquals(new String[]{"alice", "anonymous"}, userManager.getAllUserNames());
+
+        properties.remove("ftpserver.user.anonymous.homedirectory");
+        properties.setProperty("ftpserver.user.bob.homedirectory", "s3:bucket/bob");
+        properties.setProperty("ftpserver.user.bob.userpassword", new Md5PasswordEncryptor().encrypt("secret"));
+        properties.setProperty("ftpserver.user.bob.enableflag", "false");
+        userManager.reload(properties);
+
+        assertArrayEquals(new String[]{"alice", "bob"}, userManager.getAllUserNames());
+        assertFalse(userManager.doesExist("anonymous"));
+        assertNull(userManager.getUserByName("anonymous"));
+        assertThrows(AuthenticationFailedException.class,
+                () -> userManager.authenticate(new AnonymousAuthentication()));
+        assertFalse(userManager.authenticate(new UsernamePasswordAuthentication("bob", "secret")).getEnabled());
+
+        assertThrows(FtpException.class, () -> userManager.delete("bob"));
+        assertThrows(FtpException.class, () -> userManager.save(userManager.getUserByName("bob")));
+    }
+
+    private Properties buildProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("s3-ftp.port", "2121");
+        properties.setProperty("s3.test.uri", "http://127.0.0.1:9000");
+        properties.setProperty("ftpserver.user.alice.homedirectory", "s3:bucket/alice");
+        properties.setProperty("ftpserver.user.alice.userpassword", new Md5PasswordEncryptor().encrypt("secret"));
+        properties.setProperty("ftpserver.user.alice.writepermission", "true");
+        properties.setProperty("ftpserver.user.alice.idletime", "60");
+        properties.setProperty("ftpserver.user.alice.uploadrate", "1024");
+        properties.setProperty("ftpserver.user.anonymous.homedirectory", "s3:bucket/public");
+        return properties;
+    }
+}
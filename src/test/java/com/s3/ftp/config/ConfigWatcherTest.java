@@ -0,0 +1,45 @@
+package com.s3.ftp.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConfigWatcherTest {
+
+    @Test
+    void check(@TempDir Path dir) throws IOException {
+        Path config = dir.resolve("config.properties");
+        Files.writeString(config, "");
+        Files.setLastModifiedTime(config, FileTime.fromMillis(1000));
+
+        try (ConfigWatcher watcher = new ConfigWatcher(config, 1000)) {
+            assertFalse(watcher.check());
+
+            Files.writeString(config, "s3-ftp.listing-concurrency=4\n");
+            Files.setLastModifiedTime(config, FileTime.fromMillis(2000));
+            // 修改时间在下一次检查时仍未变化才加载
+            assertFalse(watcher.check());
+            assertEquals(16, GlobalConfiguration.settings().listingConcurrency);
+            assertTrue(watcher.check());
+            assertEquals(4, GlobalConfiguration.settings().listingConcurrency);
+            assertFalse(watcher.check());
+
+            Files.writeString(config, "s3-ftp.listing-concurrency=0\n");
+            Files.setLastModifiedTime(config, FileTime.fromMillis(3000));
+            assertFalse(watcher.check());
+            assertFalse(watcher.check());
+            assertEquals(4, GlobalConfiguration.settings().listingConcurrency);
+        } finally {
+            Files.writeString(config, "");
+            GlobalConfiguration.reload(config);
+        }
+    }
+}
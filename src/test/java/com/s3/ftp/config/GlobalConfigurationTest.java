@@ -1,10 +1,18 @@
 package com.s3.ftp.config;
 
+import com.s3.ftp.s3.S3FileHash;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Properties;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class GlobalConfigurationTest {
 
@@ -15,10 +23,56 @@ class GlobalConfigurationTest {
         properties.setProperty("s3-ftp.write-buffer-size", "100000000");
         properties.setProperty("s3-ftp.max-append-offset-size", "100000000");
 
-        GlobalConfiguration.init(properties);
+        Settings settings = new Settings(properties);
 
-        assertEquals(1000, GlobalConfiguration.maxListKeysLimit);
-        assertEquals(100000000, GlobalConfiguration.writeBufferSize);
-        assertEquals(100000000, GlobalConfiguration.maxAppendOffsetSize);
+        assertEquals(1000, settings.maxListKeysLimit);
+        assertEquals(100000000, settings.writeBufferSize);
+        assertEquals(100000000, settings.maxAppendOffsetSize);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testInitHashes() {
+        Properties properties = new Properties();
+        properties.setProperty("s3-ftp.upload-part-checksum", "crc32c");
+        properties.setProperty("s3-ftp.file-hashes", "SHA-256, MD5");
+        Settings settings = new Settings(properties);
+        assertEquals(S3FileHash.CRC32C, settings.uploadPartChecksum);
+        assertEquals(List.of(S3FileHash.SHA_256, S3FileHash.MD5), settings.fileHashes);
+
+        properties.setProperty("s3-ftp.upload-part-checksum", "MD5");
+        assertThrows(IllegalArgumentException.class, () -> new Settings(properties));
+
+        properties.setProperty("s3-ftp.upload-part-checksum", "");
+        properties.setProperty("s3-ftp.file-hashes", "SHA-1");
+        assertThrows(IllegalArgumentException.class, () -> new Settings(properties));
+        assertThrows(IllegalArgumentException.class, () -> settings.with("s3-ftp.file-hashes", "SHA-1"));
+    }
+
+    @Test
+    void testReload(@TempDir Path dir) throws IOException {
+        Path config = dir.resolve("config.properties");
+        Settings initial = GlobalConfiguration.settings();
+        try {
+            Files.writeString(config, "s3-ftp.upload-concurrency=8\ns3-ftp.file-hashes=MD5\n");
+            GlobalConfiguration.reload(config);
+            Settings reloaded = GlobalConfiguration.settings();
+            assertEquals(8, reloaded.uploadConcurrency);
+            assertEquals(List.of(S3FileHash.MD5), reloaded.fileHashes);
+            // 已取得的快照不受重新加载影响
+            assertEquals(List.of(), initial.fileHashes);
+
+            Files.writeString(config, "s3-ftp.upload-concurrency=0\n");
+            assertThrows(IllegalArgumentException.class, () -> GlobalConfiguration.reload(config));
+            assertSame(reloaded, GlobalConfiguration.settings());
+
+            Files.writeString(config, "s3-ftp.write-buffer-pool-size=2\n");
+            GlobalConfiguration.reload(config);
+            assertEquals(2, GlobalConfiguration.settings().writeBufferPoolSize);
+            assertEquals(initial.uploadConcurrency, GlobalConfiguration.settings().uploadConcurrency);
+            assertEquals(List.of(), GlobalConfiguration.settings().fileHashes);
+        } finally {
+            Files.writeString(config, "");
+            GlobalConfiguration.reload(config);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.s3.ftp.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsTest {
+
+    @Test
+    void testHistogram() {
+        Histogram histogram = new Histogram();
+        for (int i = 0; i < 98; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(3));
+        }
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(200));
+        histogram.record(TimeUnit.SECONDS.toNanos(120));
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(5, histogram.get50thPercentileMillis());
+        assertEquals(250, histogram.get99thPercentileMillis());
+        assertEquals(120_000, histogram.getMaxMillis());
+        assertEquals(99, histogram.cumulativeCounts()[Histogram.BUCKETS.length - 1]);
+    }
+
+    @Test
+    void testMeteredStreams() throws IOException {
+        Metrics metrics = Metrics.get();
+        int uploads = metrics.getUploadsInFlight();
+
+        OutputStream os = metrics.meterUpload(new ByteArrayOutputStream(), "meter", "store");
+        assertEquals(uploads + 1, metrics.getUploadsInFlight());
+        os.write(new byte[100]);
+        os.write(1);
+        os.close();
+        os.close();
+        assertEquals(uploads, metrics.getUploadsInFlight());
+        assertEquals(101L, metrics.getBytesUploaded().get("meter@store"));
+
+        try (InputStream is = metrics.meterDownload(new ByteArrayInputStream(new byte[64]), "meter", "store")) {
+            is.readAllBytes();
+        }
+        assertEquals(64L, metrics.getBytesDownloaded().get("meter@store"));
+    }
+
+    @Test
+    void testPrometheus() throws Exception {
+        Metrics metrics = Metrics.get();
+        metrics.command("RETR", TimeUnit.MILLISECONDS.toNanos(2), false);
+        metrics.command("RETR", TimeUnit.MILLISECONDS.toNanos(2), true);
+        metrics.s3Request("prom", "GetObject", TimeUnit.MILLISECONDS.toNanos(20), true);
+
+        StringWriter writer = new StringWriter();
+        metrics.writePrometheus(writer);
+        String text = writer.toString();
+
+        assertTrue(text.contains("s3ftp_command_duration_seconds_bucket{command=\"RETR\",le=\"0.0025\"}"));
+        assertTrue(text.contains("s3ftp_command_errors_total{command=\"RETR\"}"));
+        assertTrue(text.contains("s3ftp_s3_request_errors_total{store=\"prom\",operation=\"GetObject\"} 1"));
+        assertTrue(text.contains("# TYPE s3ftp_transfers_in_flight gauge"));
+        assertEquals(1L, metrics.getS3Errors().get("prom:GetObject"));
+
+        try (MetricsHttpServer server = new MetricsHttpServer("127.0.0.1", 0)) {
+            server.start();
+            HttpResponse<String> resp = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create("http://127.0.0.1:%d/metrics".formatted(server.port()))).build(),
+                    HttpResponse.BodyHandlers.ofString()
+            );
+
+            assertEquals(200, resp.statusCode());
+            assertTrue(resp.body().contains("s3ftp_s3_request_duration_seconds_count{store=\"prom\",operation=\"GetObject\"}"));
+        }
+    }
+}
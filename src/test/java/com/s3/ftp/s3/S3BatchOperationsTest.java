@@ -0,0 +1,134 @@
+package com.s3.ftp.s3;
+
+import com.s3.ftp.config.Settings;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CopyPartResult;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyResponse;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class S3BatchOperationsTest {
+
+    private static final String BUCKET = "test";
+
+    @Test
+    void testRunBoundedWaitsOnIteratorFailure() {
+        S3BatchOperations operations = new S3BatchOperations(
+                null, BUCKET, new S3MetadataCache(100, 60_000), Settings.DEFAULTS
+        );
+        AtomicInteger finished = new AtomicInteger();
+        Iterator<Integer> items = new Iterator<>() {
+
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Integer next() {
+                if (next == 3) {
+                    throw new IllegalStateException("list failed");
+                }
+                return next++;
+            }
+        };
+
+        assertThrows(IOException.class, () -> operations.runBounded(items, item -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finished.incrementAndGet();
+        }));
+        assertEquals(3, finished.get());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testDeleteObjectsPartialFailure() {
+        S3Client client = mock(S3Client.class);
+        when(client.deleteObjects(any(Consumer.class))).thenReturn(DeleteObjectsResponse.builder()
+                .errors(S3Error.builder().key("b.dat").code("AccessDenied").message("denied").build())
+                .build());
+        S3MetadataCache metadataCache = new S3MetadataCache(100, 60_000);
+        S3MetadataCache.S3Metadata file = S3MetadataCache.S3Metadata.file(10, Instant.now());
+        metadataCache.put(BUCKET, "a.dat", file);
+        metadataCache.put(BUCKET, "b.dat", file);
+
+        S3BatchOperations operations = new S3BatchOperations(client, BUCKET, metadataCache, Settings.DEFAULTS);
+        assertThrows(IllegalStateException.class, () -> operations.deleteObjects(List.of("a.dat", "b.dat")));
+        assertFalse(metadataCache.get(BUCKET, "a.dat").orElseThrow().exists());
+        assertEquals(file, metadataCache.get(BUCKET, "b.dat").orElseThrow());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCopyMultipart() {
+        S3Client client = mock(S3Client.class);
+        when(client.headObject(any(Consumer.class))).thenReturn(HeadObjectResponse.builder()
+                .contentType("text/plain")
+                .metadata(Map.of("owner", "test"))
+                .build());
+        when(client.createMultipartUpload(any(Consumer.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("1").build());
+        when(client.uploadPartCopy(any(Consumer.class))).thenAnswer(invocation -> {
+            UploadPartCopyRequest.Builder builder = UploadPartCopyRequest.builder();
+            invocation.<Consumer<UploadPartCopyRequest.Builder>>getArgument(0).accept(builder);
+            return UploadPartCopyResponse.builder()
+                    .copyPartResult(CopyPartResult.builder().eTag(String.valueOf(builder.build().partNumber())).build())
+                    .build();
+        });
+
+        S3BatchOperations operations = new S3BatchOperations(
+                client, BUCKET, new S3MetadataCache(100, 60_000), Settings.DEFAULTS
+        );
+        operations.copyObject("a.dat", "b.dat", 1024L * 1024 * 1024 * 6);
+
+        // 分片复制保留源对象的 Content-Type 与用户元数据
+        ArgumentCaptor<Consumer<CreateMultipartUploadRequest.Builder>> create = ArgumentCaptor.forClass(Consumer.class);
+        verify(client).createMultipartUpload(create.capture());
+        CreateMultipartUploadRequest.Builder createRequest = CreateMultipartUploadRequest.builder();
+        create.getValue().accept(createRequest);
+        assertEquals("text/plain", createRequest.build().contentType());
+        assertEquals(Map.of("owner", "test"), createRequest.build().metadata());
+
+        // 并发复制的分片按序号提交
+        verify(client, times(12)).uploadPartCopy(any(Consumer.class));
+        ArgumentCaptor<Consumer<CompleteMultipartUploadRequest.Builder>> complete = ArgumentCaptor.forClass(Consumer.class);
+        verify(client).completeMultipartUpload(complete.capture());
+        CompleteMultipartUploadRequest.Builder completeRequest = CompleteMultipartUploadRequest.builder();
+        complete.getValue().accept(completeRequest);
+        List<CompletedPart> parts = completeRequest.build().multipartUpload().parts();
+        assertEquals(12, parts.size());
+        for (int i = 0; i < parts.size(); i++) {
+            assertEquals(i + 1, parts.get(i).partNumber());
+            assertEquals(String.valueOf(i + 1), parts.get(i).eTag());
+        }
+    }
+}
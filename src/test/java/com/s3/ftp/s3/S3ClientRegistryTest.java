@@ -1,15 +1,23 @@
 package com.s3.ftp.s3;
 
 import com.robothy.s3.rest.LocalS3;
+import org.apache.commons.lang3.RandomUtils;
+import org.apache.ftpserver.ftplet.User;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.S3ClientBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
 import java.util.Properties;
+import java.util.stream.IntStream;
 
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
 
 class S3ClientRegistryTest {
 
@@ -37,12 +45,145 @@ class S3ClientRegistryTest {
         }
     }
 
+    @Test
+    void acquire() {
+        try (S3ClientRegistry registry = buildRegistry()) {
+            S3StoreClient first = registry.acquire("test").orElseThrow();
+            S3StoreClient second = registry.acquire("test").orElseThrow();
+
+            assertSame(first, second);
+            assertSame(first.client(), second.client());
+            assertEquals(2, first.references());
+
+            first.release();
+            second.release();
+            assertEquals(0, first.references());
+
+            first.client().listBuckets();
+            assertTrue(registry.acquire("fake").isEmpty());
+        }
+    }
+
+    @Test
+    void acquireConcurrently() {
+        try (S3ClientRegistry registry = buildRegistry()) {
+            List<S3StoreClient> acquired = IntStream.range(0, 16).parallel()
+                    .mapToObj(i -> registry.acquire("test").orElseThrow())
+                    .toList();
+
+            S3StoreClient first = acquired.get(0);
+            assertTrue(acquired.stream().allMatch(v -> v == first));
+            assertEquals(16, first.references());
+            acquired.forEach(S3StoreClient::release);
+            first.client().listBuckets();
+        }
+    }
+
+    @Test
+    void reload() {
+        Properties properties = buildProperties();
+        properties.put("s3.other.uri", "http://127.0.0.1:%s".formatted(localS3.getPort()));
+        properties.put("s3.other.access_key", "foo");
+        properties.put("s3.other.secret_key", "bar");
+
+        try (S3ClientRegistry registry = new S3ClientRegistry(properties)) {
+            S3StoreClient test = registry.acquire("test").orElseThrow();
+            S3StoreClient other = registry.acquire("other").orElseThrow();
+
+            Properties changed = (Properties) properties.clone();
+            changed.put("s3.test.max_connections", "10");
+            changed.remove("s3.other.uri");
+            changed.remove("s3.other.access_key");
+            changed.remove("s3.other.secret_key");
+            registry.reload(changed);
+
+            S3StoreClient reloaded = registry.acquire("test").orElseThrow();
+            assertNotSame(test, reloaded);
+            assertTrue(registry.acquire("other").isEmpty());
+
+            // 旧客户端在释放前仍可使用
+            test.client().listBuckets();
+            other.client().listBuckets();
+            test.release();
+            other.release();
+
+            registry.reload(changed);
+            S3StoreClient unchanged = registry.acquire("test").orElseThrow();
+            assertSame(reloaded, unchanged);
+            assertEquals(2, reloaded.references());
+
+            reloaded.release();
+            unchanged.release();
+        }
+    }
+
+    @Test
+    void prewarm() {
+        Properties properties = buildProperties();
+        properties.put("s3-ftp.port", "2121");
+        properties.put("ftpserver.user.test.homedirectory", "test:test");
+
+        try (S3ClientRegistry registry = new S3ClientRegistry(properties)) {
+            registry.prewarm().join();
+
+            S3StoreClient storeClient = registry.acquire("test").orElseThrow();
+            assertEquals(1, storeClient.references());
+            storeClient.client().listBuckets();
+            storeClient.release();
+
+            assertTrue(registry.acquire("port").isEmpty());
+            assertTrue(registry.acquire("user").isEmpty());
+        }
+    }
+
+    @Test
+    void acquireCrt() throws IOException {
+        Properties properties = buildProperties();
+        properties.put("s3.test.backend", "crt");
+        properties.put("s3.test.crt_part_size", String.valueOf(1024 * 1024 * 5));
+
+        try (S3ClientRegistry registry = new S3ClientRegistry(properties)) {
+            S3StoreClient storeClient = registry.acquire("test").orElseThrow();
+            assertTrue(storeClient.asyncClient().isPresent());
+            storeClient.client().createBucket(req -> req.bucket("crt"));
+
+            byte[] data = RandomUtils.nextBytes(1024 * 1024 * 12);
+            S3FtpFile file = new S3FtpFile(storeClient, "crt", "a.bin", mock(User.class));
+            try (OutputStream os = file.createOutputStream(0)) {
+                os.write(data);
+            }
+
+            try (InputStream is = new S3FtpFile(storeClient, "crt", "a.bin", mock(User.class)).createInputStream(0)) {
+                assertArrayEquals(data, is.readAllBytes());
+            }
+
+            try (InputStream is = file.createInputStream(1024)) {
+                assertEquals(data.length - 1024, is.readAllBytes().length);
+            }
+
+            storeClient.release();
+        }
+    }
+
+    @Test
+    void acquireUnknownBackend() {
+        Properties properties = buildProperties();
+        properties.put("s3.test.backend", "fake");
+
+        try (S3ClientRegistry registry = new S3ClientRegistry(properties)) {
+            assertThrows(IllegalArgumentException.class, () -> registry.acquire("test"));
+        }
+    }
+
     private S3ClientRegistry buildRegistry() {
+        return new S3ClientRegistry(buildProperties());
+    }
+
+    private Properties buildProperties() {
         Properties properties = new Properties();
         properties.put("s3.test.uri", "http://127.0.0.1:%s".formatted(localS3.getPort()));
         properties.put("s3.test.access_key", "foo");
         properties.put("s3.test.secret_key", "bar");
-
-        return new S3ClientRegistry(properties);
+        return properties;
     }
 }
\ No newline at end of file
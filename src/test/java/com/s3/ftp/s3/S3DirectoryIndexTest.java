@@ -0,0 +1,114 @@
+package com.s3.ftp.s3;
+
+import com.s3.ftp.jupiter.LocalS3;
+import com.s3.ftp.s3.S3DirectoryIndex.Child;
+import com.s3.ftp.s3.S3MetadataCache.S3Metadata;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("JUnitMalformedDeclaration")
+@LocalS3
+class S3DirectoryIndexTest {
+
+    private static final String BUCKET = "test";
+
+    @BeforeAll
+    static void beforeAll(S3Client client) {
+        client.createBucket(req -> req.bucket(BUCKET));
+        client.putObject(req -> req.bucket(BUCKET).key("0.txt"), RequestBody.fromString("0"));
+        client.putObject(req -> req.bucket(BUCKET).key("a/1.txt"), RequestBody.fromString("1"));
+        client.putObject(req -> req.bucket(BUCKET).key("a/b/2.txt"), RequestBody.fromString("22"));
+        client.putObject(req -> req.bucket(BUCKET).key("c/"), RequestBody.empty());
+    }
+
+    @Test
+    void testGet(S3Client client) throws InterruptedException {
+        S3DirectoryIndex index = buildIndex(client);
+
+        assertEquals(4, index.size());
+        assertEquals(S3Metadata.DIRECTORY, index.get("/").orElseThrow());
+        assertEquals(S3Metadata.DIRECTORY, index.get("a/").orElseThrow());
+        assertEquals(S3Metadata.DIRECTORY, index.get("a").orElseThrow());
+        assertEquals(S3Metadata.DIRECTORY, index.get("c/").orElseThrow());
+        assertEquals(2L, index.get("a/b/2.txt").orElseThrow().size());
+        assertEquals(S3Metadata.ABSENT, index.get("a/b/3.txt").orElseThrow());
+        assertEquals(S3Metadata.ABSENT, index.get("0.txt/").orElseThrow());
+        assertEquals(S3Metadata.ABSENT, index.get("d/").orElseThrow());
+    }
+
+    @Test
+    void testList(S3Client client) throws InterruptedException {
+        S3DirectoryIndex index = buildIndex(client);
+
+        assertEquals(List.of("a/", "c/", "0.txt"), keys(index.list("/").orElseThrow()));
+        assertEquals(List.of("a/b/", "a/1.txt"), keys(index.list("a/").orElseThrow()));
+        assertTrue(index.list("c/").orElseThrow().isEmpty());
+        assertTrue(index.list("d/").orElseThrow().isEmpty());
+    }
+
+    @Test
+    void testUpdate(S3Client client) throws InterruptedException {
+        S3DirectoryIndex index = buildIndex(client);
+
+        index.written("d/e/3.txt");
+        assertTrue(index.get("d/e/3.txt").isEmpty());
+        assertEquals(S3Metadata.DIRECTORY, index.get("d/e/").orElseThrow());
+
+        index.put("d/e/3.txt", S3Metadata.file(3L, Instant.now()));
+        assertEquals(3L, index.get("d/e/3.txt").orElseThrow().size());
+
+        index.deleted("d/e/3.txt");
+        assertEquals(S3Metadata.ABSENT, index.get("d/").orElseThrow());
+
+        index.put("f/", S3Metadata.DIRECTORY);
+        assertEquals(S3Metadata.DIRECTORY, index.get("f/").orElseThrow());
+        index.deleted("f/");
+        assertEquals(S3Metadata.ABSENT, index.get("f/").orElseThrow());
+
+        index.deleted("c/");
+        assertEquals(List.of("a/", "0.txt"), keys(index.list("/").orElseThrow()));
+    }
+
+    @Test
+    void testMetadataCache(S3Client client) throws InterruptedException {
+        S3StoreClient storeClient = S3StoreClient.standalone(client);
+        S3DirectoryIndex index = storeClient.directoryIndex(BUCKET);
+        awaitReady(index);
+
+        S3MetadataCache metadataCache = storeClient.metadataCache();
+        assertEquals(1L, metadataCache.get(BUCKET, "0.txt").orElseThrow().size());
+        assertEquals(S3Metadata.ABSENT, metadataCache.get(BUCKET, "x.txt").orElseThrow());
+
+        metadataCache.deleted(BUCKET, "a/1.txt");
+        assertEquals(List.of("a/b/"), keys(metadataCache.list(BUCKET, "a/").orElseThrow()));
+        assertTrue(metadataCache.list("other", "a/").isEmpty());
+    }
+
+    private static S3DirectoryIndex buildIndex(S3Client client) throws InterruptedException {
+        S3DirectoryIndex index = new S3DirectoryIndex(client, BUCKET, 0);
+        assertTrue(index.get("0.txt").isEmpty());
+        assertTrue(index.list("/").isEmpty());
+
+        index.refresh();
+        awaitReady(index);
+        return index;
+    }
+
+    private static void awaitReady(S3DirectoryIndex index) throws InterruptedException {
+        for (int i = 0; i < 100 && !index.ready(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(index.ready());
+    }
+
+    private static List<String> keys(List<Child> children) {
+        return children.stream().map(Child::key).toList();
+    }
+}
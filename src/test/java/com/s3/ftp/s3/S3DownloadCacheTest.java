@@ -0,0 +1,161 @@
+package com.s3.ftp.s3;
+
+import com.s3.ftp.jupiter.LocalS3;
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("JUnitMalformedDeclaration")
+@LocalS3
+class S3DownloadCacheTest {
+
+    private static final String BUCKET = "test";
+
+    @BeforeAll
+    static void beforeAll(S3Client client) {
+        client.createBucket(req -> req.bucket(BUCKET));
+    }
+
+    @Test
+    void testFillAndHit(S3Client client) throws IOException {
+        byte[] data = RandomUtils.nextBytes(1024 * 100);
+        client.putObject(req -> req.bucket(BUCKET).key("hit.dat"), RequestBody.fromBytes(data));
+        Path directory = Files.createTempDirectory("s3-ftp-cache");
+        S3DownloadCache cache = new S3DownloadCache(directory, 1024 * 1024, 1024 * 1024, 60_000);
+
+        assertTrue(cache.open(client, "store", BUCKET, "hit.dat", 0).isEmpty());
+        try (InputStream is = cache.fill(client, "store", BUCKET, "hit.dat")) {
+            assertArrayEquals(data, is.readAllBytes());
+        }
+        assertEquals(1, cache.entries());
+        assertEquals(data.length, cache.size());
+
+        try (InputStream is = cache.open(client, "store", BUCKET, "hit.dat", 0).orElseThrow()) {
+            assertArrayEquals(data, is.readAllBytes());
+        }
+        try (InputStream is = cache.open(client, "store", BUCKET, "hit.dat", 1024).orElseThrow()) {
+            assertArrayEquals(Arrays.copyOfRange(data, 1024, data.length), is.readAllBytes());
+        }
+        assertTrue(cache.open(client, "other", BUCKET, "hit.dat", 0).isEmpty());
+
+        cache.invalidate("store", BUCKET, "hit.dat");
+        assertEquals(0, cache.entries());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testInvalidateDuringFill(S3Client client) throws IOException {
+        byte[] data = RandomUtils.nextBytes(1024 * 100);
+        client.putObject(req -> req.bucket(BUCKET).key("stale.dat"), RequestBody.fromBytes(data));
+        Path directory = Files.createTempDirectory("s3-ftp-cache");
+        S3DownloadCache cache = new S3DownloadCache(directory, 1024 * 1024, 1024 * 1024, 60_000);
+
+        // 下载开始后对象被覆盖，读取完成时不再加入缓存
+        try (InputStream is = cache.fill(client, "store", BUCKET, "stale.dat")) {
+            client.putObject(req -> req.bucket(BUCKET).key("stale.dat"), RequestBody.fromBytes(new byte[10]));
+            cache.invalidate("store", BUCKET, "stale.dat");
+            is.readAllBytes();
+        }
+        assertEquals(0, cache.entries());
+
+        try (InputStream is = cache.fill(client, "store", BUCKET, "stale.dat")) {
+            cache.invalidatePrefix("store", BUCKET, "");
+            is.readAllBytes();
+        }
+        assertEquals(0, cache.entries());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testInvalidatePrefix(S3Client client) throws IOException {
+        byte[] data = RandomUtils.nextBytes(1024);
+        Path directory = Files.createTempDirectory("s3-ftp-cache");
+        S3DownloadCache cache = new S3DownloadCache(directory, 1024 * 1024, 1024 * 1024, 60_000);
+        for (String key : new String[]{"dir/a.dat", "dir/sub/b.dat", "dir2/c.dat"}) {
+            client.putObject(req -> req.bucket(BUCKET).key(key), RequestBody.fromBytes(data));
+            try (InputStream is = cache.fill(client, "store", BUCKET, key)) {
+                is.readAllBytes();
+            }
+        }
+        assertEquals(3, cache.entries());
+
+        cache.invalidatePrefix("store", BUCKET, "dir/");
+        assertEquals(1, cache.entries());
+        assertEquals(data.length, cache.size());
+        assertTrue(cache.open(client, "store", BUCKET, "dir/a.dat", 0).isEmpty());
+        try (InputStream is = cache.open(client, "store", BUCKET, "dir2/c.dat", 0).orElseThrow()) {
+            assertArrayEquals(data, is.readAllBytes());
+        }
+    }
+
+    @Test
+    void testPartialReadNotCached(S3Client client) throws IOException {
+        client.putObject(req -> req.bucket(BUCKET).key("partial.dat"), RequestBody.fromBytes(new byte[1024 * 10]));
+        Path directory = Files.createTempDirectory("s3-ftp-cache");
+        S3DownloadCache cache = new S3DownloadCache(directory, 1024 * 1024, 1024 * 1024, 60_000);
+
+        try (InputStream is = cache.fill(client, "store", BUCKET, "partial.dat")) {
+            assertEquals(100, is.readNBytes(100).length);
+        }
+
+        assertEquals(0, cache.entries());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testValidateETag(S3Client client) throws IOException {
+        client.putObject(req -> req.bucket(BUCKET).key("changed.dat"), RequestBody.fromString("1"));
+        S3DownloadCache cache = new S3DownloadCache(Files.createTempDirectory("s3-ftp-cache"), 1024, 1024, 0);
+
+        try (InputStream is = cache.fill(client, "store", BUCKET, "changed.dat")) {
+            is.readAllBytes();
+        }
+        Optional<InputStream> unchanged = cache.open(client, "store", BUCKET, "changed.dat", 0);
+        assertTrue(unchanged.isPresent());
+        unchanged.get().close();
+
+        client.putObject(req -> req.bucket(BUCKET).key("changed.dat"), RequestBody.fromString("2"));
+        assertTrue(cache.open(client, "store", BUCKET, "changed.dat", 0).isEmpty());
+        assertEquals(0, cache.entries());
+    }
+
+    @Test
+    void testEviction(S3Client client) throws IOException {
+        for (String key : new String[]{"a", "b", "c"}) {
+            client.putObject(req -> req.bucket(BUCKET).key(key), RequestBody.fromBytes(new byte[400]));
+        }
+        S3DownloadCache cache = new S3DownloadCache(Files.createTempDirectory("s3-ftp-cache"), 1000, 500, 60_000);
+
+        for (String key : new String[]{"a", "b"}) {
+            try (InputStream is = cache.fill(client, "store", BUCKET, key)) {
+                is.readAllBytes();
+            }
+        }
+        cache.open(client, "store", BUCKET, "a", 0).orElseThrow().close();
+        try (InputStream is = cache.fill(client, "store", BUCKET, "c")) {
+            is.readAllBytes();
+        }
+
+        assertEquals(2, cache.entries());
+        assertEquals(800, cache.size());
+        assertTrue(cache.open(client, "store", BUCKET, "b", 0).isEmpty());
+        cache.open(client, "store", BUCKET, "a", 0).orElseThrow().close();
+        assertFalse(cache.cacheable(501));
+    }
+}
@@ -0,0 +1,69 @@
+package com.s3.ftp.s3;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.s3.model.Tag;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class S3FileHasherTest {
+
+    private static final byte[] DATA = "abc".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    void testValues() {
+        S3FileHasher hasher = new S3FileHasher(EnumSet.allOf(S3FileHash.class));
+        hasher.update(DATA, 0, 1);
+        hasher.update(DATA, 1, 2);
+
+        Map<S3FileHash, String> values = hasher.values();
+        assertEquals("900150983cd24fb0d6963f7d28e17f72", values.get(S3FileHash.MD5));
+        assertEquals("352441c2", values.get(S3FileHash.CRC32));
+        assertEquals("364b3fb7", values.get(S3FileHash.CRC32C));
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", values.get(S3FileHash.SHA_256));
+        assertSame(values, hasher.values());
+    }
+
+    @Test
+    void testTagging() {
+        S3FileHasher hasher = new S3FileHasher(List.of(S3FileHash.MD5, S3FileHash.SHA_256));
+        hasher.update(DATA, 0, DATA.length);
+
+        List<Tag> tags = new ArrayList<>(hasher.tagging().tagSet());
+        assertEquals(2, tags.size());
+        tags.add(Tag.builder().key("owner").value("ops").build());
+        assertEquals(hasher.values(), S3FileHasher.fromTags(tags));
+
+        assertEquals(S3FileHash.SHA_256, S3FileHash.parse("sha-256").orElseThrow());
+        assertTrue(S3FileHash.parse("SHA-1").isEmpty());
+    }
+
+    @Test
+    void testVerifyOnDownload() throws IOException {
+        Map<S3FileHash, String> stored = Map.of(S3FileHash.MD5, "900150983cd24fb0d6963f7d28e17f72");
+        try (InputStream is = new S3HashingInputStream(new ByteArrayInputStream(DATA), "abc.txt",
+                new S3FileHasher(List.of(S3FileHash.MD5, S3FileHash.CRC32)), () -> stored)) {
+            assertArrayEquals(DATA, is.readAllBytes());
+        }
+
+        try (InputStream is = new S3HashingInputStream(new ByteArrayInputStream(DATA), "abc.txt",
+                new S3FileHasher(List.of(S3FileHash.CRC32)), () -> Map.of(S3FileHash.CRC32, "00000000"))) {
+            assertThrows(IOException.class, is::readAllBytes);
+        }
+
+        // 跳过部分数据后不再校验
+        try (InputStream is = new S3HashingInputStream(new ByteArrayInputStream(DATA), "abc.txt",
+                new S3FileHasher(List.of(S3FileHash.CRC32)), () -> Map.of(S3FileHash.CRC32, "00000000"))) {
+            assertEquals(1, is.skip(1));
+            assertEquals(2, is.readAllBytes().length);
+        }
+    }
+}
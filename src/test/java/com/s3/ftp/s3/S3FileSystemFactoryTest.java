@@ -8,13 +8,8 @@ import org.apache.ftpserver.ftplet.User;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
-import org.mockito.Mockito;
-import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
-import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
-import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.s3.S3Client;
 
-import java.net.URI;
+import java.util.Properties;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.mock;
@@ -39,27 +34,28 @@ class S3FileSystemFactoryTest {
         User user = mock(User.class);
         when(user.getHomeDirectory()).thenReturn("test:test");
 
-        S3ClientRegistry registry = mock(S3ClientRegistry.class);
-        when(registry.byKey(Mockito.eq("test"))).thenReturn(S3Client.builder()
-                .endpointOverride(URI.create("http://127.0.0.1:%s".formatted(localS3.getPort())))
-                .forcePathStyle(true)
-                .region(Region.US_EAST_1)
-                .credentialsProvider(StaticCredentialsProvider.create(
-                        AwsBasicCredentials.create("foo", "bar"))
-                ));
-
-
-        FileSystemFactory factory = new S3FileSystemFactory(registry);
-        FileSystemView fileSystemView = factory.createFileSystemView(user);
-
-        try {
-            assertNotNull(fileSystemView);
-        } finally {
-            fileSystemView.dispose();
+        Properties properties = new Properties();
+        properties.put("s3.test.uri", "http://127.0.0.1:%s".formatted(localS3.getPort()));
+        properties.put("s3.test.access_key", "foo");
+        properties.put("s3.test.secret_key", "bar");
+
+        try (S3ClientRegistry registry = new S3ClientRegistry(properties)) {
+            FileSystemFactory factory = new S3FileSystemFactory(registry);
+            FileSystemView first = factory.createFileSystemView(user);
+            FileSystemView second = factory.createFileSystemView(user);
+
+            try {
+                assertNotNull(first);
+                assertNotNull(second);
+                assertEquals(2, registry.acquire("test").orElseThrow().references() - 1);
+            } finally {
+                first.dispose();
+                second.dispose();
+            }
+
+            when(user.getHomeDirectory()).thenReturn("fake:test");
+            assertThrows(FtpException.class, () -> factory.createFileSystemView(user));
         }
-
-        when(user.getHomeDirectory()).thenReturn("fake:test");
-        assertThrows(FtpException.class, () -> factory.createFileSystemView(user));
     }
 
-}
\ No newline at end of file
+}
@@ -87,6 +87,16 @@ class S3FileSystemViewTest {
 
         systemView.changeWorkingDirectory("b");
         assertEquals("a/b/", systemView.getWorkingDirectory().getAbsolutePath());
+
+        systemView = new S3FileSystemView(client, BUCKET, "a", user);
+        assertEquals("a/", systemView.getWorkingDirectory().getAbsolutePath());
+
+        assertTrue(systemView.changeWorkingDirectory("/b"));
+        assertEquals("a/b/", systemView.getWorkingDirectory().getAbsolutePath());
+        assertEquals("a/b/1", systemView.getFile("1").getAbsolutePath());
+
+        assertTrue(systemView.changeWorkingDirectory(".."));
+        assertEquals("a/", systemView.getWorkingDirectory().getAbsolutePath());
     }
 
     @Test
@@ -1,5 +1,7 @@
 package com.s3.ftp.s3;
 
+import com.s3.ftp.config.GlobalConfiguration;
+import com.s3.ftp.config.Settings;
 import com.s3.ftp.jupiter.LocalS3;
 import org.apache.commons.lang3.RandomUtils;
 import org.apache.ftpserver.ftplet.AuthorizationRequest;
@@ -8,18 +10,23 @@ import org.apache.ftpserver.ftplet.User;
 import org.apache.ftpserver.usermanager.impl.WriteRequest;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mockito;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.core.sync.ResponseTransformer;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -75,6 +82,29 @@ class S3FtpFileTest {
 
         dir = new S3FtpFile(client, BUCKET, "a/b/", user);
         assertEquals("b", dir.getName());
+
+        file = new S3FtpFile(client, BUCKET, "a/1.txt", user);
+        assertEquals(1, file.getSize());
+        assertTrue(file.getLastModified() > 0);
+        assertFalse(new S3FtpFile(client, BUCKET, "a/1", user).doesExist());
+        assertTrue(new S3FtpFile(client, BUCKET, "a/b", user).doesExist());
+    }
+
+    @Test
+    void testMetadataCache(S3Client client) {
+        User user = mock(User.class);
+        when(user.getName()).thenReturn("user");
+        when(user.authorize(any(AuthorizationRequest.class))).thenAnswer(iom -> iom.getArgument(0));
+
+        S3StoreClient storeClient = S3StoreClient.standalone(client);
+        client.putObject(req -> req.bucket(BUCKET).key("cache/1.txt"), RequestBody.fromString("1"));
+
+        assertTrue(new S3FtpFile(storeClient, BUCKET, "cache/1.txt", user).doesExist());
+        client.deleteObject(req -> req.bucket(BUCKET).key("cache/1.txt"));
+        assertTrue(new S3FtpFile(storeClient, BUCKET, "cache/1.txt", user).doesExist());
+
+        assertTrue(new S3FtpFile(storeClient, BUCKET, "cache/1.txt", user).delete());
+        assertFalse(new S3FtpFile(storeClient, BUCKET, "cache/1.txt", user).doesExist());
     }
 
     @Test
@@ -179,6 +209,52 @@ class S3FtpFileTest {
         assertFalse(fake.move(dst));
     }
 
+    @Test
+    void testMoveDirectory(S3Client client) {
+        User user = mock(User.class);
+        when(user.getName()).thenReturn("user");
+        when(user.authorize(any(AuthorizationRequest.class))).thenAnswer(iom -> iom.getArgument(0));
+
+        for (int i = 0; i < 30; i++) {
+            String key = "tree/%d/%d.txt".formatted(i % 3, i);
+            client.putObject(req -> req.bucket(BUCKET).key(key), RequestBody.fromString(key));
+        }
+
+        S3FtpFile src = new S3FtpFile(client, BUCKET, "tree", user);
+        assertTrue(src.move(new S3FtpFile(client, BUCKET, "moved", user)));
+        assertEquals(0, client.listObjectsV2(req -> req.bucket(BUCKET).prefix("tree/")).keyCount());
+        assertEquals(30, client.listObjectsV2(req -> req.bucket(BUCKET).prefix("moved/")).keyCount());
+        assertEquals("tree/1/4.txt", client.getObject(req -> req.bucket(BUCKET).key("moved/1/4.txt"),
+                ResponseTransformer.toBytes()).asUtf8String());
+
+        S3FtpFile moved = new S3FtpFile(client, BUCKET, "moved/", user);
+        assertFalse(moved.move(new S3FtpFile(client, BUCKET, "moved/inner", user)));
+    }
+
+    @Test
+    void testRecursiveDelete(S3Client client) {
+        User user = mock(User.class);
+        when(user.getName()).thenReturn("user");
+        when(user.authorize(any(AuthorizationRequest.class))).thenAnswer(iom -> iom.getArgument(0));
+
+        for (int i = 0; i < 30; i++) {
+            String key = "purge/%d/%d.txt".formatted(i % 3, i);
+            client.putObject(req -> req.bucket(BUCKET).key(key), RequestBody.fromString(key));
+        }
+
+        S3FtpFile dir = new S3FtpFile(client, BUCKET, "purge/", user);
+        assertFalse(dir.delete());
+
+        Settings settings = GlobalConfiguration.settings();
+        GlobalConfiguration.publish(settings.with("s3-ftp.recursive-delete-enabled", "true"));
+        try {
+            assertTrue(new S3FtpFile(client, BUCKET, "purge/", user).delete());
+            assertEquals(0, client.listObjectsV2(req -> req.bucket(BUCKET).prefix("purge/")).keyCount());
+        } finally {
+            GlobalConfiguration.publish(settings);
+        }
+    }
+
     @Test
     void testListFiles(S3Client client) {
         User user = mock(User.class);
@@ -198,6 +274,53 @@ class S3FtpFileTest {
         assertNull(new S3FtpFile(client, BUCKET, "a/1.txt", user).listFiles());
     }
 
+    @Test
+    void testListFilesPaginated(S3Client client) {
+        User user = mock(User.class);
+        when(user.getName()).thenReturn("user");
+
+        for (int i = 0; i < 25; i++) {
+            String key = "page/%02d.txt".formatted(i);
+            client.putObject(req -> req.bucket(BUCKET).key(key), RequestBody.fromString(key));
+        }
+        client.putObject(req -> req.bucket(BUCKET).key("page/sub/0.txt"), RequestBody.fromString("0"));
+
+        Settings settings = GlobalConfiguration.settings();
+        GlobalConfiguration.publish(settings.with("s3-ftp.max-list-keys-limit", "10"));
+        try {
+            List<? extends FtpFile> files = new S3FtpFile(client, BUCKET, "page/", user).listFiles();
+            assertNotNull(files);
+            assertEquals(26, files.size());
+            assertEquals(1, files.stream().filter(FtpFile::isDirectory).count());
+        } finally {
+            GlobalConfiguration.publish(settings);
+        }
+    }
+
+    @Test
+    void testResolveMetadata(S3Client client) {
+        User user = mock(User.class);
+        when(user.getName()).thenReturn("user");
+
+        client.putObject(req -> req.bucket(BUCKET).key("meta/a!b"), RequestBody.fromString("ab"));
+        client.putObject(req -> req.bucket(BUCKET).key("meta/a/c.txt"), RequestBody.fromString("c"));
+
+        S3FtpFile file = new S3FtpFile(client, BUCKET, "meta/a!b", user);
+        assertEquals(2, file.getSize());
+        assertTrue(file.getLastModified() > 0);
+
+        // 前缀下排序在前的其他对象不影响目录判断
+        assertTrue(new S3FtpFile(client, BUCKET, "meta/a", user).doesExist());
+        assertFalse(new S3FtpFile(client, BUCKET, "meta/a!", user).doesExist());
+
+        S3Client spy = Mockito.spy(client);
+        List<? extends FtpFile> files = new S3FtpFile(spy, BUCKET, "meta/", user).listFiles();
+        assertNotNull(files);
+        assertEquals(List.of(0L, 2L), files.stream().map(FtpFile::getSize).toList());
+        assertTrue(files.stream().allMatch(v -> v.getLastModified() > 0 || v.isDirectory()));
+        Mockito.verify(spy, Mockito.never()).headObject(any(HeadObjectRequest.class));
+    }
+
     @Test
     void testCreateInputStream(S3Client client) throws IOException {
         User user = mock(User.class);
@@ -241,4 +364,28 @@ class S3FtpFileTest {
                 .asByteArray();
         assertArrayEquals(small, result);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testResumableSize(S3Client client, @TempDir Path dir) throws IOException {
+        User user = mock(User.class);
+        Settings settings = GlobalConfiguration.settings()
+                .with("s3-ftp.upload-journal-enabled", "true")
+                .with("s3-ftp.upload-journal-dir", dir.toString());
+        S3UploadJournal.get(settings).entry(S3StoreClient.standalone(client).store(), BUCKET, "resumable.dat")
+                .begin("1", Map.of(1, new S3UploadJournal.Part(10, "\"e1\"")));
+
+        assertEquals(Optional.of(10L), new S3FtpFile(
+                S3StoreClient.standalone(client), settings, BUCKET, "resumable.dat", null, user
+        ).resumableSize());
+
+        // 已有完整的对象时不以保留的分片上传遮盖对象大小，每次使用新的客户端以避开元数据缓存
+        client.putObject(req -> req.bucket(BUCKET).key("resumable.dat"), RequestBody.fromString("complete"));
+        try {
+            assertTrue(new S3FtpFile(
+                    S3StoreClient.standalone(client), settings, BUCKET, "resumable.dat", null, user
+            ).resumableSize().isEmpty());
+        } finally {
+            client.deleteObject(req -> req.bucket(BUCKET).key("resumable.dat"));
+        }
+    }
+}
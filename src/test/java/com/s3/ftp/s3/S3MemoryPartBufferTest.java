@@ -0,0 +1,38 @@
+package com.s3.ftp.s3;
+
+import com.s3.ftp.util.BufferPool;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class S3MemoryPartBufferTest {
+
+    @Test
+    void testReserve() throws IOException {
+        BufferPool pool = new BufferPool(16, 4, false, 50);
+
+        S3MemoryPartBuffer first = new S3MemoryPartBuffer(pool, 48);
+        assertEquals(3, pool.getInUse());
+
+        // 空闲的写缓存不足时使用更小的分片，不等待其他分片归还
+        S3MemoryPartBuffer second = new S3MemoryPartBuffer(pool, 48);
+        assertEquals(4, pool.getInUse());
+        assertEquals(16, second.write(new byte[48], 0, 48));
+        assertTrue(second.isFull());
+        assertEquals(0, second.write(new byte[1], 0, 1));
+
+        // 封存时归还未写入的写缓存
+        assertEquals(16, first.write(new byte[20], 0, 20));
+        assertEquals(4, first.write(new byte[20], 16, 4));
+        assertEquals(2, first.buffers());
+        first.seal();
+        assertEquals(3, pool.getInUse());
+        assertEquals(20, first.size());
+
+        first.close();
+        second.close();
+        assertEquals(0, pool.getInUse());
+    }
+}
@@ -0,0 +1,55 @@
+package com.s3.ftp.s3;
+
+import com.s3.ftp.s3.S3MetadataCache.S3Metadata;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class S3MetadataCacheTest {
+
+    @Test
+    void testEviction() {
+        S3MetadataCache cache = new S3MetadataCache(2, 60_000);
+        cache.put("test", "a", S3Metadata.ABSENT);
+        cache.put("test", "b", S3Metadata.ABSENT);
+        cache.get("test", "a");
+        cache.put("test", "c", S3Metadata.ABSENT);
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.get("test", "a").isPresent());
+        assertTrue(cache.get("test", "b").isEmpty());
+        assertTrue(cache.get("other", "a").isEmpty());
+    }
+
+    @Test
+    void testExpire() throws InterruptedException {
+        S3MetadataCache cache = new S3MetadataCache(10, 10);
+        cache.put("test", "a", S3Metadata.ABSENT);
+        Thread.sleep(20);
+
+        assertTrue(cache.get("test", "a").isEmpty());
+
+        cache = new S3MetadataCache(0, 60_000);
+        cache.put("test", "a", S3Metadata.ABSENT);
+        assertTrue(cache.get("test", "a").isEmpty());
+    }
+
+    @Test
+    void testWrittenAndDeleted() {
+        S3MetadataCache cache = new S3MetadataCache(10, 60_000);
+        cache.put("test", "a/b/1.txt", S3Metadata.file(1, Instant.now()));
+        cache.put("test", "a/", S3Metadata.ABSENT);
+
+        cache.written("test", "a/b/1.txt");
+        assertTrue(cache.get("test", "a/b/1.txt").isEmpty());
+        assertTrue(cache.get("test", "a/").orElseThrow().exists());
+        assertTrue(cache.get("test", "a/b/").orElseThrow().exists());
+
+        cache.deleted("test", "a/b/1.txt");
+        assertFalse(cache.get("test", "a/b/1.txt").orElseThrow().exists());
+        assertTrue(cache.get("test", "a/").isEmpty());
+        assertTrue(cache.get("test", "a/b/").isEmpty());
+    }
+}
@@ -1,15 +1,28 @@
 package com.s3.ftp.s3;
 
 import com.robothy.s3.rest.bootstrap.LocalS3Mode;
+import com.s3.ftp.config.GlobalConfiguration;
+import com.s3.ftp.config.Settings;
 import com.s3.ftp.jupiter.LocalS3;
 import org.apache.commons.io.file.PathUtils;
 import org.apache.commons.lang3.RandomUtils;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.core.sync.ResponseTransformer;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.ChecksumAlgorithm;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CopyPartResult;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectTaggingRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -17,8 +30,16 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
 
 @SuppressWarnings("JUnitMalformedDeclaration")
 @LocalS3(mode = LocalS3Mode.PERSISTENCE, dataPath = "./target/s3")
@@ -102,13 +123,34 @@ class S3OutputStreamTest {
         client.deleteObject(req -> req.bucket(BUCKET).key("part.dat"));
         assertArrayEquals(src, result);
 
-        assertThrows(IOException.class, () -> new S3OutputStream(client, BUCKET, "fake.dat", 1024 * 1024 * 500));
-
         try (S3OutputStream os = new S3OutputStream(client, BUCKET, "fake.dat", 1024 * 1024)) {
             assertThrows(IOException.class, () -> os.write(new byte[]{1, 2, 3}));
         }
     }
 
+    @Test
+    void testCopyAppendWrite(S3Client client) throws IOException {
+        int offset = 1024 * 1024 * 6;
+        byte[] src = RandomUtils.nextBytes(offset + 1024 * 1024);
+        byte[] firstRange = Arrays.copyOfRange(src, 0, offset);
+        byte[] secondRange = Arrays.copyOfRange(src, offset, src.length);
+        byte[] existing = Arrays.copyOf(firstRange, offset + 1024);
+        client.putObject(req -> req.bucket(BUCKET).key("copy.dat"), RequestBody.fromBytes(existing));
+
+        try (S3OutputStream os = new S3OutputStream(client, BUCKET, "copy.dat", offset)) {
+            os.write(secondRange);
+        }
+
+        byte[] result = client.getObject(req -> req.bucket(BUCKET).key("copy.dat"), ResponseTransformer.toBytes())
+                .asByteArray();
+        client.deleteObject(req -> req.bucket(BUCKET).key("copy.dat"));
+        assertArrayEquals(src, result);
+
+        S3OutputStream os = new S3OutputStream(client, BUCKET, "fake.dat", offset);
+        os.write(secondRange);
+        assertThrows(IOException.class, os::close);
+    }
+
     @Test
     void testFlush(S3Client client) throws IOException {
         byte[] src = RandomUtils.nextBytes(1024 * 1024 * 10);
@@ -142,4 +184,203 @@ class S3OutputStreamTest {
         fake.close();
         fake.close();
     }
-}
\ No newline at end of file
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPartFailure() throws IOException {
+        S3Client client = mock(S3Client.class);
+        when(client.createMultipartUpload(any(Consumer.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("1").build());
+        when(client.uploadPart(any(Consumer.class), any(RequestBody.class)))
+                .thenThrow(S3Exception.builder().message("failed").build());
+
+        byte[] src = RandomUtils.nextBytes(1024 * 1024 * 15);
+        S3OutputStream os = new S3OutputStream(client, BUCKET, "failure.dat", 0);
+        os.write(src);
+
+        assertThrows(IOException.class, os::close);
+        verify(client).abortMultipartUpload(any(Consumer.class));
+        verify(client, never()).completeMultipartUpload(any(Consumer.class));
+    }
+
+    @Test
+    void testSpoolWrite(S3Client client) throws IOException {
+        Path spoolDir = Files.createTempDirectory("s3-ftp-spool");
+        Files.createFile(spoolDir.resolve("s3-ftp-stale.part"));
+        Settings settings = GlobalConfiguration.settings()
+                .with("s3-ftp.upload-spool-enabled", "true")
+                .with("s3-ftp.upload-spool-dir", spoolDir.toString());
+
+        byte[] src = RandomUtils.nextBytes(1024 * 1024 * 25);
+        try (S3OutputStream os = new S3OutputStream(client, settings, BUCKET, "spool.dat", 0, () -> {
+        }, null)) {
+            os.write(src);
+        }
+
+        try (InputStream is = client.getObject(req -> req.bucket(BUCKET).key("spool.dat"))) {
+            assertArrayEquals(src, is.readAllBytes());
+        } finally {
+            client.deleteObject(req -> req.bucket(BUCKET).key("spool.dat"));
+        }
+
+        try (Stream<Path> files = Files.list(spoolDir)) {
+            assertEquals(0, files.count());
+        }
+        assertEquals(0, S3UploadSpool.get().reserved());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPartRetry() throws IOException {
+        S3Client client = mock(S3Client.class);
+        when(client.createMultipartUpload(any(Consumer.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("1").build());
+        when(client.uploadPart(any(Consumer.class), any(RequestBody.class)))
+                .thenThrow(S3Exception.builder().statusCode(503).message("slow down").build())
+                .thenReturn(UploadPartResponse.builder().eTag("1").build());
+
+        byte[] src = RandomUtils.nextBytes(1024 * 1024 * 15);
+        try (S3OutputStream os = new S3OutputStream(client, BUCKET, "retry.dat", 0)) {
+            os.write(src);
+        }
+
+        verify(client, times(3)).uploadPart(any(Consumer.class), any(RequestBody.class));
+        verify(client).completeMultipartUpload(any(Consumer.class));
+        verify(client, never()).abortMultipartUpload(any(Consumer.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCopyPartRetry() throws IOException {
+        S3Client client = mock(S3Client.class);
+        when(client.createMultipartUpload(any(Consumer.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("1").build());
+        when(client.uploadPartCopy(any(Consumer.class)))
+                .thenThrow(S3Exception.builder().statusCode(503).message("slow down").build())
+                .thenReturn(UploadPartCopyResponse.builder()
+                        .copyPartResult(CopyPartResult.builder().eTag("1").build())
+                        .build());
+        when(client.uploadPart(any(Consumer.class), any(RequestBody.class)))
+                .thenReturn(UploadPartResponse.builder().eTag("2").build());
+
+        try (S3OutputStream os = new S3OutputStream(client, BUCKET, "copy-retry.dat", 1024 * 1024 * 6)) {
+            os.write(RandomUtils.nextBytes(1024 * 1024));
+        }
+
+        verify(client, times(2)).uploadPartCopy(any(Consumer.class));
+        verify(client).completeMultipartUpload(any(Consumer.class));
+        verify(client, never()).abortMultipartUpload(any(Consumer.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testAdaptivePartSize() throws IOException {
+        S3Client client = mock(S3Client.class);
+        when(client.createMultipartUpload(any(Consumer.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("1").build());
+        when(client.uploadPart(any(Consumer.class), any(RequestBody.class)))
+                .thenReturn(UploadPartResponse.builder().eTag("1").build());
+
+        Settings settings = GlobalConfiguration.settings().with("s3-ftp.part-size-growth-parts", "1");
+        try (S3OutputStream os = new S3OutputStream(client, settings, BUCKET, "adaptive.dat", 0, () -> {
+        }, null)) {
+            os.write(new byte[1024 * 1024 * 75]);
+        }
+
+        // 分片逐个翻倍，最后一个分片为剩余数据，分片并发上传，按大小比较
+        ArgumentCaptor<RequestBody> bodies = ArgumentCaptor.forClass(RequestBody.class);
+        verify(client, times(4)).uploadPart(any(Consumer.class), bodies.capture());
+        assertEquals(
+                List.of(1024L * 1024 * 5, 1024L * 1024 * 10, 1024L * 1024 * 20, 1024L * 1024 * 40),
+                bodies.getAllValues().stream().map(body -> body.optionalContentLength().orElseThrow()).sorted().toList()
+        );
+        verify(client).completeMultipartUpload(any(Consumer.class));
+    }
+
+    @Test
+    void testResumeFromJournal(S3Client client) throws IOException, InterruptedException {
+        int partSize = GlobalConfiguration.settings().writeBufferSize;
+        byte[] src = RandomUtils.nextBytes(partSize * 2 + 1024);
+        S3UploadJournal.Entry journal = new S3UploadJournal(Files.createTempDirectory("s3-ftp-journal"))
+                .entry("store", BUCKET, "resume.dat");
+
+        // 写入两个分片后不关闭，模拟连接中断
+        S3OutputStream interrupted = new S3OutputStream(client, BUCKET, "resume.dat", 0, () -> {
+        }, journal);
+        interrupted.write(src, 0, partSize * 2);
+        interrupted.flush();
+        for (int i = 0; i < 100 && journal.read().orElseThrow().parts().size() < 2; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(2, journal.read().orElseThrow().parts().size());
+
+        try (S3OutputStream os = new S3OutputStream(client, BUCKET, "resume.dat", partSize * 2L, () -> {
+        }, journal)) {
+            os.write(src, partSize * 2, src.length - partSize * 2);
+        }
+
+        try (InputStream is = client.getObject(req -> req.bucket(BUCKET).key("resume.dat"))) {
+            assertArrayEquals(src, is.readAllBytes());
+        } finally {
+            client.deleteObject(req -> req.bucket(BUCKET).key("resume.dat"));
+        }
+        assertTrue(journal.read().isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testChecksums() throws IOException {
+        S3Client client = mock(S3Client.class);
+        when(client.createMultipartUpload(any(Consumer.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("1").build());
+        when(client.uploadPart(any(Consumer.class), any(RequestBody.class)))
+                .thenReturn(UploadPartResponse.builder().eTag("1").build());
+
+        Settings settings = GlobalConfiguration.settings()
+                .with("s3-ftp.upload-part-checksum", "CRC32C")
+                .with("s3-ftp.file-hashes", "MD5");
+        byte[] src = RandomUtils.nextBytes(settings.writeBufferSize + 1024);
+        try (S3OutputStream os = new S3OutputStream(client, settings, BUCKET, "checksum.dat", 0, () -> {
+        }, null)) {
+            os.write(src);
+        }
+
+        ArgumentCaptor<Consumer<CreateMultipartUploadRequest.Builder>> create = ArgumentCaptor.forClass(Consumer.class);
+        verify(client).createMultipartUpload(create.capture());
+        CreateMultipartUploadRequest.Builder createRequest = CreateMultipartUploadRequest.builder();
+        create.getValue().accept(createRequest);
+        assertEquals(ChecksumAlgorithm.CRC32_C, createRequest.build().checksumAlgorithm());
+
+        // 每个分片的校验和在写入时计算，与分片数据一致
+        ArgumentCaptor<Consumer<UploadPartRequest.Builder>> parts = ArgumentCaptor.forClass(Consumer.class);
+        verify(client, times(2)).uploadPart(parts.capture(), any(RequestBody.class));
+        Set<String> checksums = new HashSet<>();
+        for (Consumer<UploadPartRequest.Builder> part : parts.getAllValues()) {
+            UploadPartRequest.Builder request = UploadPartRequest.builder();
+            part.accept(request);
+            checksums.add(request.build().checksumCRC32C());
+        }
+        int partSize = GlobalConfiguration.settings().writeBufferSize;
+        assertEquals(Set.of(crc32c(src, 0, partSize), crc32c(src, partSize, src.length - partSize)), checksums);
+
+        ArgumentCaptor<Consumer<CompleteMultipartUploadRequest.Builder>> complete = ArgumentCaptor.forClass(Consumer.class);
+        verify(client).completeMultipartUpload(complete.capture());
+        CompleteMultipartUploadRequest.Builder completeRequest = CompleteMultipartUploadRequest.builder();
+        complete.getValue().accept(completeRequest);
+        assertTrue(completeRequest.build().multipartUpload().parts().stream().allMatch(v -> v.checksumCRC32C() != null));
+
+        ArgumentCaptor<Consumer<PutObjectTaggingRequest.Builder>> tagging = ArgumentCaptor.forClass(Consumer.class);
+        verify(client).putObjectTagging(tagging.capture());
+        PutObjectTaggingRequest.Builder taggingRequest = PutObjectTaggingRequest.builder();
+        tagging.getValue().accept(taggingRequest);
+        S3FileHasher hasher = new S3FileHasher(List.of(S3FileHash.MD5));
+        hasher.update(src, 0, src.length);
+        assertEquals(hasher.values(), S3FileHasher.fromTags(taggingRequest.build().tagging().tagSet()));
+    }
+
+    private static String crc32c(byte[] bytes, int off, int len) {
+        S3FileHash.Digest digest = S3FileHash.CRC32C.newDigest();
+        digest.update(bytes, off, len);
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+}
@@ -0,0 +1,71 @@
+package com.s3.ftp.s3;
+
+import com.s3.ftp.jupiter.LocalS3;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("JUnitMalformedDeclaration")
+@LocalS3
+class S3ParallelListerTest {
+
+    private static final String BUCKET = "test";
+
+    private static final Set<String> KEYS = new HashSet<>();
+
+    @BeforeAll
+    static void beforeAll(S3Client client) {
+        client.createBucket(req -> req.bucket(BUCKET));
+        KEYS.add("0.txt");
+        KEYS.add("e/");
+        for (int i = 0; i < 5; i++) {
+            KEYS.add("a/%d.txt".formatted(i));
+            KEYS.add("a/b/%d.txt".formatted(i));
+            KEYS.add("a/b/c/%d.txt".formatted(i));
+            KEYS.add("d/%d/%d.txt".formatted(i, i));
+        }
+        KEYS.forEach(key -> client.putObject(req -> req.bucket(BUCKET).key(key), RequestBody.fromString(key)));
+    }
+
+    @Test
+    void testListAll(S3Client client) {
+        try (S3ParallelLister lister = new S3ParallelLister(client, BUCKET, "", 4, 2)) {
+            Set<String> keys = new HashSet<>();
+            lister.forEachRemaining(object -> assertTrue(keys.add(object.key())));
+            assertEquals(KEYS, keys);
+            assertFalse(lister.hasNext());
+        }
+    }
+
+    @Test
+    void testListPrefix(S3Client client) {
+        try (S3ParallelLister lister = new S3ParallelLister(client, BUCKET, "a/b/", 2)) {
+            Set<String> keys = new HashSet<>();
+            lister.forEachRemaining(object -> keys.add(object.key()));
+            assertEquals(10, keys.size());
+            assertTrue(keys.stream().allMatch(key -> key.startsWith("a/b/")));
+        }
+    }
+
+    @Test
+    void testClose(S3Client client) {
+        try (S3ParallelLister lister = new S3ParallelLister(client, BUCKET, "", 1, 1)) {
+            assertTrue(lister.hasNext());
+            lister.next();
+        }
+    }
+
+    @Test
+    void testFailure(S3Client client) {
+        try (S3ParallelLister lister = new S3ParallelLister(client, "missing", "", 2)) {
+            assertThrows(RuntimeException.class, lister::hasNext);
+            assertFalse(lister.hasNext());
+        }
+    }
+}
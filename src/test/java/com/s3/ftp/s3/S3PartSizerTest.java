@@ -0,0 +1,68 @@
+package com.s3.ftp.s3;
+
+import com.s3.ftp.config.Settings;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class S3PartSizerTest {
+
+    private static final long MIB = 1024 * 1024;
+
+    @Test
+    void testSchedule() {
+        S3PartSizer sizer = new S3PartSizer(10 * MIB, 5 * 1024 * MIB, 1000);
+
+        assertEquals(10 * MIB, sizer.partSize(1, 0));
+        assertEquals(10 * MIB, sizer.partSize(1000, 0));
+        assertEquals(20 * MIB, sizer.partSize(1001, 0));
+        assertEquals(5 * 1024 * MIB, sizer.partSize(9001, 0));
+        assertEquals(5 * 1024 * MIB, sizer.partSize(Integer.MAX_VALUE, 0));
+
+        long total = 0;
+        for (int i = 1; i <= S3PartSizer.MAX_PARTS; i++) {
+            total += sizer.partSize(i, 0);
+        }
+        assertTrue(total > 5 * 1024 * 1024 * MIB);
+    }
+
+    @Test
+    void testMaxPartSize() {
+        S3PartSizer sizer = new S3PartSizer(10 * MIB, 25 * MIB, 1);
+        assertEquals(20 * MIB, sizer.maxPartSize());
+        assertEquals(20 * MIB, sizer.partSize(100, 0));
+
+        sizer = new S3PartSizer(10 * MIB, MIB, 1);
+        assertEquals(10 * MIB, sizer.maxPartSize());
+        assertEquals(10 * MIB, sizer.partSize(5, 0));
+    }
+
+    @Test
+    void testDefaultSettings() {
+        // 默认配置下分片在 10000 个之前增大，可上传远超 write-buffer-size * 10000 的对象
+        Settings settings = Settings.DEFAULTS;
+        S3PartSizer sizer = new S3PartSizer(
+                settings.writeBufferSize, S3OutputStream.maxPartSize(settings, false), settings.partSizeGrowthParts
+        );
+        assertTrue(sizer.partSize(settings.partSizeGrowthParts + 1, 0) > settings.writeBufferSize);
+
+        long total = 0;
+        for (int i = 1; i <= S3PartSizer.MAX_PARTS; i++) {
+            total += sizer.partSize(i, 0);
+        }
+        assertTrue(total > 400 * 1024 * MIB);
+    }
+
+    @Test
+    void testMeasuredThroughput() throws InterruptedException {
+        S3PartSizer sizer = new S3PartSizer(MIB, 1024 * MIB, 1000);
+        // 写入不足一秒时不按速率调整
+        assertEquals(MIB, sizer.partSize(2, 100 * MIB));
+
+        Thread.sleep(1100);
+        long size = sizer.partSize(2, 200 * MIB);
+        assertTrue(size >= 100 * MIB);
+        assertTrue(size < 200 * MIB);
+        assertEquals(0, size % MIB);
+    }
+}
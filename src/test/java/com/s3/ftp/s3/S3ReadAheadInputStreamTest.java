@@ -0,0 +1,78 @@
+package com.s3.ftp.s3;
+
+import com.s3.ftp.jupiter.LocalS3;
+import com.s3.ftp.util.BufferPool;
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("JUnitMalformedDeclaration")
+@LocalS3
+class S3ReadAheadInputStreamTest {
+
+    private static final String BUCKET = "test";
+
+    private static final int CHUNK_SIZE = 1024 * 64;
+
+    @BeforeAll
+    static void beforeAll(S3Client client) {
+        client.createBucket(req -> req.bucket(BUCKET));
+    }
+
+    @Test
+    void testRead(S3Client client) throws IOException {
+        byte[] src = RandomUtils.nextBytes(CHUNK_SIZE * 10 + 123);
+        client.putObject(req -> req.bucket(BUCKET).key("read.dat"), RequestBody.fromBytes(src));
+        BufferPool pool = new BufferPool(CHUNK_SIZE, 4, false, 1000);
+
+        try (InputStream is = new S3ReadAheadInputStream(client, BUCKET, "read.dat", 0, pool, 3)) {
+            assertArrayEquals(src, is.readAllBytes());
+            assertEquals(-1, is.read());
+        }
+        assertEquals(0, pool.getInUse());
+
+        int offset = CHUNK_SIZE * 2 + 7;
+        try (InputStream is = new S3ReadAheadInputStream(client, BUCKET, "read.dat", offset, pool, 3)) {
+            assertEquals(src[offset] & 0xFF, is.read());
+            assertArrayEquals(Arrays.copyOfRange(src, offset + 1, src.length), is.readAllBytes());
+        }
+    }
+
+    @Test
+    void testSmallPool(S3Client client) throws IOException {
+        byte[] src = RandomUtils.nextBytes(CHUNK_SIZE * 5);
+        client.putObject(req -> req.bucket(BUCKET).key("small.dat"), RequestBody.fromBytes(src));
+
+        // 缓冲区少于并发数量时按可用的缓冲区下载
+        BufferPool pool = new BufferPool(CHUNK_SIZE, 1, false, 1000);
+        try (InputStream is = new S3ReadAheadInputStream(client, BUCKET, "small.dat", 0, pool, 4)) {
+            assertArrayEquals(src, is.readAllBytes());
+        }
+        assertEquals(0, pool.getInUse());
+    }
+
+    @Test
+    void testChangedObject(S3Client client) throws IOException {
+        byte[] src = RandomUtils.nextBytes(CHUNK_SIZE * 6);
+        client.putObject(req -> req.bucket(BUCKET).key("changed.dat"), RequestBody.fromBytes(src));
+        BufferPool pool = new BufferPool(CHUNK_SIZE, 2, false, 1000);
+
+        InputStream is = new S3ReadAheadInputStream(client, BUCKET, "changed.dat", 0, pool, 1);
+        assertEquals(src[0] & 0xFF, is.read());
+
+        // 之后的分块以 If-Match 请求第一个分块的版本，不会读到新写入的数据
+        client.putObject(req -> req.bucket(BUCKET).key("changed.dat"),
+                RequestBody.fromBytes(RandomUtils.nextBytes(CHUNK_SIZE * 3)));
+        assertThrows(IOException.class, is::readAllBytes);
+        is.close();
+        assertThrows(IOException.class, is::read);
+    }
+}
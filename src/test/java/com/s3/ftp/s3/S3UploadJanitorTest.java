@@ -0,0 +1,93 @@
+package com.s3.ftp.s3;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.ListMultipartUploadsRequest;
+import software.amazon.awssdk.services.s3.model.ListMultipartUploadsResponse;
+import software.amazon.awssdk.services.s3.model.ListPartsRequest;
+import software.amazon.awssdk.services.s3.model.ListPartsResponse;
+import software.amazon.awssdk.services.s3.model.MultipartUpload;
+import software.amazon.awssdk.services.s3.model.Part;
+import software.amazon.awssdk.services.s3.paginators.ListMultipartUploadsIterable;
+import software.amazon.awssdk.services.s3.paginators.ListPartsIterable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class S3UploadJanitorTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testAbortAbandoned(@TempDir Path dir) throws IOException {
+        Instant now = Instant.now();
+        Instant expired = now.minus(2, ChronoUnit.HOURS);
+        S3Client client = mock(S3Client.class);
+        when(client.listMultipartUploadsPaginator(any(Consumer.class))).thenAnswer(invocation -> {
+            ListMultipartUploadsRequest.Builder builder = ListMultipartUploadsRequest.builder();
+            invocation.<Consumer<ListMultipartUploadsRequest.Builder>>getArgument(0).accept(builder);
+            return new ListMultipartUploadsIterable(client, builder.build());
+        });
+        when(client.listMultipartUploads(any(ListMultipartUploadsRequest.class)))
+                .thenReturn(ListMultipartUploadsResponse.builder()
+                        .uploads(upload("abandoned.dat", "1", expired),
+                                upload("active.dat", "2", expired),
+                                upload("recent.dat", "3", now))
+                        .isTruncated(false)
+                        .build());
+        when(client.listPartsPaginator(any(Consumer.class))).thenAnswer(invocation -> {
+            ListPartsRequest.Builder builder = ListPartsRequest.builder();
+            invocation.<Consumer<ListPartsRequest.Builder>>getArgument(0).accept(builder);
+            return new ListPartsIterable(client, builder.build());
+        });
+        // 长时间运行的上传仍有最近上传的分片
+        when(client.listParts(any(ListPartsRequest.class))).thenAnswer(invocation -> {
+            ListPartsRequest request = invocation.getArgument(0);
+            Instant lastModified = request.uploadId().equals("2") ? now : expired;
+            return ListPartsResponse.builder()
+                    .parts(Part.builder().partNumber(1).lastModified(lastModified).build())
+                    .isTruncated(false)
+                    .build();
+        });
+
+        S3UploadJournal journal = new S3UploadJournal(dir);
+        journal.entry("store", "test", "abandoned.dat").begin("1", Map.of());
+        journal.entry("store", "test", "active.dat").begin("2", Map.of());
+
+        Instant expiredBefore = now.minus(1, ChronoUnit.HOURS);
+        assertEquals(1, S3UploadJanitor.abortAbandoned("store", client, "test", "", expiredBefore, journal));
+        verify(client, times(1)).abortMultipartUpload(any(Consumer.class));
+        assertTrue(journal.entry("store", "test", "abandoned.dat").read().isEmpty());
+        assertEquals("2", journal.entry("store", "test", "active.dat").uploadId());
+    }
+
+    @Test
+    void testResolveTargets() {
+        Properties properties = new Properties();
+        properties.setProperty("ftpserver.user.a.homedirectory", "s1:bucket/a");
+        properties.setProperty("ftpserver.user.b.homedirectory", "s1:bucket/b/");
+        properties.setProperty("ftpserver.user.c.homedirectory", "s1:other/c");
+        properties.setProperty("ftpserver.user.d.homedirectory", "s1:other");
+        properties.setProperty("ftpserver.user.e.homedirectory", "s2:bucket");
+        properties.setProperty("ftpserver.user.f.homedirectory", "invalid");
+
+        assertEquals(Map.of(
+                "s1", Map.of("bucket", Set.of("a/", "b/"), "other", Set.of("")),
+                "s2", Map.of("bucket", Set.of(""))
+        ), S3UploadJanitor.resolveTargets(properties));
+    }
+
+    private static MultipartUpload upload(String key, String uploadId, Instant initiated) {
+        return MultipartUpload.builder().key(key).uploadId(uploadId).initiated(initiated).build();
+    }
+}
@@ -0,0 +1,96 @@
+package com.s3.ftp.s3;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class S3UploadJournalTest {
+
+    @Test
+    void testResumePartNumber() throws IOException {
+        Path directory = Files.createTempDirectory("s3-ftp-journal");
+        S3UploadJournal.Entry entry = new S3UploadJournal(directory).entry("store", "test", "a/b.dat");
+        assertTrue(entry.read().isEmpty());
+
+        entry.begin("upload-1", Map.of());
+        entry.append("upload-1", 1, new S3UploadJournal.Part(10, "\"e1\""));
+        entry.append("upload-1", 3, new S3UploadJournal.Part(5, "\"e3\""));
+        entry.append("upload-1", 2, new S3UploadJournal.Part(10, "\"e2\""));
+
+        S3UploadJournal.Upload upload = entry.read().orElseThrow();
+        assertEquals("upload-1", upload.uploadId());
+        assertEquals(3, upload.parts().size());
+        assertEquals("\"e2\"", upload.parts().get(2).eTag());
+        assertEquals(Optional.of(0), upload.resumePartNumber(0));
+        assertEquals(Optional.of(1), upload.resumePartNumber(10));
+        assertEquals(Optional.of(3), upload.resumePartNumber(25));
+        assertTrue(upload.resumePartNumber(15).isEmpty());
+        assertTrue(upload.resumePartNumber(30).isEmpty());
+        assertEquals(25, upload.resumableSize());
+
+        assertTrue(new S3UploadJournal(directory).entry("other", "test", "a/b.dat").read().isEmpty());
+    }
+
+    @Test
+    void testBeginAndRemove() throws IOException {
+        Path directory = Files.createTempDirectory("s3-ftp-journal");
+        S3UploadJournal.Entry entry = new S3UploadJournal(directory).entry("store", "test", "c.dat");
+
+        entry.begin("upload-1", Map.of());
+        entry.append("upload-1", 1, new S3UploadJournal.Part(10, "\"e1\""));
+        entry.begin("upload-2", Map.of(1, new S3UploadJournal.Part(20, "\"e2\"")));
+        S3UploadJournal.Upload upload = entry.read().orElseThrow();
+        assertEquals("upload-2", upload.uploadId());
+        assertEquals(20, upload.parts().get(1).size());
+
+        // 模拟进程退出时未写完的行
+        try (var stream = Files.list(directory)) {
+            Path file = stream.findFirst().orElseThrow();
+            Files.writeString(file, "2 10", StandardOpenOption.APPEND);
+        }
+        assertEquals(1, entry.read().orElseThrow().parts().size());
+
+        // 日志已被 upload-2 覆盖，upload-1 的分片与删除不再生效
+        entry.append("upload-1", 2, new S3UploadJournal.Part(10, "\"e1\""));
+        entry.remove("upload-1");
+        assertEquals(1, entry.read().orElseThrow().parts().size());
+        assertEquals("upload-2", entry.uploadId());
+
+        entry.remove("upload-2");
+        assertTrue(entry.read().isEmpty());
+        assertNull(entry.uploadId());
+        entry.append("upload-2", 2, new S3UploadJournal.Part(10, "\"e2\""));
+        assertTrue(entry.read().isEmpty());
+    }
+
+    @Test
+    void testRemoveExpired() throws IOException {
+        Path directory = Files.createTempDirectory("s3-ftp-journal");
+        S3UploadJournal journal = new S3UploadJournal(directory);
+        S3UploadJournal.Entry expired = journal.entry("store", "test", "expired.dat");
+        S3UploadJournal.Entry active = journal.entry("store", "test", "active.dat");
+        expired.begin("upload-1", Map.of());
+        active.begin("upload-2", Map.of());
+        try (var stream = Files.list(directory)) {
+            for (Path file : stream.toList()) {
+                if (Files.readString(file).startsWith("upload-1")) {
+                    Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(2, ChronoUnit.HOURS)));
+                }
+            }
+        }
+
+        assertEquals(1, journal.removeExpired(Instant.now().minus(1, ChronoUnit.HOURS)));
+        assertTrue(expired.read().isEmpty());
+        assertEquals("upload-2", active.uploadId());
+    }
+}
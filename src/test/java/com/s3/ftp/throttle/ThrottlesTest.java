@@ -0,0 +1,94 @@
+package com.s3.ftp.throttle;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThrottlesTest {
+
+    @Test
+    void testConfigure() {
+        Properties props = new Properties();
+        props.setProperty("ftpserver.user.alice.homedirectory", "test:bucket");
+        props.setProperty("ftpserver.user.alice.totaluploadrate", "1048576");
+        props.setProperty("ftpserver.user.alice.commandrate", "10");
+        props.setProperty("ftpserver.user.bob.totaldownloadrate", "0");
+        props.setProperty("ftpserver.user.carol.first.totaldownloadrate", "2048");
+        Throttles.configure(props);
+
+        RateLimits alice = Throttles.user("alice");
+        assertEquals(1048576, alice.upload().rate());
+        assertNull(alice.download());
+        assertEquals(10, alice.request().rate());
+
+        assertSame(RateLimits.NONE, Throttles.user("bob"));
+        assertSame(RateLimits.NONE, Throttles.user("nobody"));
+        assertSame(RateLimits.NONE, Throttles.user(null));
+        assertEquals(2048, Throttles.user("carol.first").download().rate());
+
+        Throttles.configure(new Properties());
+        assertSame(RateLimits.NONE, Throttles.user("alice"));
+    }
+
+    @Test
+    void testReconfigure() {
+        Properties props = new Properties();
+        props.setProperty("ftpserver.user.alice.totaluploadrate", "1048576");
+        props.setProperty("ftpserver.user.alice.commandrate", "10");
+        props.setProperty("ftpserver.user.bob.totaldownloadrate", "2048");
+        Throttles.configure(props);
+        RateLimits alice = Throttles.user("alice");
+        RateLimits bob = Throttles.user("bob");
+
+        // 只修改 alice 的命令速率
+        props.setProperty("ftpserver.user.alice.commandrate", "20");
+        props.setProperty("ftpserver.user.carol.totaldownloadrate", "4096");
+        Throttles.configure(props);
+        assertSame(bob, Throttles.user("bob"));
+        assertSame(alice.upload(), Throttles.user("alice").upload());
+        assertNotSame(alice.request(), Throttles.user("alice").request());
+        assertEquals(20, Throttles.user("alice").request().rate());
+        assertEquals(4096, Throttles.user("carol").download().rate());
+
+        props.remove("ftpserver.user.alice.totaluploadrate");
+        Throttles.configure(props);
+        assertNull(Throttles.user("alice").upload());
+
+        Throttles.configure(new Properties());
+        assertSame(RateLimits.NONE, Throttles.user("bob"));
+    }
+
+    @Test
+    void testThrottleStreams() throws IOException {
+        OutputStream os = new ByteArrayOutputStream();
+        InputStream is = new ByteArrayInputStream(new byte[0]);
+        assertSame(os, Throttles.throttleUpload(os, RateLimits.NONE, RateLimits.NONE));
+        assertSame(is, Throttles.throttleDownload(is, RateLimits.NONE));
+
+        RateLimits user = RateLimits.of(Map.of("up", "100000"), "up", "down", "request");
+        RateLimits store = RateLimits.of(Map.of("down", "10000"), "up", "down", "request");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long start = System.nanoTime();
+        try (OutputStream throttled = Throttles.throttleUpload(bytes, user, store)) {
+            throttled.write(new byte[120_000]);
+        }
+        assertEquals(120_000, bytes.size());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(150));
+
+        start = System.nanoTime();
+        try (InputStream throttled = Throttles.throttleDownload(new ByteArrayInputStream(new byte[12_000]), user, store)) {
+            assertEquals(12_000, throttled.readAllBytes().length);
+        }
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(150));
+    }
+}
@@ -0,0 +1,41 @@
+package com.s3.ftp.throttle;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    @Test
+    void testReserve() {
+        TokenBucket bucket = new TokenBucket(1000);
+        assertEquals(1000, bucket.rate());
+
+        // 初始为满桶，一秒的令牌无需等待
+        assertEquals(0, bucket.reserve(1000));
+
+        long wait = bucket.reserve(500);
+        assertTrue(wait > TimeUnit.MILLISECONDS.toNanos(400));
+        assertTrue(wait <= TimeUnit.MILLISECONDS.toNanos(500));
+
+        // 欠账累加，后来者排在前者之后
+        assertTrue(bucket.reserve(500) > wait + TimeUnit.MILLISECONDS.toNanos(400));
+    }
+
+    @Test
+    void testAcquire() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(10_000);
+        long start = System.nanoTime();
+        bucket.acquire(10_000);
+        bucket.acquire(2_000);
+        long elapsed = System.nanoTime() - start;
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(150));
+    }
+
+    @Test
+    void testInvalidRate() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0));
+    }
+}
@@ -0,0 +1,91 @@
+package com.s3.ftp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BufferPoolTest {
+
+    @Test
+    void testReuse() throws IOException {
+        BufferPool pool = new BufferPool(16, 2, false, 100);
+
+        ByteBuffer first = pool.acquire();
+        first.put((byte) 1);
+        assertEquals(1, pool.getInUse());
+        assertEquals(1, pool.getAllocated());
+
+        pool.release(first);
+        assertEquals(0, pool.getInUse());
+
+        ByteBuffer second = pool.acquire();
+        assertSame(first, second);
+        assertEquals(0, second.position());
+        assertEquals(16, second.remaining());
+        assertEquals(1, pool.getAllocated());
+    }
+
+    @Test
+    void testAcquireTimeout() throws IOException {
+        BufferPool pool = new BufferPool(16, 2, true, 50);
+
+        ByteBuffer buffer = pool.acquire();
+        assertTrue(buffer.isDirect());
+        pool.acquire();
+
+        assertEquals(2, pool.getInUse());
+        assertThrows(IOException.class, pool::acquire);
+
+        pool.release(buffer);
+        assertSame(buffer, pool.acquire());
+    }
+
+    @Test
+    void testTryAcquire() {
+        BufferPool pool = new BufferPool(16, 1, false, 50);
+
+        ByteBuffer buffer = pool.tryAcquire().orElseThrow();
+        assertTrue(pool.tryAcquire().isEmpty());
+
+        pool.release(buffer);
+        assertSame(buffer, pool.tryAcquire().orElseThrow());
+    }
+
+    @Test
+    void testTryAcquireCount() {
+        BufferPool pool = new BufferPool(16, 3, false, 50);
+
+        ByteBuffer buffer = pool.tryAcquire().orElseThrow();
+        // 空闲数量不足时不借出部分缓冲区
+        assertTrue(pool.tryAcquire(3).isEmpty());
+        assertEquals(1, pool.getInUse());
+
+        List<ByteBuffer> buffers = pool.tryAcquire(2).orElseThrow();
+        assertEquals(2, buffers.size());
+        assertEquals(3, pool.getInUse());
+
+        pool.release(buffer);
+        buffers.forEach(pool::release);
+        assertEquals(3, pool.tryAcquire(3).orElseThrow().size());
+    }
+
+    @Test
+    void testReleaseMismatch() throws IOException {
+        BufferPool pool = new BufferPool(16, 1, false, 50);
+
+        pool.acquire();
+        assertEquals(1, pool.getAllocated());
+
+        pool.release(ByteBuffer.allocate(8));
+        assertEquals(0, pool.getAllocated());
+        assertEquals(0, pool.getInUse());
+        assertEquals(16, pool.acquire().capacity());
+    }
+}
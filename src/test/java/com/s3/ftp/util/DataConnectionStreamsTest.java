@@ -0,0 +1,76 @@
+package com.s3.ftp.util;
+
+import org.apache.ftpserver.util.IoUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class DataConnectionStreamsTest {
+
+    @Test
+    void testUploadPassThrough() throws IOException {
+        List<byte[]> writes = new ArrayList<>();
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        OutputStream sink = new OutputStream() {
+            @Override
+            public void write(int b) {
+                content.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                writes.add(b);
+                content.write(b, off, len);
+            }
+        };
+
+        BufferedOutputStream os = DataConnectionStreams.upload(sink);
+        assertSame(os, IoUtils.getBufferedOutputStream(os));
+        assertSame(os, DataConnectionStreams.upload(os));
+
+        byte[] chunk = {1, 2, 3};
+        os.write(chunk, 0, 3);
+        assertSame(chunk, writes.get(0));
+
+        // ASCII 模式逐字节写入，先缓冲再随下一次写入按序输出
+        os.write(4);
+        os.write(5);
+        assertEquals(1, writes.size());
+        os.write(chunk, 1, 2);
+        os.flush();
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 2, 3}, content.toByteArray());
+    }
+
+    @Test
+    void testDownloadPassThrough() throws IOException {
+        List<Integer> reads = new ArrayList<>();
+        InputStream source = new ByteArrayInputStream(new byte[10000]) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                reads.add(len);
+                return super.read(b, off, len);
+            }
+        };
+
+        BufferedInputStream is = DataConnectionStreams.download(source);
+        assertSame(is, IoUtils.getBufferedInputStream(is));
+
+        byte[] buffer = new byte[4096];
+        assertEquals(4096, is.read(buffer));
+        assertEquals(List.of(4096), reads);
+        assertEquals(10000 - 4096, is.available());
+        assertEquals(10000 - 4096, is.readAllBytes().length);
+    }
+}
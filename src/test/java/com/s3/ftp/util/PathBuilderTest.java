@@ -30,4 +30,17 @@ class PathBuilderTest {
         );
     }
 
-}
\ No newline at end of file
+    @Test
+    void testNormalize() {
+        assertEquals("", PathBuilder.normalize("", "/"));
+        assertEquals("a/b", PathBuilder.normalize("", "a/b/"));
+        assertEquals("a/b/c", PathBuilder.normalize("a/b", "c"));
+        assertEquals("a/c", PathBuilder.normalize("a/b", " ../ c /./"));
+        assertEquals("d", PathBuilder.normalize("a/b", "/d"));
+        assertEquals("", PathBuilder.normalize("a", ".."));
+        assertEquals("d", PathBuilder.normalize("a/b", "../../d/..//d"));
+
+        assertThrows(IllegalArgumentException.class, () -> PathBuilder.normalize("a", "../.."));
+    }
+
+}